@@ -0,0 +1,125 @@
+package com.systemcontrol.backend.benchmark;
+
+import com.systemcontrol.backend.model.Attachment;
+import com.systemcontrol.backend.security.JwtUtil;
+import com.systemcontrol.backend.service.AttachmentStore;
+import com.systemcontrol.backend.service.FileService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.UrlResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скачивание вложения через приложение в Tomcat (HTTP по loopback, тело читается и отбрасывается):
+ * {@code urlResource} — прежний путь (UrlResource → ResourceHttpMessageConverter),
+ * {@code fileDownload} — текущий {@code GET /api/attachments/{id}/download}.
+ * <p>
+ * {@code sendfile=false} отключает sendfile в коннекторе: так измеряется копирование через поток ответа сервлета,
+ * которым текущая отдача пользуется без sendfile и для multipart/byteranges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AttachmentTransferBenchmark {
+
+    @Param({"1048576", "16777216"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean sendfile;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest urlResource;
+    private HttpRequest fileDownload;
+
+    /**
+     * Прежняя отдача вложения и переключатель sendfile; функциональный роутер, чтобы его не подхватило сканирование.
+     */
+    static class LegacyDownload {
+        @Bean
+        RouterFunction<ServerResponse> benchLegacyDownloadRoute(FileService fileService) {
+            return RouterFunctions.route().GET("/api/bench/legacy-download/{id}", request -> {
+                Attachment attachment = fileService.getAttachment(Long.valueOf(request.pathVariable("id")));
+                return ServerResponse.ok()
+                    .contentType(MediaType.parseMediaType(attachment.getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + attachment.getOriginalFileName() + "\"")
+                    .body(new UrlResource(Paths.get(attachment.getFilePath()).toUri()));
+            }).build();
+        }
+
+        @Bean
+        WebServerFactoryCustomizer<TomcatServletWebServerFactory> benchSendfile(Environment env) {
+            boolean enabled = env.getProperty("bench.sendfile", Boolean.class, true);
+            return factory -> factory.addConnectorCustomizers(connector -> connector.setProperty("useSendfile", String.valueOf(enabled)));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkFixture.start(new Class<?>[]{LegacyDownload.class}, "bench.sendfile=" + sendfile);
+        long projectId = BenchmarkFixture.project(context).getId();
+        BenchmarkFixture.defects(context, projectId, 1);
+
+        Path content = Files.createTempFile("attachment-bench", ".bin");
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        Files.write(content, bytes);
+        AttachmentStore.StagedBlob staged = context.getBean(AttachmentStore.class).stageFile(content);
+        Attachment attachment = context.getBean(FileService.class).saveStaged(staged, "bench.bin", "application/octet-stream", 1L);
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String token = "Bearer " + context.getBean(JwtUtil.class).generateToken("admin");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        urlResource = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/bench/legacy-download/" + attachment.getId()))
+            .header("Authorization", token).build();
+        fileDownload = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/attachments/" + attachment.getId() + "/download"))
+            .header("Authorization", token).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        context.close();
+    }
+
+    @Benchmark
+    public long urlResource() throws Exception {
+        return send(urlResource);
+    }
+
+    @Benchmark
+    public long fileDownload() throws Exception {
+        return send(fileDownload);
+    }
+
+    private long send(HttpRequest request) throws Exception {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+        }
+        return response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1);
+    }
+}
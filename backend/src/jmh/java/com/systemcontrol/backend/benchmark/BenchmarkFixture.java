@@ -0,0 +1,84 @@
+package com.systemcontrol.backend.benchmark;
+
+import com.systemcontrol.backend.BackendApplication;
+import com.systemcontrol.backend.model.Project;
+import com.systemcontrol.backend.repository.ProjectRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Поднимает приложение на in-memory H2 (профиль test) и наполняет его сгенерированными данными.
+ */
+final class BenchmarkFixture {
+
+    private static final int INSERT_CHUNK = 10_000;
+    private static final String[] PRIORITIES = {"LOW", "MEDIUM", "HIGH", "CRITICAL"};
+    private static final String[] STATUSES = {"NEW", "IN_PROGRESS", "IN_REVIEW", "CLOSED", "CANCELLED"};
+
+    private BenchmarkFixture() {}
+
+    static ConfigurableApplicationContext start() {
+        return start(new Class<?>[0]);
+    }
+
+    /**
+     * @param extraSources дополнительные конфигурации/контроллеры, нужные только бенчмарку
+     * @param properties   свойства поверх профиля test
+     */
+    static ConfigurableApplicationContext start(Class<?>[] extraSources, String... properties) {
+        Class<?>[] sources = new Class<?>[extraSources.length + 1];
+        sources[0] = BackendApplication.class;
+        System.arraycopy(extraSources, 0, sources, 1, extraSources.length);
+        return new SpringApplicationBuilder(sources)
+            .profiles("test")
+            .properties(
+                "server.port=0",
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE")
+            .properties(properties)
+            .run();
+    }
+
+    static Project project(ConfigurableApplicationContext context) {
+        Project project = new Project();
+        project.setName("Benchmark project");
+        project.setDescription("generated");
+        return context.getBean(ProjectRepository.class).save(project);
+    }
+
+    /**
+     * Вставляет {@code rows} дефектов с id 1..rows напрямую через JDBC (пачками, без Hibernate).
+     */
+    static void defects(ConfigurableApplicationContext context, long projectId, int rows) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        String sql = "INSERT INTO defects (id, title, description, priority, status, assignee_id, project_id, due_date, created_at, updated_at, version) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> batch = new ArrayList<>(INSERT_CHUNK);
+        for (int i = 1; i <= rows; i++) {
+            batch.add(new Object[]{
+                (long) i,
+                "Дефект " + i,
+                "Трещина в стене, секция " + (i % 40) + ". Требуется \"срочный\" осмотр;\nфото приложено",
+                PRIORITIES[i % PRIORITIES.length],
+                STATUSES[i % STATUSES.length],
+                null,
+                projectId,
+                i % 3 == 0 ? null : now,
+                now,
+                now});
+            if (batch.size() == INSERT_CHUNK) {
+                jdbc.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) jdbc.batchUpdate(sql, batch);
+    }
+}
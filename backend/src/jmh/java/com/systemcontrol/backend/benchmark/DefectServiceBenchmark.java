@@ -0,0 +1,66 @@
+package com.systemcontrol.backend.benchmark;
+
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.service.DefectService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DefectService#update}: чтение дефекта, санитизация Jsoup, запись истории и сохранение.
+ * Каждый вызов меняет заголовок, приоритет и описание, чтобы история писалась всегда.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DefectServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private DefectService defectService;
+    private long defectId;
+    private Defect first;
+    private Defect second;
+    private boolean flip;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkFixture.start();
+        defectService = context.getBean(DefectService.class);
+        long projectId = BenchmarkFixture.project(context).getId();
+
+        Defect defect = new Defect();
+        defect.setTitle("Трещина в перекрытии");
+        defect.setProjectId(projectId);
+        defectId = defectService.create(defect).getId();
+
+        first = variant(projectId, "Трещина в перекрытии <b>секция 3</b>", Priority.HIGH,
+            "<p>Обнаружена трещина шириной 2 мм.</p><script>alert(1)</script><ul><li>фото</li><li>замеры</li></ul>");
+        second = variant(projectId, "Трещина в перекрытии, секция 4", Priority.LOW,
+            "<p>Повторный осмотр: трещина <a href=\"javascript:x()\">не растёт</a>.</p>");
+    }
+
+    private static Defect variant(long projectId, String title, Priority priority, String description) {
+        Defect d = new Defect();
+        d.setProjectId(projectId);
+        d.setTitle(title);
+        d.setPriority(priority);
+        d.setDescription(description);
+        return d;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Defect update() {
+        flip = !flip;
+        return defectService.update(defectId, flip ? first : second);
+    }
+}
@@ -0,0 +1,39 @@
+package com.systemcontrol.backend.benchmark;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.systemcontrol.backend.model.Role;
+import com.systemcontrol.backend.security.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск и проверка JWT (HMAC256), как при логине и в {@code JwtAuthenticationFilter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil("benchmark-secret-key-benchmark-secret-key", 3_600_000, true);
+        token = jwtUtil.generateToken("engineer", 42L, Role.ROLE_ENGINEER);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtil.generateToken("engineer", 42L, Role.ROLE_ENGINEER);
+    }
+
+    @Benchmark
+    public DecodedJWT verify() {
+        return jwtUtil.verify(token);
+    }
+}
@@ -0,0 +1,45 @@
+package com.systemcontrol.backend.benchmark;
+
+import com.systemcontrol.backend.service.ReportExportService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация XLSX-отчёта по дефектам (то, что отдаёт {@code GET /api/reports/defects/export}).
+ * Один вызов — целый отчёт, поэтому режим SingleShotTime; результат пишется в пустой поток.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ReportExportBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private ReportExportService exportService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkFixture.start();
+        exportService = context.getBean(ReportExportService.class);
+        BenchmarkFixture.defects(context, BenchmarkFixture.project(context).getId(), rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long defectsWorkbook() throws IOException {
+        return exportService.writeDefectsWorkbook(null, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,30 @@
+package com.systemcontrol.backend.benchmark;
+
+import com.systemcontrol.backend.model.DefectStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DefectStatus#canTransitionTo} для всех 25 пар статусов.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StatusTransitionBenchmark {
+
+    private final DefectStatus[] statuses = DefectStatus.values();
+
+    @Benchmark
+    public void canTransitionTo(Blackhole bh) {
+        for (DefectStatus from : statuses) {
+            for (DefectStatus to : statuses) {
+                bh.consume(from.canTransitionTo(to));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.systemcontrol.backend.benchmark;
+
+import com.systemcontrol.backend.security.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка запросов в Tomcat на платформенных потоках против виртуальных ({@code spring.threads.virtual.enabled}).
+ * <p>
+ * Пул Tomcat урезан до 32 потоков; 96 клиентов ждут «медленный» запрос (50 мс блокирующего ожидания,
+ * как внешний вызов или долгий запрос к БД), 4 клиента параллельно читают список проектов.
+ * На платформенных потоках короткие запросы стоят в очереди за медленными — это видно по p99 {@code fast}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VirtualThreadBenchmark {
+
+    static final long SLOW_MILLIS = 50;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest slow;
+    private HttpRequest fast;
+
+    /**
+     * Эндпоинт только для бенчмарка: функциональный роутер без стереотипа, чтобы его не подхватило сканирование.
+     */
+    static class SlowEndpoint {
+        @Bean
+        RouterFunction<ServerResponse> benchSlowRoute() {
+            return RouterFunctions.route().GET("/api/bench/slow", request -> {
+                Thread.sleep(SLOW_MILLIS);
+                return ServerResponse.ok().body("ok");
+            }).build();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkFixture.start(new Class<?>[]{SlowEndpoint.class},
+            "spring.threads.virtual.enabled=" + "virtual".equals(threads),
+            "server.tomcat.threads.max=32",
+            "server.tomcat.accept-count=1000");
+        BenchmarkFixture.project(context);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String token = "Bearer " + context.getBean(JwtUtil.class).generateToken("admin");
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        slow = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/bench/slow"))
+            .header("Authorization", token).build();
+        fast = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/projects"))
+            .header("Authorization", token).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        context.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(96)
+    public int slow() throws Exception {
+        return send(slow);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public int fast() throws Exception {
+        return send(fast);
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
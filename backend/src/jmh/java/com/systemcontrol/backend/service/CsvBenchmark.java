@@ -0,0 +1,71 @@
+package com.systemcontrol.backend.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Экранирование значений CSV ({@code ReportExportService.writeCsv}) для типичных ячеек отчёта.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CsvBenchmark {
+
+    @Param({"plain", "quoted", "long"})
+    public String kind;
+
+    private String value;
+    private CharSink out;
+
+    @Setup
+    public void setUp() {
+        value = switch (kind) {
+            case "plain" -> "IN_PROGRESS";
+            case "quoted" -> "Трещина в стене, секция \"Б\"\nфото приложено";
+            default -> "Описание дефекта без спецсимволов ".repeat(30);
+        };
+        out = new CharSink();
+    }
+
+    @Benchmark
+    public int csv() throws IOException {
+        out.length = 0;
+        ReportExportService.writeCsv(out, value);
+        return out.length;
+    }
+
+    /** Несинхронизированный приёмник, чтобы мерить экранирование, а не StringWriter. */
+    private static final class CharSink extends Writer {
+        char[] buf = new char[4096];
+        int length;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            System.arraycopy(cbuf, off, buf, length, len);
+            length += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            str.getChars(off, off + len, buf, length);
+            length += len;
+        }
+
+        @Override
+        public void write(int c) {
+            buf[length++] = (char) c;
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+}
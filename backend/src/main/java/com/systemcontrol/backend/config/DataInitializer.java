@@ -3,6 +3,7 @@ package com.systemcontrol.backend.config;
 import com.systemcontrol.backend.model.Role;
 import com.systemcontrol.backend.model.User;
 import com.systemcontrol.backend.repository.UserRepository;
+import com.systemcontrol.backend.service.ResourceVersions;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
@@ -19,7 +20,7 @@ public class DataInitializer {
     private String adminPassword;
 
     @Bean
-    public CommandLineRunner bootstrapAdmin(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public CommandLineRunner bootstrapAdmin(UserRepository userRepository, PasswordEncoder passwordEncoder, ResourceVersions resourceVersions) {
         return args -> {
             if (adminUsername == null || adminUsername.isBlank() || adminPassword == null || adminPassword.isBlank()) {
                 return;
@@ -30,6 +31,7 @@ public class DataInitializer {
                     if (u.getRole() == null || u.getRole() != Role.ROLE_ADMIN) {
                         u.setRole(Role.ROLE_ADMIN);
                         userRepository.save(u);
+                        resourceVersions.bump(ResourceVersions.USERS);
                     }
                 },
                 () -> {
@@ -38,6 +40,7 @@ public class DataInitializer {
                     admin.setPassword(passwordEncoder.encode(adminPassword));
                     admin.setRole(Role.ROLE_ADMIN);
                     userRepository.save(admin);
+                    resourceVersions.bump(ResourceVersions.USERS);
                 }
             );
         };
@@ -0,0 +1,72 @@
+package com.systemcontrol.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Включает {@link PoolAwareDataSource} поверх пула Hikari ({@code app.datasource.limiter.enabled},
+ * по умолчанию вместе с виртуальными потоками).
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.limiter.enabled", havingValue = "true")
+public class DataSourceLimiterConfig {
+
+    @Bean
+    public static BeanPostProcessor poolAwareDataSourcePostProcessor(Environment env) {
+        return new PoolAwarePostProcessor(env);
+    }
+
+    static final class PoolAwarePostProcessor implements BeanPostProcessor, Ordered {
+
+        private final Environment env;
+
+        PoolAwarePostProcessor(Environment env) {
+            this.env = env;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof HikariDataSource hikari) {
+                // by default four waiters per connection: each is served within a few short queries
+                int maxWaiting = env.getProperty("app.datasource.limiter.max-waiting", Integer.class, 4 * hikari.getMaximumPoolSize());
+                return new PoolAwareDataSource(hikari, maxWaiting);
+            }
+            return bean;
+        }
+
+        // before any other DataSource wrapper (statement counting), which would hide the Hikari type
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    /**
+     * Отказы ограничителя рядом со стандартными {@code hikaricp.connections.*}, с тем же тегом {@code pool}.
+     */
+    @Bean
+    public MeterBinder dataSourceLimiterMetrics(DataSource dataSource) {
+        return registry -> {
+            PoolAwareDataSource limiter = DataSourceUnwrapper.unwrap(dataSource, PoolAwareDataSource.class);
+            if (limiter == null) return;
+            FunctionCounter.builder("hikaricp.connections.rejected", limiter, PoolAwareDataSource::getRejectedCount)
+                .description("Connection requests rejected because too many threads were already waiting")
+                .tag("pool", limiter.getPoolName())
+                .register(registry);
+            Gauge.builder("hikaricp.connections.max.waiting", limiter, PoolAwareDataSource::getMaxWaiting)
+                .tag("pool", limiter.getPoolName())
+                .register(registry);
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.systemcontrol.backend.config;
+
+import com.systemcontrol.backend.exception.ConnectionLimitExceededException;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограничение очереди к пулу Hikari.
+ * <p>
+ * С виртуальными потоками число одновременных запросов не ограничено пулом Tomcat, и при нагрузке тысячи потоков
+ * встают в очередь к десятку соединений, держат память и все вместе получают таймаут через
+ * {@code connection-timeout}. Здесь поток, пришедший, когда ждущих уже {@code maxWaiting}, сразу получает
+ * {@link ConnectionLimitExceededException} (ответ 503). Остальные ждут в самом Hikari, как и раньше.
+ */
+public class PoolAwareDataSource extends DelegatingDataSource {
+
+    private final HikariDataSource pool;
+    private final int maxWaiting;
+    private final LongAdder rejected = new LongAdder();
+
+    public PoolAwareDataSource(HikariDataSource pool, int maxWaiting) {
+        super(pool);
+        this.pool = pool;
+        this.maxWaiting = maxWaiting;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        admit();
+        return super.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        admit();
+        return super.getConnection(username, password);
+    }
+
+    private void admit() throws SQLException {
+        HikariPoolMXBean mx = pool.getHikariPoolMXBean();
+        // null until the pool has started; the check is approximate by design, a few extra waiters are harmless
+        if (mx != null && mx.getIdleConnections() == 0 && mx.getThreadsAwaitingConnection() >= maxWaiting) {
+            rejected.increment();
+            throw new ConnectionLimitExceededException("connection pool saturated: "
+                + mx.getActiveConnections() + " active, " + mx.getThreadsAwaitingConnection() + " waiting");
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getMaxWaiting() {
+        return maxWaiting;
+    }
+
+    public String getPoolName() {
+        return pool.getPoolName();
+    }
+}
@@ -0,0 +1,135 @@
+package com.systemcontrol.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Включает чтение с реплик ({@link ReplicaRoutingDataSource}), если заданы {@code app.datasource.replica.urls}.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.datasource.replica.urls:}'.isBlank()")
+public class ReplicaRoutingConfig {
+
+    static final String DEFAULT_LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+        + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final DataSource dataSource;
+
+    public ReplicaRoutingConfig(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Bean
+    public static BeanPostProcessor replicaRoutingDataSourcePostProcessor(Environment env) {
+        return new RoutingPostProcessor(env);
+    }
+
+    static final class RoutingPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final Environment env;
+
+        RoutingPostProcessor(Environment env) {
+            this.env = env;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource primary)) return bean;
+            Map<String, DataSource> replicas = new LinkedHashMap<>();
+            String[] urls = env.getProperty("app.datasource.replica.urls", "").split(",");
+            for (String url : urls) {
+                if (url.isBlank()) continue;
+                HikariDataSource replica = new HikariDataSource();
+                replica.setPoolName("replica-" + (replicas.size() + 1));
+                replica.setJdbcUrl(url.trim());
+                replica.setUsername(env.getProperty("app.datasource.replica.username", env.getProperty("spring.datasource.username")));
+                replica.setPassword(env.getProperty("app.datasource.replica.password", env.getProperty("spring.datasource.password")));
+                replica.setMaximumPoolSize(env.getProperty("app.datasource.replica.pool-size", Integer.class, 10));
+                replica.setReadOnly(true);
+                // an unreachable replica must not stop the application; it simply gets no reads
+                replica.setInitializationFailTimeout(-1);
+                replicas.put(replica.getPoolName(), replica);
+            }
+            ReplicaRoutingDataSource router = new ReplicaRoutingDataSource(primary, replicas,
+                env.getProperty("app.datasource.replica.max-lag", Duration.class, Duration.ofSeconds(5)),
+                env.getProperty("app.datasource.replica.lag-query", DEFAULT_LAG_QUERY),
+                env.getProperty("app.datasource.replica.sticky-for", Duration.class, Duration.ofSeconds(10)));
+            return new RoutingConnectionProxy(router);
+        }
+
+        // after the pool limiter, which must still see the HikariDataSource; inside the statement counting proxy
+        @Override
+        public int getOrder() {
+            return 0;
+        }
+    }
+
+    /**
+     * Откладывает выбор базы до первого запроса транзакции и закрывает пулы реплик вместе с основным.
+     */
+    static final class RoutingConnectionProxy extends LazyConnectionDataSourceProxy implements Closeable {
+
+        private final ReplicaRoutingDataSource router;
+
+        RoutingConnectionProxy(ReplicaRoutingDataSource router) {
+            super(router);
+            this.router = router;
+        }
+
+        @Override
+        public void close() throws IOException {
+            router.close();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.check-interval:PT2S}")
+    public void checkReplicaLag() {
+        ReplicaRoutingDataSource router = ReplicaRoutingDataSource.find(dataSource);
+        if (router != null) router.checkLag();
+    }
+
+    /**
+     * Отставание и доступность каждой реплики, чтения по месту выполнения.
+     */
+    @Bean
+    public MeterBinder replicaRoutingMetrics() {
+        return registry -> {
+            ReplicaRoutingDataSource router = ReplicaRoutingDataSource.find(dataSource);
+            if (router == null) return;
+            for (ReplicaRoutingDataSource.Replica replica : router.getReplicas()) {
+                Gauge.builder("datasource.replica.lag", replica, ReplicaRoutingDataSource.Replica::getLagSeconds)
+                    .description("Replication lag measured by the last check; NaN when the replica did not answer")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.getName())
+                    .register(registry);
+                Gauge.builder("datasource.replica.available", replica, r -> r.isAvailable() ? 1 : 0)
+                    .tag("replica", replica.getName())
+                    .register(registry);
+            }
+            FunctionCounter.builder("datasource.reads", router, ReplicaRoutingDataSource::getReplicaReads)
+                .description("Connections of read-only transactions by where they were served")
+                .tag("target", "replica")
+                .register(registry);
+            FunctionCounter.builder("datasource.reads", router, ReplicaRoutingDataSource::getPrimaryReads)
+                .tag("target", "primary")
+                .register(registry);
+        };
+    }
+}
@@ -0,0 +1,208 @@
+package com.systemcontrol.backend.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Чтение с реплик PostgreSQL: соединения read-only транзакций выдаются репликой, все остальные — основной базой.
+ * <p>
+ * Снаружи стоит {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: физическое соединение
+ * берётся при первом запросе, когда флаг read-only транзакции уже выставлен. Реплика, отставшая больше {@code maxLag}
+ * или не ответившая на проверку ({@link #checkLag()}), чтений не получает; если подходящих нет — читает основная база.
+ * Пользователь читает всегда с одной и той же реплики (чтения не «откатываются назад» между запросами),
+ * а после коммита своих изменений ещё {@code stickyFor} читает с основной базы и видит их.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Duration maxLag;
+    private final String lagQuery;
+    private final Cache<String, Boolean> recentWriters;
+    private final AtomicInteger anonymousTurn = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag, String lagQuery, Duration stickyFor) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.maxLag = maxLag;
+        this.lagQuery = lagQuery;
+        this.recentWriters = Caffeine.newBuilder()
+            .expireAfterWrite(stickyFor)
+            .maximumSize(100_000)
+            .build();
+    }
+
+    /**
+     * Состояние реплики: отставание в секундах (NaN — не ответила) и получает ли она чтения.
+     */
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile double lagSeconds = Double.NaN;
+        // no reads until the first check has seen the replica in time
+        private volatile boolean available;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() { return name; }
+        public double getLagSeconds() { return lagSeconds; }
+        public boolean isAvailable() { return available; }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriter();
+            return primary.getConnection();
+        }
+        Replica replica = choose();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                // until the next check says otherwise
+                replica.available = false;
+                log.warn("Replica {} unavailable, reading from the primary: {}", replica.name, e.getMessage());
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    private Replica choose() {
+        String user = currentUser();
+        if (user != null && recentWriters.getIfPresent(user) != null) return null;
+        List<Replica> candidates = new ArrayList<>(replicas.size());
+        for (Replica r : replicas) {
+            if (r.available) candidates.add(r);
+        }
+        if (candidates.isEmpty()) return null;
+        int slot = user != null ? user.hashCode() : anonymousTurn.getAndIncrement();
+        return candidates.get(Math.floorMod(slot, candidates.size()));
+    }
+
+    // marked once the write commits: a rolled back transaction leaves nothing the replicas could miss
+    private void rememberWriter() {
+        String user = currentUser();
+        if (user == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentWriters.put(user, Boolean.TRUE);
+                }
+            });
+        } else {
+            recentWriters.put(user, Boolean.TRUE);
+        }
+    }
+
+    private static String currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.isAuthenticated() ? auth.getName() : null;
+    }
+
+    /**
+     * Измеряет отставание каждой реплики и включает или исключает её из чтения.
+     */
+    public void checkLag() {
+        for (Replica r : replicas) {
+            double lag;
+            try (Connection c = r.dataSource.getConnection(); Statement st = c.createStatement()) {
+                st.setQueryTimeout((int) Math.max(1, maxLag.toSeconds()));
+                try (ResultSet rs = st.executeQuery(lagQuery)) {
+                    lag = rs.next() ? rs.getDouble(1) : Double.NaN;
+                }
+            } catch (SQLException e) {
+                lag = Double.NaN;
+                if (r.available) log.warn("Replica {} lag check failed: {}", r.name, e.getMessage());
+            }
+            boolean inTime = !Double.isNaN(lag) && lag * 1000 <= maxLag.toMillis();
+            if (inTime != r.available) {
+                log.info("Replica {} {} (lag {} s)", r.name, inTime ? "takes reads" : "dropped from reads", lag);
+            }
+            r.lagSeconds = lag;
+            r.available = inTime;
+        }
+    }
+
+    /**
+     * Маршрутизатор за обёртками DataSource приложения (подсчёт запросов, ленивое соединение); null, если реплик нет.
+     * Через JDBC unwrap: {@code DataSourceUnwrapper} находит по нему только интерфейсы.
+     */
+    public static ReplicaRoutingDataSource find(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(ReplicaRoutingDataSource.class) ? dataSource.unwrap(ReplicaRoutingDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return List.copyOf(replicas);
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    // metrics and pool unwrapping (DataSourceUnwrapper) see through to the primary
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return (T) this;
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica r : replicas) {
+            if (r.dataSource instanceof Closeable closeable) closeable.close();
+        }
+        if (primary instanceof Closeable closeable) closeable.close();
+    }
+}
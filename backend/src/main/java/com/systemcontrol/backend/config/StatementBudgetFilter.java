@@ -0,0 +1,99 @@
+package com.systemcontrol.backend.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Считает SQL-обращения каждого запроса ({@link StatementCounter}) и сверяет их с бюджетом эндпоинта.
+ * <p>
+ * Превышение бюджета и повтор одного SELECT {@code n-plus-one-threshold} раз (типичный N+1) пишутся в лог с шаблоном
+ * пути. При {@code app.sql.statements.header} число обращений возвращается в заголовке {@link #HEADER}.
+ * Работа в асинхронной части запроса (потоковые выгрузки, SSE) идёт в других потоках и сюда не попадает.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "app.sql.statements.enabled", havingValue = "true", matchIfMissing = true)
+public class StatementBudgetFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-SQL-Statements";
+
+    private static final Logger log = LoggerFactory.getLogger(StatementBudgetFilter.class);
+    private static final int LOGGED_SQL_LENGTH = 300;
+
+    private final int defaultBudget;
+    private final Map<String, Integer> budgets;
+    private final int nPlusOneThreshold;
+    private final boolean header;
+
+    public StatementBudgetFilter(Environment env,
+                                 @Value("${app.sql.statements.budget.default:25}") int defaultBudget,
+                                 @Value("${app.sql.statements.n-plus-one-threshold:5}") int nPlusOneThreshold,
+                                 @Value("${app.sql.statements.header:false}") boolean header) {
+        this.defaultBudget = defaultBudget;
+        // keys are "METHOD /path/{template}", as the handler mapping reports them
+        this.budgets = Binder.get(env)
+            .bind("app.sql.statements.budget.endpoints", Bindable.mapOf(String.class, Integer.class))
+            .orElse(Map.of());
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.header = header;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        StatementCounter.Counts counts = StatementCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            counts.close();
+            // responses with a body got it from StatementCountHeaderAdvice before being committed
+            if (header && !response.isCommitted()) {
+                response.setHeader(HEADER, Integer.toString(counts.total()));
+            }
+            check(request, counts);
+        }
+    }
+
+    private void check(HttpServletRequest request, StatementCounter.Counts counts) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        // not routed to a handler (404, rejected by security before dispatch)
+        if (pattern == null) return;
+        String endpoint = request.getMethod() + " " + pattern;
+        int budget = budget(endpoint);
+        if (counts.total() > budget) {
+            log.warn("{} ran {} SQL statements, budget {}: {}", endpoint, counts.total(), budget, counts);
+        }
+        Map.Entry<String, Integer> repeated = counts.mostRepeatedSelect();
+        if (repeated != null && repeated.getValue() >= nPlusOneThreshold) {
+            log.warn("Possible N+1 in {}: the same SELECT ran {} times: {}", endpoint, repeated.getValue(), abbreviate(repeated.getKey()));
+        }
+    }
+
+    /** Бюджет эндпоинта вида {@code "PUT /api/defects/{id}"}. */
+    public int budget(String endpoint) {
+        return budgets.getOrDefault(endpoint, defaultBudget);
+    }
+
+    private static String abbreviate(String sql) {
+        String oneLine = sql.replaceAll("\\s+", " ").trim();
+        return oneLine.length() <= LOGGED_SQL_LENGTH ? oneLine : oneLine.substring(0, LOGGED_SQL_LENGTH) + "...";
+    }
+}
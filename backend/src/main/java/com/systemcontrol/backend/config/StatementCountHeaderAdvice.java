@@ -0,0 +1,36 @@
+package com.systemcontrol.backend.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Заголовок {@link StatementBudgetFilter#HEADER} для ответов с телом: фильтр узнаёт итог только после записи тела,
+ * когда заголовки уже отправлены, поэтому здесь берётся счёт на момент сериализации ответа.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(name = "app.sql.statements.header", havingValue = "true")
+public class StatementCountHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(@NonNull MethodParameter returnType, @NonNull Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, @NonNull MethodParameter returnType, @NonNull MediaType selectedContentType,
+                                  @NonNull Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  @NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response) {
+        StatementCounter.Counts counts = StatementCounter.current();
+        if (counts != null) {
+            response.getHeaders().set(StatementBudgetFilter.HEADER, Integer.toString(counts.total()));
+        }
+        return body;
+    }
+}
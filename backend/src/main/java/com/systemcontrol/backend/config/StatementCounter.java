@@ -0,0 +1,106 @@
+package com.systemcontrol.backend.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Счётчик SQL-обращений текущего потока (слушатель datasource-proxy).
+ * <p>
+ * Считаются обращения к БД, а не строки SQL: пачка JDBC-batch — одно обращение. Области вложенные: обращение
+ * засчитывается во все открытые области потока. Вне области слушатель ничего не делает.
+ */
+public final class StatementCounter implements QueryExecutionListener {
+
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    // distinct SELECT texts remembered per scope for the N+1 check; an export-sized scope must not grow unbounded
+    private static final int MAX_TRACKED_SELECTS = 256;
+
+    /**
+     * Открывает область подсчёта в текущем потоке; закрывать в том же потоке (try-with-resources).
+     */
+    public static Counts start() {
+        Counts counts = new Counts(CURRENT.get());
+        CURRENT.set(counts);
+        return counts;
+    }
+
+    /** Самая внутренняя открытая область потока или {@code null}. */
+    public static Counts current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Counts counts = CURRENT.get();
+        if (counts == null || queryInfoList.isEmpty()) return;
+        String sql = queryInfoList.get(0).getQuery();
+        QueryType type = QueryUtils.getQueryType(sql);
+        for (Counts c = counts; c != null; c = c.parent) {
+            c.record(type, sql);
+        }
+    }
+
+    public static final class Counts implements AutoCloseable {
+        private final Counts parent;
+        private final int[] byType = new int[QueryType.values().length];
+        private final Map<String, Integer> selects = new HashMap<>();
+        private int total;
+
+        private Counts(Counts parent) {
+            this.parent = parent;
+        }
+
+        private void record(QueryType type, String sql) {
+            total++;
+            byType[type.ordinal()]++;
+            if (type == QueryType.SELECT && (selects.size() < MAX_TRACKED_SELECTS || selects.containsKey(sql))) {
+                selects.merge(sql, 1, Integer::sum);
+            }
+        }
+
+        public int total() {
+            return total;
+        }
+
+        public int count(QueryType type) {
+            return byType[type.ordinal()];
+        }
+
+        /**
+         * Один и тот же SELECT, выполненный больше всего раз, — признак N+1; {@code null}, если SELECT не было.
+         */
+        public Map.Entry<String, Integer> mostRepeatedSelect() {
+            Map.Entry<String, Integer> max = null;
+            for (Map.Entry<String, Integer> e : selects.entrySet()) {
+                if (max == null || e.getValue() > max.getValue()) max = e;
+            }
+            return max;
+        }
+
+        @Override
+        public void close() {
+            if (CURRENT.get() == this) {
+                CURRENT.set(parent);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return total + " (select " + count(QueryType.SELECT) + ", insert " + count(QueryType.INSERT)
+                + ", update " + count(QueryType.UPDATE) + ", delete " + count(QueryType.DELETE)
+                + ", other " + count(QueryType.OTHER) + ")";
+        }
+    }
+}
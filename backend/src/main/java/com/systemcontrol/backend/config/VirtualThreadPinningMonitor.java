@@ -0,0 +1,111 @@
+package com.systemcontrol.backend.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Диагностика закрепления (pinning) виртуальных потоков: блокировка внутри {@code synchronized} или native-кадра
+ * держит поток-носитель, и при нескольких таких местах виртуальные потоки начинают ждать носителей.
+ * <p>
+ * Слушает событие JFR {@code jdk.VirtualThreadPinned} (то же, что печатает {@code -Djdk.tracePinnedThreads}, но без
+ * вывода в stdout). Первый случай для каждого места пишется в лог со стеком, повторные только считаются.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 12;
+
+    private final boolean enabled;
+    private final Duration threshold;
+    private final LongAdder total = new LongAdder();
+    private final Map<String, LongAdder> bySite = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(@Value("${app.virtual-threads.pinning-diagnostics:true}") boolean enabled,
+                                       @Value("${app.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Virtual thread pinning diagnostics on (threshold {} ms)", threshold.toMillis());
+    }
+
+    private void onPinned(RecordedEvent event) {
+        total.increment();
+        RecordedStackTrace trace = event.getStackTrace();
+        String site = trace != null ? site(trace) : "unknown";
+        LongAdder count = bySite.computeIfAbsent(site, k -> new LongAdder());
+        count.increment();
+        if (count.sum() == 1) {
+            String stack = trace == null ? "" : trace.getFrames().stream().limit(LOGGED_FRAMES)
+                .map(f -> "\n\tat " + frame(f)).collect(Collectors.joining());
+            log.warn("Virtual thread pinned its carrier for {} ms at {}{}", event.getDuration().toMillis(), site, stack);
+        }
+    }
+
+    // the first frame of our own code is what can be fixed (e.g. synchronized -> ReentrantLock); else the top frame
+    private static String site(RecordedStackTrace trace) {
+        return trace.getFrames().stream()
+            .filter(f -> f.getMethod().getType().getName().startsWith("com.systemcontrol."))
+            .findFirst()
+            .or(() -> trace.getFrames().stream().findFirst())
+            .map(VirtualThreadPinningMonitor::frame)
+            .orElse("unknown");
+    }
+
+    private static String frame(RecordedFrame f) {
+        return f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+    }
+
+    /** Всего закреплений длиннее порога с момента запуска. */
+    public long getPinnedCount() {
+        return total.sum();
+    }
+
+    /** Число закреплений по месту в коде. */
+    public Map<String, Long> getPinnedBySite() {
+        return bySite.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().sum()));
+    }
+
+    // only the total: the site is a stack frame and would make an unbounded tag
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jvm.threads.virtual.pinned", this, VirtualThreadPinningMonitor::getPinnedCount)
+            .description("Virtual thread pinnings longer than app.virtual-threads.pinning-threshold")
+            .register(registry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) stream.close();
+    }
+}
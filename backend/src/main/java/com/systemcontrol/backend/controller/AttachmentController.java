@@ -1,29 +1,49 @@
 package com.systemcontrol.backend.controller;
 
+import com.systemcontrol.backend.dto.UploadStatus;
 import com.systemcontrol.backend.model.Attachment;
+import com.systemcontrol.backend.model.AttachmentBlob;
+import com.systemcontrol.backend.model.PreviewStatus;
+import com.systemcontrol.backend.service.AttachmentStore;
 import com.systemcontrol.backend.service.FileService;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.systemcontrol.backend.service.ImageDerivativeService;
+import com.systemcontrol.backend.service.ImageVariant;
+import com.systemcontrol.backend.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/attachments")
 public class AttachmentController {
+
+    static final String UPLOAD_OFFSET = "Upload-Offset";
     
     private final FileService fileService;
+    private final AttachmentStore attachmentStore;
+    private final UploadSessionService uploadSessionService;
+    private final ImageDerivativeService imageDerivativeService;
     
-    public AttachmentController(FileService fileService) {
+    public AttachmentController(FileService fileService, AttachmentStore attachmentStore,
+                                UploadSessionService uploadSessionService, ImageDerivativeService imageDerivativeService) {
         this.fileService = fileService;
+        this.attachmentStore = attachmentStore;
+        this.uploadSessionService = uploadSessionService;
+        this.imageDerivativeService = imageDerivativeService;
     }
     
     @PostMapping("/upload/{defectId}")
@@ -36,33 +56,148 @@ public class AttachmentController {
         }
     }
     
+    /**
+     * Проверка перед загрузкой: есть ли уже содержимое с таким SHA-256 (hex, нижний регистр).
+     */
+    @GetMapping("/blobs/{hash}")
+    public ResponseEntity<?> getBlob(@PathVariable String hash) {
+        if (!AttachmentStore.isValidHash(hash)) {
+            return ResponseEntity.badRequest().body("hash must be a lowercase hex SHA-256");
+        }
+        if (!attachmentStore.contains(hash)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("hash", hash, "size", attachmentStore.size(hash)));
+    }
+
+    /**
+     * Вложение на уже имеющееся содержимое — без повторной передачи файла.
+     */
+    @PostMapping("/link/{defectId}")
+    public ResponseEntity<?> linkFile(@PathVariable Long defectId, @RequestBody LinkRequest request) throws IOException {
+        if (request.hash == null || request.fileName == null) {
+            return ResponseEntity.badRequest().body("hash and fileName are required");
+        }
+        Attachment attachment = fileService.linkExisting(request.hash, request.fileName, request.contentType, defectId);
+        if (attachment == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(attachment);
+    }
+
+    /**
+     * Начало возобновляемой загрузки; куски отправляются на {@code PATCH /uploads/{id}}.
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadStatus> createUpload(@RequestBody UploadRequest request, Authentication auth) throws IOException {
+        UploadStatus status = uploadSessionService.create(request.defectId, request.fileName, request.contentType,
+            request.size != null ? request.size : -1, auth.getName());
+        return withOffset(ResponseEntity.status(201), status);
+    }
+
+    /**
+     * Сколько байт уже принято — после обрыва клиент продолжает с этого смещения.
+     */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadStatus> getUpload(@PathVariable String uploadId, Authentication auth) throws IOException {
+        return withOffset(ResponseEntity.ok(), uploadSessionService.get(uploadId, auth.getName()));
+    }
+
+    /**
+     * Очередной кусок: сырое тело запроса, начало куска в заголовке {@code Upload-Offset}.
+     */
+    @PatchMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadStatus> appendUpload(@PathVariable String uploadId,
+                                                     @RequestHeader(UPLOAD_OFFSET) long offset,
+                                                     HttpServletRequest request, Authentication auth) throws IOException {
+        UploadStatus status = uploadSessionService.append(uploadId, auth.getName(), offset, request.getInputStream());
+        return withOffset(ResponseEntity.ok(), status);
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<Attachment> completeUpload(@PathVariable String uploadId, Authentication auth) throws IOException {
+        return ResponseEntity.ok(uploadSessionService.complete(uploadId, auth.getName()));
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId, Authentication auth) throws IOException {
+        uploadSessionService.abort(uploadId, auth.getName());
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/defect/{defectId}")
     public List<Attachment> getAttachmentsByDefect(@PathVariable Long defectId) {
         return fileService.getAttachmentsByDefectId(defectId);
     }
     
+    /**
+     * Скачивание вложения: поддерживает Range (в т.ч. несколько диапазонов), If-Range и условные запросы.
+     */
     @GetMapping("/{attachmentId}/download")
-    public ResponseEntity<Resource> downloadFile(@PathVariable Long attachmentId) {
-        try {
-            Attachment attachment = fileService.getAttachment(attachmentId);
-            if (attachment == null) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Path filePath = Paths.get(attachment.getFilePath());
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (!resource.exists()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(attachment.getContentType()))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + attachment.getOriginalFileName() + "\"")
-                    .body(resource);
-        } catch (MalformedURLException e) {
-            return ResponseEntity.badRequest().build();
+    public ResponseEntity<?> downloadFile(@PathVariable Long attachmentId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Attachment attachment = fileService.getAttachment(attachmentId);
+        if (attachment == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Path filePath = Paths.get(attachment.getFilePath());
+        if (!Files.isReadable(filePath)) {
+            return ResponseEntity.notFound().build();
         }
+
+        String contentType = attachment.getContentType() != null ? attachment.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        FileDownload.write(request, response, filePath, contentType,
+            "attachment; filename=\"" + attachment.getOriginalFileName() + "\"", attachment.getContentHash());
+        // the response is already written
+        return null;
+    }
+    
+    /**
+     * Сведения об изображении: размеры оригинала и готовность превью.
+     */
+    @GetMapping("/{attachmentId}/image")
+    public ResponseEntity<?> getImageInfo(@PathVariable Long attachmentId) {
+        Attachment attachment = fileService.getAttachment(attachmentId);
+        if (attachment == null) {
+            return ResponseEntity.notFound().build();
+        }
+        AttachmentBlob blob = imageDerivativeService.preview(attachment.getContentHash()).orElse(null);
+        if (blob == null || blob.getPreviewStatus() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", blob.getPreviewStatus());
+        body.put("width", blob.getImageWidth());
+        body.put("height", blob.getImageHeight());
+        body.put("variants", Arrays.stream(ImageVariant.values()).map(ImageVariant::key).toList());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Уменьшенная копия изображения (JPEG): {@code thumb} для списков, {@code web} для просмотра.
+     * 202 с Retry-After, пока превью готовится; 404, если превью нет и не будет.
+     */
+    @GetMapping("/{attachmentId}/derivatives/{variant}")
+    public ResponseEntity<?> downloadDerivative(@PathVariable Long attachmentId, @PathVariable String variant,
+                                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImageVariant imageVariant = ImageVariant.fromKey(variant);
+        Attachment attachment = fileService.getAttachment(attachmentId);
+        if (imageVariant == null || attachment == null) {
+            return ResponseEntity.notFound().build();
+        }
+        PreviewStatus status = imageDerivativeService.preview(attachment.getContentHash())
+            .map(AttachmentBlob::getPreviewStatus).orElse(null);
+        if (status == PreviewStatus.PENDING) {
+            return ResponseEntity.accepted().header(HttpHeaders.RETRY_AFTER, "2").build();
+        }
+        Path file = status == PreviewStatus.READY ? attachmentStore.derivativePath(attachment.getContentHash(), imageVariant) : null;
+        if (file == null || !Files.isReadable(file)) {
+            return ResponseEntity.notFound().build();
+        }
+        // derived from immutable content, so hash + variant identifies the bytes
+        FileDownload.write(request, response, file, MediaType.IMAGE_JPEG_VALUE, "inline",
+            attachment.getContentHash() + "-" + imageVariant.key());
+        return null;
     }
     
     @DeleteMapping("/{attachmentId}")
@@ -74,8 +209,21 @@ public class AttachmentController {
             return ResponseEntity.badRequest().body("Failed to delete file: " + e.getMessage());
         }
     }
-}
-
 
+    private static ResponseEntity<UploadStatus> withOffset(ResponseEntity.BodyBuilder builder, UploadStatus status) {
+        return builder.header(UPLOAD_OFFSET, Long.toString(status.getOffset())).body(status);
+    }
 
+    public static class UploadRequest {
+        public Long defectId;
+        public String fileName;
+        public String contentType;
+        public Long size;
+    }
 
+    public static class LinkRequest {
+        public String hash;
+        public String fileName;
+        public String contentType;
+    }
+}
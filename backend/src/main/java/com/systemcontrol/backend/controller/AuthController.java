@@ -42,7 +42,13 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody AuthRequest request) {
         authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
-        String token = jwtUtil.generateToken(request.getUsername());
+        String token;
+        if (jwtUtil.isEmbedClaims()) {
+            User user = userService.findByUsername(request.getUsername()).orElseThrow();
+            token = jwtUtil.generateToken(user.getUsername(), user.getId(), user.getRole());
+        } else {
+            token = jwtUtil.generateToken(request.getUsername());
+        }
         return ResponseEntity.ok(new AuthResponse(token));
     }
 }
@@ -0,0 +1,39 @@
+package com.systemcontrol.backend.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Instant;
+
+/**
+ * Условные GET для JSON-ресурсов: слабый ETag из версии изменений, ответ 304 до чтения сущностей и сериализации.
+ * <p>
+ * Ответы помечаются {@code private, no-cache}: браузер хранит копию и перед каждым использованием переспрашивает
+ * с If-None-Match. Spring Security в таком случае не подменяет Cache-Control своим {@code no-store}.
+ */
+final class ConditionalGet {
+
+    static final String CACHE_CONTROL = "private, no-cache";
+
+    private ConditionalGet() {}
+
+    /**
+     * Выставляет ETag (и Last-Modified, если известно) и проверяет предусловия запроса.
+     *
+     * @return {@code true}, если ответ 304 уже выставлен и обработчик должен вернуть {@code null}
+     */
+    static boolean notModified(ServletWebRequest request, String version, Instant lastModified) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        String etag = "W/\"" + version + "\"";
+        return lastModified != null
+            ? request.checkNotModified(etag, lastModified.toEpochMilli())
+            : request.checkNotModified(etag);
+    }
+
+    /** Запрос с предусловиями: стоит сначала спросить версию, а сущность читать только при изменении. */
+    static boolean isConditional(ServletWebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+}
@@ -1,23 +1,55 @@
 package com.systemcontrol.backend.controller;
 
+import com.systemcontrol.backend.dto.BulkDefectReport;
+import com.systemcontrol.backend.dto.BulkDefectRequest;
+import com.systemcontrol.backend.dto.DefectFilter;
+import com.systemcontrol.backend.dto.DefectPage;
 import com.systemcontrol.backend.dto.DefectRequest;
+import com.systemcontrol.backend.dto.DefectSearchPage;
+import com.systemcontrol.backend.exception.DefectConflictException;
 import com.systemcontrol.backend.model.Defect;
 import com.systemcontrol.backend.model.Priority;
 import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.service.DefectBulkService;
+import com.systemcontrol.backend.service.DefectChangeFeed;
+import com.systemcontrol.backend.service.DefectImportService;
+import com.systemcontrol.backend.service.DefectSearchService;
 import com.systemcontrol.backend.service.DefectService;
+import com.systemcontrol.backend.service.DefectStatsService;
 import jakarta.validation.Valid;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.net.URI;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/defects")
 public class DefectController {
     private final DefectService defectService;
+    private final DefectImportService defectImportService;
+    private final DefectChangeFeed changeFeed;
+    private final DefectSearchService searchService;
+    private final DefectBulkService bulkService;
 
-    public DefectController(DefectService defectService) { this.defectService = defectService; }
+    public DefectController(DefectService defectService, DefectImportService defectImportService,
+                            DefectChangeFeed changeFeed, DefectSearchService searchService, DefectBulkService bulkService) {
+        this.defectService = defectService;
+        this.defectImportService = defectImportService;
+        this.changeFeed = changeFeed;
+        this.searchService = searchService;
+        this.bulkService = bulkService;
+    }
 
     @PostMapping
     public ResponseEntity<?> create(@Valid @RequestBody DefectRequest req) {
@@ -34,19 +66,96 @@ public class DefectController {
         return ResponseEntity.created(URI.create("/api/defects/" + created.getId())).body(created);
     }
 
+    /**
+     * Массовая загрузка дефектов из CSV или XLSX. Возвращает отчёт с ошибками по строкам
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> bulkImport(@RequestParam("file") MultipartFile file) {
+        try {
+            return ResponseEntity.ok(defectImportService.importFile(file));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Failed to import file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Массовая смена статуса, исполнителя, приоритета или срока у дефектов по списку id или фильтру.
+     * Возвращает результат по каждому дефекту
+     */
+    @PostMapping("/bulk-update")
+    public BulkDefectReport bulkUpdate(@Valid @RequestBody BulkDefectRequest request) {
+        return bulkService.apply(request);
+    }
+
+    /**
+     * Постраничный список дефектов с фильтрами (keyset-пагинация).
+     * ETag — версия изменений дефектов проекта из фильтра (без проекта — всех дефектов), 304 без выборки страницы.
+     */
     @GetMapping
-    public List<Defect> list(@RequestParam(required = false) Long projectId) {
+    public DefectPage list(DefectFilter filter,
+                           @RequestParam(defaultValue = DefectService.SORT_ID) String sort,
+                           @RequestParam(required = false) String cursor,
+                           @RequestParam(defaultValue = "50") int limit,
+                           ServletWebRequest request) {
+        // read before the page, so the tag is never newer than the body it is sent with
+        Optional<DefectStatsService.ChangeVersion> version = defectService.listVersion(filter.getProjectId());
+        if (version.isPresent() && ConditionalGet.notModified(request, "defects." + version.get().tag(), version.get().lastModified())) {
+            return null;
+        }
+        return defectService.listPage(filter, sort, cursor, limit);
+    }
+
+    /**
+     * Старый режим: весь список одним массивом. Включается параметром legacy=true
+     */
+    @GetMapping(params = "legacy=true")
+    public List<Defect> listLegacy(@RequestParam(required = false) Long projectId) {
         if (projectId != null) return defectService.listByProject(projectId);
         return defectService.listAll();
     }
 
+    /**
+     * Лента изменений дефектов (SSE) вместо периодического опроса списка.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) Long projectId) {
+        return changeFeed.subscribe(projectId);
+    }
+
+    /**
+     * Полнотекстовый поиск по названию, описанию и комментариям; результаты по убыванию релевантности
+     * с подсвеченными фрагментами, следующая страница — по {@code cursor}.
+     */
+    @GetMapping("/search")
+    public DefectSearchPage search(@RequestParam String q,
+                                   @RequestParam(required = false) Long projectId,
+                                   @RequestParam(required = false) String cursor,
+                                   @RequestParam(defaultValue = "20") int limit) {
+        return searchService.search(q, projectId, cursor, limit);
+    }
+
+    /**
+     * Дефект по id; ETag и Last-Modified — по {@code updatedAt}. На запрос с If-None-Match сначала читается только он.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<?> get(@PathVariable Long id) {
+    public ResponseEntity<?> get(@PathVariable Long id, ServletWebRequest request) {
+        if (ConditionalGet.isConditional(request)) {
+            Optional<Instant> updatedAt = defectService.updatedAt(id);
+            if (updatedAt.isPresent() && ConditionalGet.notModified(request, etag(id, updatedAt.get()), updatedAt.get())) {
+                return null;
+            }
+        }
         Defect d = defectService.get(id);
         if (d == null) return ResponseEntity.notFound().build();
+        if (d.getUpdatedAt() != null) ConditionalGet.notModified(request, etag(id, d.getUpdatedAt()), d.getUpdatedAt());
         return ResponseEntity.ok(d);
     }
 
+    private static String etag(Long id, Instant updatedAt) {
+        // microseconds: what PostgreSQL keeps of the timestamp
+        return "defect." + id + "." + ChronoUnit.MICROS.between(Instant.EPOCH, updatedAt);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> delete(@PathVariable Long id) { defectService.delete(id); return ResponseEntity.noContent().build(); }
 
@@ -99,6 +208,17 @@ public class DefectController {
         }
     }
     
+    /**
+     * Дефект изменили параллельно: 409 с его текущим состоянием, чтобы клиент мог повторить действие над ним.
+     */
+    @ExceptionHandler({DefectConflictException.class, ObjectOptimisticLockingFailureException.class})
+    public ResponseEntity<ConflictResponse> conflict(RuntimeException e) {
+        Long id = e instanceof DefectConflictException c ? c.getDefectId()
+            : (Long) ((ObjectOptimisticLockingFailureException) e).getIdentifier();
+        String message = e instanceof DefectConflictException ? e.getMessage() : "Дефект уже изменён другим пользователем";
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new ConflictResponse(message, id != null ? defectService.current(id) : null));
+    }
+
     /**
      * Получает роль текущего пользователя из Security Context
      */
@@ -152,4 +272,14 @@ public class DefectController {
             this.message = message;
         }
     }
+
+    public static class ConflictResponse {
+        public final String message;
+        public final com.systemcontrol.backend.model.Defect current;
+
+        public ConflictResponse(String message, com.systemcontrol.backend.model.Defect current) {
+            this.message = message;
+            this.current = current;
+        }
+    }
 }
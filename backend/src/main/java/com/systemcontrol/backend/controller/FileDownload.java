@@ -0,0 +1,175 @@
+package com.systemcontrol.backend.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Отдача файла с диска с условными запросами (ETag / Last-Modified), Range и multi-range.
+ * <p>
+ * Одиночный диапазон от 48 КБ отдаётся через sendfile Tomcat (без копирования в JVM), если коннектор его поддерживает.
+ * Иначе, как и для multipart/byteranges, байты копируются в поток ответа сервлета через буфер в heap.
+ */
+final class FileDownload {
+
+    // Tomcat request attributes for zero-copy transfer (see org.apache.coyote.Constants / DefaultServlet)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // for small files a plain write is cheaper than handing the file to the poller (Tomcat's default threshold)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+    // matches the connector's socket buffer so a chunk becomes one write
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    // files are stored under unique names and never rewritten, so a cached copy only needs revalidation after an hour
+    static final String CACHE_CONTROL = "private, max-age=3600";
+
+    private FileDownload() {}
+
+    /**
+     * @param contentHash хэш содержимого, если файл из контентно-адресуемого хранилища; он и служит ETag
+     */
+    static void write(HttpServletRequest request, HttpServletResponse response, Path file,
+                      String contentType, String contentDisposition, String contentHash) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String etag = contentHash != null ? "\"" + contentHash + "\"" : etag(file, length, lastModified);
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        // sets ETag / Last-Modified and answers 304 or 412 when the preconditions say so
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, etag, lastModified)) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            sendFile(request, response, file, 0, length);
+            return;
+        }
+
+        List<long[]> ranges = new ArrayList<>();
+        try {
+            long total = 0;
+            for (HttpRange range : HttpRange.parseRanges(rangeHeader)) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start > end) throw new IllegalArgumentException("range starts past the end of the file");
+                total += end - start + 1;
+                ranges.add(new long[]{start, end});
+            }
+            // overlapping ranges must not turn one request into many copies of the file
+            if (ranges.isEmpty() || total > length) throw new IllegalArgumentException("ranges exceed file length");
+        } catch (IllegalArgumentException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return;
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        if (ranges.size() == 1) {
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+            response.setContentLengthLong(end - start + 1);
+            sendFile(request, response, file, start, end - start + 1);
+            return;
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if (isHead(request)) return;
+        OutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER);
+            for (long[] range : ranges) {
+                String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range[0], range[1], length) + "\r\n\r\n";
+                out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+                copy(channel, range[0], range[1] - range[0] + 1, out, buffer);
+            }
+            out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Сильный валидатор для файлов до контентно-адресуемого хранилища: имя файла уникально, а содержимое
+     * не перезаписывается, поэтому имя, размер и время изменения однозначно определяют байты.
+     */
+    static String etag(Path file, long length, long lastModified) {
+        return "\"" + Integer.toHexString(file.getFileName().toString().hashCode())
+            + "-" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range uses strong comparison, a weak tag never matches
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String contentRange(long start, long end, long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    private static boolean isHead(HttpServletRequest request) {
+        return "HEAD".equals(request.getMethod());
+    }
+
+    private static void sendFile(HttpServletRequest request, HttpServletResponse response, Path file, long start, long count) throws IOException {
+        if (isHead(request) || count == 0) return;
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // the connector writes the region itself after the handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            copy(channel, start, count, response.getOutputStream(), ByteBuffer.allocate((int) Math.min(count, COPY_BUFFER)));
+        }
+    }
+
+    // the servlet stream only takes byte arrays, so transferTo into a channel wrapper would add a second copy, not remove one
+    private static void copy(FileChannel channel, long position, long count, OutputStream out, ByteBuffer buffer) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) throw new IOException("file shrank while being sent");
+            out.write(buffer.array(), 0, read);
+            position += read;
+        }
+    }
+}
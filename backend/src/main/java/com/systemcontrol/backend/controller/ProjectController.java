@@ -5,6 +5,7 @@ import com.systemcontrol.backend.model.Project;
 import com.systemcontrol.backend.service.ProjectService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.net.URI;
 import java.util.List;
@@ -19,7 +20,10 @@ public class ProjectController {
     }
 
     @GetMapping
-    public List<Project> list() { return projectService.list(); }
+    public List<Project> list(ServletWebRequest request) {
+        if (ConditionalGet.notModified(request, "projects." + projectService.version(), null)) return null;
+        return projectService.list();
+    }
 
     @PostMapping
     public ResponseEntity<?> create(@RequestBody ProjectRequest req) {
@@ -31,7 +35,9 @@ public class ProjectController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> get(@PathVariable Long id) {
+    public ResponseEntity<?> get(@PathVariable Long id, ServletWebRequest request) {
+        // any project change raises the list version; good enough for a table this small and this rarely written
+        if (ConditionalGet.notModified(request, "projects." + projectService.version(), null)) return null;
         Project p = projectService.get(id);
         if (p == null) return ResponseEntity.notFound().build();
         return ResponseEntity.ok(p);
@@ -2,6 +2,8 @@ package com.systemcontrol.backend.controller;
 
 import com.systemcontrol.backend.model.Role;
 import com.systemcontrol.backend.repository.UserRepository;
+import com.systemcontrol.backend.security.CaffeineUserCache;
+import com.systemcontrol.backend.service.ResourceVersions;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -11,8 +13,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -20,15 +24,20 @@ import java.util.stream.Collectors;
 public class UserController {
 
     private final UserRepository userRepository;
+    private final CaffeineUserCache userCache;
+    private final ResourceVersions resourceVersions;
 
-    public UserController(UserRepository userRepository) {
+    public UserController(UserRepository userRepository, CaffeineUserCache userCache, ResourceVersions resourceVersions) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.resourceVersions = resourceVersions;
     }
 
     public static record UserDto(Long id, String username, String role) {}
 
     @GetMapping
-    public List<UserDto> list() {
+    public List<UserDto> list(ServletWebRequest request) {
+        if (ConditionalGet.notModified(request, "users." + resourceVersions.current(ResourceVersions.USERS), null)) return null;
         return userRepository.findAll().stream()
                 .map(u -> new UserDto(u.getId(), u.getUsername(), u.getRole() != null ? u.getRole().name() : null))
                 .collect(Collectors.toList());
@@ -43,14 +52,33 @@ public class UserController {
         if (user == null) return ResponseEntity.notFound().build();
         user.setRole(req.role());
         userRepository.save(user);
+        resourceVersions.bump(ResourceVersions.USERS);
+        // the JWT filter must not keep serving the old authorities
+        userCache.removeUserFromCache(user.getUsername());
         return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<?> delete(@PathVariable Long id) {
-        if (!userRepository.existsById(id)) return ResponseEntity.notFound().build();
-        userRepository.deleteById(id);
+        var user = userRepository.findById(id).orElse(null);
+        if (user == null) return ResponseEntity.notFound().build();
+        userRepository.delete(user);
+        resourceVersions.bump(ResourceVersions.USERS);
+        userCache.removeUserFromCache(user.getUsername());
         return ResponseEntity.noContent().build();
     }
+
+    @GetMapping("/cache-stats")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> cacheStats() {
+        var stats = userCache.stats();
+        return Map.of(
+            "size", userCache.estimatedSize(),
+            "hitCount", stats.hitCount(),
+            "missCount", stats.missCount(),
+            "hitRate", stats.hitRate(),
+            "evictionCount", stats.evictionCount()
+        );
+    }
 }
@@ -0,0 +1,38 @@
+package com.systemcontrol.backend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Итог массовой операции: счётчики и результат по каждому выбранному дефекту в порядке выбора.
+ */
+public class BulkDefectReport {
+    public enum Outcome { UPDATED, UNCHANGED, NOT_FOUND, INVALID_TRANSITION, FAILED }
+
+    public static record Result(long id, Outcome outcome, String message) {}
+
+    private final long selected;
+    private long updated;
+    private long unchanged;
+    private long failed;
+    private final List<Result> results = new ArrayList<>();
+
+    public BulkDefectReport(long selected) {
+        this.selected = selected;
+    }
+
+    public void add(Result result) {
+        switch (result.outcome()) {
+            case UPDATED -> updated++;
+            case UNCHANGED -> unchanged++;
+            default -> failed++;
+        }
+        results.add(result);
+    }
+
+    public long getSelected() { return selected; }
+    public long getUpdated() { return updated; }
+    public long getUnchanged() { return unchanged; }
+    public long getFailed() { return failed; }
+    public List<Result> getResults() { return results; }
+}
@@ -0,0 +1,31 @@
+package com.systemcontrol.backend.dto;
+
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Массовая операция над дефектами (POST /api/defects/bulk-update). Дефекты выбираются либо списком {@code ids},
+ * либо фильтром {@code filter} (те же поля, что у списка дефектов). Значение берётся из поля, соответствующего операции:
+ * {@code status}, {@code assigneeId} (null — снять исполнителя), {@code priority} или {@code dueDate} (null — убрать срок).
+ */
+public class BulkDefectRequest {
+    public enum Operation { STATUS, ASSIGN, PRIORITY, DUE_DATE }
+
+    public List<Long> ids;
+    public DefectFilter filter;
+
+    @NotNull(message = "Operation is required")
+    public Operation operation;
+
+    public DefectStatus status;
+    public Long assigneeId;
+    public Priority priority;
+    public Instant dueDate;
+
+    // author of the history rows, as in the single-defect status endpoints
+    public Long userId;
+}
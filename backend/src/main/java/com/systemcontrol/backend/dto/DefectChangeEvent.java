@@ -0,0 +1,85 @@
+package com.systemcontrol.backend.dto;
+
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectHistory;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Компактное изменение дефекта для ленты событий: текущие ключевые поля плюс список изменённых полей.
+ * Заголовок и описание не передаются: смена заголовка попадает в список без значений,
+ * клиенту достаточно перечитать дефект, если они нужны.
+ */
+public class DefectChangeEvent {
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String DELETED = "DELETED";
+
+    private final String type;
+    private final Long defectId;
+    private final Long projectId;
+    private final DefectStatus status;
+    private final Priority priority;
+    private final Long assigneeId;
+    private final Instant updatedAt;
+    private final List<FieldChange> changes;
+
+    public DefectChangeEvent(String type, Long defectId, Long projectId, DefectStatus status, Priority priority,
+                             Long assigneeId, Instant updatedAt, List<FieldChange> changes) {
+        this.type = type;
+        this.defectId = defectId;
+        this.projectId = projectId;
+        this.status = status;
+        this.priority = priority;
+        this.assigneeId = assigneeId;
+        this.updatedAt = updatedAt;
+        this.changes = changes;
+    }
+
+    public static DefectChangeEvent of(String type, Defect d, List<FieldChange> changes) {
+        return new DefectChangeEvent(type, d.getId(), d.getProjectId(), d.getStatus(), d.getPriority(),
+            d.getAssigneeId(), d.getUpdatedAt(), changes);
+    }
+
+    public String getType() { return type; }
+    public Long getDefectId() { return defectId; }
+    public Long getProjectId() { return projectId; }
+    public DefectStatus getStatus() { return status; }
+    public Priority getPriority() { return priority; }
+    public Long getAssigneeId() { return assigneeId; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public List<FieldChange> getChanges() { return changes; }
+
+    /**
+     * Изменение одного поля (то же, что пишется в историю дефекта, но для заголовка — без значений).
+     */
+    public static class FieldChange {
+        private final String field;
+        private final String oldValue;
+        private final String newValue;
+        private final String action;
+
+        public FieldChange(String field, String oldValue, String newValue, String action) {
+            this.field = field;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+            this.action = action;
+        }
+
+        public static FieldChange of(DefectHistory h) {
+            // free text stays out of the broadcast; the field name is enough for the client to re-read the defect
+            if ("title".equals(h.getFieldName())) {
+                return new FieldChange(h.getFieldName(), null, null, h.getAction());
+            }
+            return new FieldChange(h.getFieldName(), h.getOldValue(), h.getNewValue(), h.getAction());
+        }
+
+        public String getField() { return field; }
+        public String getOldValue() { return oldValue; }
+        public String getNewValue() { return newValue; }
+        public String getAction() { return action; }
+    }
+}
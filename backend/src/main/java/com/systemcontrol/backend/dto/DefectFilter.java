@@ -0,0 +1,35 @@
+package com.systemcontrol.backend.dto;
+
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Фильтры постраничного списка дефектов (GET /api/defects). Все поля необязательны.
+ */
+public class DefectFilter {
+    private Long projectId;
+    private List<DefectStatus> status;
+    private List<Priority> priority;
+    private Long assigneeId;
+    private Instant dueFrom;
+    private Instant dueTo;
+    private Instant updatedSince;
+
+    public Long getProjectId() { return projectId; }
+    public void setProjectId(Long projectId) { this.projectId = projectId; }
+    public List<DefectStatus> getStatus() { return status; }
+    public void setStatus(List<DefectStatus> status) { this.status = status; }
+    public List<Priority> getPriority() { return priority; }
+    public void setPriority(List<Priority> priority) { this.priority = priority; }
+    public Long getAssigneeId() { return assigneeId; }
+    public void setAssigneeId(Long assigneeId) { this.assigneeId = assigneeId; }
+    public Instant getDueFrom() { return dueFrom; }
+    public void setDueFrom(Instant dueFrom) { this.dueFrom = dueFrom; }
+    public Instant getDueTo() { return dueTo; }
+    public void setDueTo(Instant dueTo) { this.dueTo = dueTo; }
+    public Instant getUpdatedSince() { return updatedSince; }
+    public void setUpdatedSince(Instant updatedSince) { this.updatedSince = updatedSince; }
+}
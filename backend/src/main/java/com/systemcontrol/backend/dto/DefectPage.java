@@ -0,0 +1,22 @@
+package com.systemcontrol.backend.dto;
+
+import com.systemcontrol.backend.model.Defect;
+
+import java.util.List;
+
+/**
+ * Страница дефектов. {@code nextCursor} передаётся в следующий запрос как {@code cursor};
+ * null означает, что страниц больше нет.
+ */
+public class DefectPage {
+    private final List<Defect> items;
+    private final String nextCursor;
+
+    public DefectPage(List<Defect> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Defect> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+}
@@ -0,0 +1,20 @@
+package com.systemcontrol.backend.dto;
+
+import java.util.List;
+
+/**
+ * Страница результатов поиска по убыванию релевантности. {@code nextCursor} передаётся в следующий запрос
+ * как {@code cursor}; null означает, что результатов больше нет.
+ */
+public class DefectSearchPage {
+    private final List<DefectSearchResult> items;
+    private final String nextCursor;
+
+    public DefectSearchPage(List<DefectSearchResult> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<DefectSearchResult> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+}
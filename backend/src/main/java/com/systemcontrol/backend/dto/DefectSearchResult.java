@@ -0,0 +1,44 @@
+package com.systemcontrol.backend.dto;
+
+/**
+ * Найденный дефект. {@code titleHighlight} и {@code snippet} — HTML: исходный текст экранирован,
+ * совпадения обёрнуты в {@code <mark>}.
+ */
+public class DefectSearchResult {
+    public static final String MATCHED_DEFECT = "defect";
+    public static final String MATCHED_COMMENT = "comment";
+
+    private final Long id;
+    private final Long projectId;
+    private final String title;
+    private final String status;
+    private final String priority;
+    private final float rank;
+    private final String titleHighlight;
+    private final String snippet;
+    private final String matchedIn;
+
+    public DefectSearchResult(Long id, Long projectId, String title, String status, String priority, float rank,
+                              String titleHighlight, String snippet, String matchedIn) {
+        this.id = id;
+        this.projectId = projectId;
+        this.title = title;
+        this.status = status;
+        this.priority = priority;
+        this.rank = rank;
+        this.titleHighlight = titleHighlight;
+        this.snippet = snippet;
+        this.matchedIn = matchedIn;
+    }
+
+    public Long getId() { return id; }
+    public Long getProjectId() { return projectId; }
+    public String getTitle() { return title; }
+    public String getStatus() { return status; }
+    public String getPriority() { return priority; }
+    public float getRank() { return rank; }
+    public String getTitleHighlight() { return titleHighlight; }
+    public String getSnippet() { return snippet; }
+    /** Где найдено совпадение: {@value #MATCHED_DEFECT} (название/описание) или {@value #MATCHED_COMMENT}. */
+    public String getMatchedIn() { return matchedIn; }
+}
@@ -0,0 +1,42 @@
+package com.systemcontrol.backend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Итог массовой загрузки дефектов. Номера строк считаются от начала файла (строка заголовка = 1).
+ */
+public class ImportReport {
+    public static final int MAX_ERRORS = 1000;
+
+    public static record RowError(long row, String message) {}
+
+    private long totalRows;
+    private long imported;
+    private long failed;
+    private boolean errorsTruncated;
+    private long notProcessed;
+    private String abortReason;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public void countRow() { totalRows++; }
+    public void countImported(int n) { imported += n; }
+
+    public void addError(long row, String message) {
+        failed++;
+        if (errors.size() < MAX_ERRORS) errors.add(new RowError(row, message));
+        else errorsTruncated = true;
+    }
+
+    /** Загрузка остановлена (БД недоступна): оставшиеся строки не обработаны. */
+    public void abort(String reason) { abortReason = reason; }
+    public void countNotProcessed(long n) { notProcessed += n; }
+
+    public long getTotalRows() { return totalRows; }
+    public long getImported() { return imported; }
+    public long getFailed() { return failed; }
+    public boolean isErrorsTruncated() { return errorsTruncated; }
+    public long getNotProcessed() { return notProcessed; }
+    public String getAbortReason() { return abortReason; }
+    public List<RowError> getErrors() { return errors; }
+}
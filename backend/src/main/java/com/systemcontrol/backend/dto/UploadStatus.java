@@ -0,0 +1,25 @@
+package com.systemcontrol.backend.dto;
+
+import java.time.Instant;
+
+/**
+ * Состояние возобновляемой загрузки: с {@code offset} клиент продолжает передачу.
+ */
+public class UploadStatus {
+    private final String id;
+    private final long offset;
+    private final long size;
+    private final Instant expiresAt;
+
+    public UploadStatus(String id, long offset, long size, Instant expiresAt) {
+        this.id = id;
+        this.offset = offset;
+        this.size = size;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() { return id; }
+    public long getOffset() { return offset; }
+    public long getSize() { return size; }
+    public Instant getExpiresAt() { return expiresAt; }
+}
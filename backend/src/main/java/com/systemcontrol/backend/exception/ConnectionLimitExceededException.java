@@ -0,0 +1,13 @@
+package com.systemcontrol.backend.exception;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Соединение не выдано: в очереди к пулу уже слишком много потоков. Запрос отклоняется сразу (503),
+ * а не ждёт таймаута пула.
+ */
+public class ConnectionLimitExceededException extends SQLTransientConnectionException {
+    public ConnectionLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.systemcontrol.backend.exception;
+
+/**
+ * Дефект изменён другим пользователем между чтением и записью: переход статуса не застал ожидаемый статус
+ * или версия правки устарела. Отвечается 409 с текущим состоянием дефекта.
+ */
+public class DefectConflictException extends RuntimeException {
+    private final Long defectId;
+
+    public DefectConflictException(Long defectId, String message) {
+        super(message);
+        this.defectId = defectId;
+    }
+
+    public Long getDefectId() { return defectId; }
+}
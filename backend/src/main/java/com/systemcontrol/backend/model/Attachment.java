@@ -7,7 +7,8 @@ import java.time.Instant;
 @Table(name = "attachments")
 public class Attachment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "attachments_seq")
+    @SequenceGenerator(name = "attachments_seq", sequenceName = "attachments_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -28,6 +29,10 @@ public class Attachment {
     @Column(nullable = false)
     private Long defectId;
 
+    // SHA-256 of the content; null for files stored before the content-addressed store
+    @Column(length = 64)
+    private String contentHash;
+
     private Instant uploadedAt = Instant.now();
 
     public Attachment() {}
@@ -35,6 +40,9 @@ public class Attachment {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
     public String getFileName() { return fileName; }
     public void setFileName(String fileName) { this.fileName = fileName; }
 
@@ -0,0 +1,57 @@
+package com.systemcontrol.backend.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Содержимое вложения в контентно-адресуемом хранилище: один файл на SHA-256,
+ * {@code refCount} — число вложений, которые на него ссылаются.
+ */
+@Entity
+@Table(name = "attachment_blobs")
+public class AttachmentBlob {
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(nullable = false)
+    private Integer refCount = 0;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    // null: not an image, no derivatives
+    @Enumerated(EnumType.STRING)
+    @Column(columnDefinition = "varchar(16)")
+    private PreviewStatus previewStatus;
+
+    private Integer imageWidth;
+
+    private Integer imageHeight;
+
+    public AttachmentBlob() {}
+
+    public String getHash() { return hash; }
+    public void setHash(String hash) { this.hash = hash; }
+
+    public Long getSize() { return size; }
+    public void setSize(Long size) { this.size = size; }
+
+    public Integer getRefCount() { return refCount; }
+    public void setRefCount(Integer refCount) { this.refCount = refCount; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public PreviewStatus getPreviewStatus() { return previewStatus; }
+    public void setPreviewStatus(PreviewStatus previewStatus) { this.previewStatus = previewStatus; }
+
+    public Integer getImageWidth() { return imageWidth; }
+    public void setImageWidth(Integer imageWidth) { this.imageWidth = imageWidth; }
+
+    public Integer getImageHeight() { return imageHeight; }
+    public void setImageHeight(Integer imageHeight) { this.imageHeight = imageHeight; }
+}
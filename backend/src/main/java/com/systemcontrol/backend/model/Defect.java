@@ -4,10 +4,17 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "defects")
+// mirrors V15 (the partial open-status indexes exist only in PostgreSQL)
+@Table(name = "defects", indexes = {
+    @Index(name = "idx_defects_project_id", columnList = "projectId, id"),
+    @Index(name = "idx_defects_project_updated", columnList = "projectId, updatedAt desc, id desc"),
+    @Index(name = "idx_defects_assignee_updated", columnList = "assigneeId, updatedAt desc, id desc"),
+    @Index(name = "idx_defects_updated", columnList = "updatedAt desc, id desc")
+})
 public class Defect {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "defects_seq")
+    @SequenceGenerator(name = "defects_seq", sequenceName = "defects_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 500)
@@ -31,6 +38,11 @@ public class Defect {
     private Instant createdAt = Instant.now();
     private Instant updatedAt = Instant.now();
 
+    // sent back with PUT: a stale value is rejected with 409 instead of overwriting someone else's edit
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public Defect() {}
 
     // getters and setters
@@ -54,4 +66,6 @@ public class Defect {
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
     public Instant getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
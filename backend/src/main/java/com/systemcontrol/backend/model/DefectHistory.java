@@ -7,7 +7,8 @@ import java.time.Instant;
 @Table(name = "defect_history")
 public class DefectHistory {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "defect_history_seq")
+    @SequenceGenerator(name = "defect_history_seq", sequenceName = "defect_history_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,10 @@
+package com.systemcontrol.backend.model;
+
+/**
+ * Состояние производных изображений (превью) для содержимого вложения.
+ */
+public enum PreviewStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -0,0 +1,48 @@
+package com.systemcontrol.backend.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Отображение таблицы {@code project_defect_stats} (счётчики дефектов проекта по статусам и приоритетам) без методов:
+ * таблицу читает и изменяет нативным SQL {@code DefectStatsService}, а сущность нужна только затем, чтобы Hibernate
+ * создал таблицу в тестах (create-drop) и сверил её со схемой Flyway при старте (validate).
+ */
+@Entity
+@Table(name = "project_defect_stats")
+public class ProjectDefectStats {
+    @Id
+    private Long projectId;
+
+    @Column(nullable = false)
+    private long total;
+
+    @Column(nullable = false)
+    private long statusNew;
+    @Column(nullable = false)
+    private long statusInProgress;
+    @Column(nullable = false)
+    private long statusInReview;
+    @Column(nullable = false)
+    private long statusClosed;
+    @Column(nullable = false)
+    private long statusCancelled;
+
+    @Column(nullable = false)
+    private long priorityLow;
+    @Column(nullable = false)
+    private long priorityMedium;
+    @Column(nullable = false)
+    private long priorityHigh;
+    @Column(nullable = false)
+    private long priorityCritical;
+
+    // raised by every defect change in the project, also those that leave the counters as they are
+    @Column(nullable = false)
+    private long changeVersion;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    protected ProjectDefectStats() {}
+}
@@ -0,0 +1,22 @@
+package com.systemcontrol.backend.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Версия изменений ресурса ({@code projects}, {@code users}): растёт при каждой записи, служит ETag списка.
+ */
+@Entity
+@Table(name = "resource_versions")
+public class ResourceVersion {
+    @Id
+    @Column(length = 64)
+    private String resource;
+
+    @Column(nullable = false)
+    private long version;
+
+    public ResourceVersion() {}
+
+    public String getResource() { return resource; }
+    public long getVersion() { return version; }
+}
@@ -0,0 +1,62 @@
+package com.systemcontrol.backend.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Незавершённая возобновляемая загрузка. Принятое число байт — это размер файла-части на диске.
+ */
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSession {
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false)
+    private Long defectId;
+
+    @Column(nullable = false)
+    private String originalFileName;
+
+    @Column(length = 100)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long totalSize;
+
+    @Column(nullable = false, length = 100)
+    private String owner;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    public UploadSession() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Long getDefectId() { return defectId; }
+    public void setDefectId(Long defectId) { this.defectId = defectId; }
+
+    public String getOriginalFileName() { return originalFileName; }
+    public void setOriginalFileName(String originalFileName) { this.originalFileName = originalFileName; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public Long getTotalSize() { return totalSize; }
+    public void setTotalSize(Long totalSize) { this.totalSize = totalSize; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,50 @@
+package com.systemcontrol.backend.repository;
+
+import com.systemcontrol.backend.model.AttachmentBlob;
+import com.systemcontrol.backend.model.PreviewStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// Reference counts are changed with single UPDATE statements; the row lock they take orders
+// concurrent uploads and deletes of the same content
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, String> {
+
+    // 1 if this call created the row (the caller then owns putting the file in place), 0 if it already existed
+    @Modifying
+    @Query(value = "insert into attachment_blobs (hash, size, ref_count, created_at) values (:hash, :size, 0, current_timestamp) on conflict do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("hash") String hash, @Param("size") long size);
+
+    @Modifying
+    @Query("update AttachmentBlob b set b.refCount = b.refCount + 1 where b.hash = :hash")
+    int incrementRefCount(@Param("hash") String hash);
+
+    @Modifying
+    @Query("update AttachmentBlob b set b.refCount = b.refCount - 1 where b.hash = :hash and b.refCount > 0")
+    int decrementRefCount(@Param("hash") String hash);
+
+    @Modifying
+    @Query("delete from AttachmentBlob b where b.hash = :hash and b.refCount = 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    // 1 for the caller that claims the content for the preview pipeline; a second upload of the same content gets 0
+    @Transactional
+    @Modifying
+    @Query("update AttachmentBlob b set b.previewStatus = com.systemcontrol.backend.model.PreviewStatus.PENDING where b.hash = :hash and b.previewStatus is null")
+    int markPreviewPending(@Param("hash") String hash);
+
+    // 0 if the blob was deleted while its derivatives were being made
+    @Transactional
+    @Modifying
+    @Query("update AttachmentBlob b set b.previewStatus = :status, b.imageWidth = :width, b.imageHeight = :height where b.hash = :hash")
+    int updatePreview(@Param("hash") String hash, @Param("status") PreviewStatus status,
+                      @Param("width") Integer width, @Param("height") Integer height);
+
+    @Query("select b.hash from AttachmentBlob b where b.previewStatus = :status order by b.createdAt")
+    List<String> findHashesByPreviewStatus(@Param("status") PreviewStatus status, Pageable pageable);
+}
@@ -1,14 +1,98 @@
 package com.systemcontrol.backend.repository;
 
 import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface DefectRepository extends JpaRepository<Defect, Long> {
+public interface DefectRepository extends JpaRepository<Defect, Long>, JpaSpecificationExecutor<Defect> {
     List<Defect> findByProjectId(Long projectId);
     List<Defect> findByAssigneeId(Long assigneeId);
     List<Defect> findByStatus(String status);
+
+    // Status transition as a compare-and-set: 0 rows when the status is no longer the one the transition was checked against.
+    // Detaches loaded entities, so a stale copy is never flushed over the new row
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Defect d set d.status = :to, d.updatedAt = :now, d.version = d.version + 1 where d.id = :id and d.status = :from")
+    int compareAndSetStatus(@Param("id") Long id, @Param("from") DefectStatus from, @Param("to") DefectStatus to, @Param("now") Instant now);
+
+    // the version the row holds now; after an UPDATE in the same transaction that is the version it wrote
+    @Query("select d.version from Defect d where d.id = :id")
+    Long findVersionById(@Param("id") Long id);
+
+    /**
+     * Поля дефекта, от которых зависят массовые операции: проверка перехода, история, счётчики, лента.
+     */
+    interface BulkRow {
+        Long getId();
+        Long getProjectId();
+        DefectStatus getStatus();
+        Priority getPriority();
+        Long getAssigneeId();
+        Instant getDueDate();
+    }
+
+    // Bulk operations: the chunk's rows stay locked until its UPDATE commits, so what was validated is what gets written.
+    // Locked in id order, so two bulk runs over overlapping selections cannot deadlock. Native: plain FOR UPDATE
+    // (the dialect would render PESSIMISTIC_WRITE as FOR NO KEY UPDATE, which H2 does not know)
+    @Query(value = "SELECT id AS \"id\", project_id AS \"projectId\", status AS \"status\", priority AS \"priority\", "
+        + "assignee_id AS \"assigneeId\", due_date AS \"dueDate\" FROM defects WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<BulkRow> lockForBulk(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Defect d set d.status = :status, d.updatedAt = :now, d.version = d.version + 1 where d.id in :ids")
+    int bulkSetStatus(@Param("ids") Collection<Long> ids, @Param("status") DefectStatus status, @Param("now") Instant now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Defect d set d.assigneeId = :assigneeId, d.updatedAt = :now, d.version = d.version + 1 where d.id in :ids")
+    int bulkSetAssignee(@Param("ids") Collection<Long> ids, @Param("assigneeId") Long assigneeId, @Param("now") Instant now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Defect d set d.priority = :priority, d.updatedAt = :now, d.version = d.version + 1 where d.id in :ids")
+    int bulkSetPriority(@Param("ids") Collection<Long> ids, @Param("priority") Priority priority, @Param("now") Instant now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Defect d set d.dueDate = :dueDate, d.updatedAt = :now, d.version = d.version + 1 where d.id in :ids")
+    int bulkSetDueDate(@Param("ids") Collection<Long> ids, @Param("dueDate") Instant dueDate, @Param("now") Instant now);
+
+    // conditional GET: the version of one defect without loading it
+    @Query("select d.updatedAt from Defect d where d.id = :id")
+    Optional<Instant> findUpdatedAtById(@Param("id") Long id);
+
+    // Forward-only cursors for exports; must be consumed inside a transaction and closed
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select d from Defect d order by d.id")
+    Stream<Defect> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select d from Defect d where d.projectId = :projectId order by d.id")
+    Stream<Defect> streamByProjectId(@Param("projectId") Long projectId);
+
+    // Analytics: counts per (status, priority) pair, aggregated in the database
+    @Query("select d.status as status, d.priority as priority, count(d) as total from Defect d group by d.status, d.priority")
+    List<StatusPriorityCount> countByStatusAndPriority();
+
+    @Query("select d.status as status, d.priority as priority, count(d) as total from Defect d where d.projectId = :projectId group by d.status, d.priority")
+    List<StatusPriorityCount> countByStatusAndPriority(@Param("projectId") Long projectId);
+
+    interface StatusPriorityCount {
+        DefectStatus getStatus();
+        Priority getPriority();
+        long getTotal();
+    }
 }
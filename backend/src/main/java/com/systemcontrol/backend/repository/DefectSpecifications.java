@@ -0,0 +1,46 @@
+package com.systemcontrol.backend.repository;
+
+import com.systemcontrol.backend.dto.DefectFilter;
+import com.systemcontrol.backend.model.Defect;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class DefectSpecifications {
+
+    private DefectSpecifications() {}
+
+    public static Specification<Defect> matching(DefectFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getProjectId() != null) predicates.add(cb.equal(root.get("projectId"), filter.getProjectId()));
+            if (filter.getStatus() != null && !filter.getStatus().isEmpty()) predicates.add(root.get("status").in(filter.getStatus()));
+            if (filter.getPriority() != null && !filter.getPriority().isEmpty()) predicates.add(root.get("priority").in(filter.getPriority()));
+            if (filter.getAssigneeId() != null) predicates.add(cb.equal(root.get("assigneeId"), filter.getAssigneeId()));
+            if (filter.getDueFrom() != null) predicates.add(cb.greaterThanOrEqualTo(root.get("dueDate"), filter.getDueFrom()));
+            if (filter.getDueTo() != null) predicates.add(cb.lessThan(root.get("dueDate"), filter.getDueTo()));
+            if (filter.getUpdatedSince() != null) predicates.add(cb.greaterThanOrEqualTo(root.get("updatedAt"), filter.getUpdatedSince()));
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Keyset-условие для сортировки {@code id DESC}: строки строго после курсора.
+     */
+    public static Specification<Defect> idBefore(Long id) {
+        return (root, query, cb) -> cb.lessThan(root.get("id"), id);
+    }
+
+    /**
+     * Keyset-условие для сортировки {@code updatedAt DESC, id DESC}.
+     */
+    public static Specification<Defect> updatedBefore(Instant updatedAt, Long id) {
+        return (root, query, cb) -> cb.or(
+            cb.lessThan(root.get("updatedAt"), updatedAt),
+            cb.and(cb.equal(root.get("updatedAt"), updatedAt), cb.lessThan(root.get("id"), id))
+        );
+    }
+}
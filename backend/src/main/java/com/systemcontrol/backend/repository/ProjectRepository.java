@@ -1,7 +1,21 @@
 package com.systemcontrol.backend.repository;
 
 import com.systemcontrol.backend.model.Project;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import jakarta.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface ProjectRepository extends JpaRepository<Project, Long> {
+    @Query("select p.id from Project p")
+    List<Long> findAllIds();
+
+    // Forward-only cursor for CSV export; must be consumed inside a transaction and closed
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select p from Project p order by p.id")
+    Stream<Project> streamAll();
 }
@@ -0,0 +1,24 @@
+package com.systemcontrol.backend.repository;
+
+import com.systemcontrol.backend.model.ResourceVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface ResourceVersionRepository extends JpaRepository<ResourceVersion, String> {
+
+    @Modifying
+    @Query("update ResourceVersion v set v.version = v.version + 1 where v.resource = :resource")
+    int increment(@Param("resource") String resource);
+
+    // the row is seeded by V16; this covers schemas built without the migration
+    @Modifying
+    @Query(value = "insert into resource_versions (resource, version) values (:resource, 1) on conflict do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("resource") String resource);
+
+    @Query("select v.version from ResourceVersion v where v.resource = :resource")
+    Optional<Long> findVersion(@Param("resource") String resource);
+}
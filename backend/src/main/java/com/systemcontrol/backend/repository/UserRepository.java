@@ -2,10 +2,13 @@ package com.systemcontrol.backend.repository;
 
 import com.systemcontrol.backend.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
+    @Query("select u.id from User u")
+    List<Long> findAllIds();
 }
-
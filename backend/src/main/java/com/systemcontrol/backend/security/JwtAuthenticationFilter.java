@@ -1,5 +1,8 @@
 package com.systemcontrol.backend.security;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +10,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -15,47 +19,63 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final UserCache userCache;
+    private final Timer validTimer;
+    private final Timer invalidTimer;
     private static final Logger log = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService, UserCache userCache, MeterRegistry meterRegistry) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.userCache = userCache;
+        this.validTimer = verificationTimer(meterRegistry, "valid");
+        this.invalidTimer = verificationTimer(meterRegistry, "invalid");
+    }
+
+    private static Timer verificationTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("security.jwt.verification")
+            .description("JWT signature and expiry check")
+            .tag("outcome", outcome)
+            .register(registry);
     }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
         String authHeader = request.getHeader("Authorization");
-        String token = null;
-        String username = null;
+        DecodedJWT jwt = null;
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7);
-            try {
-                username = jwtUtil.extractUsername(token);
-            } catch (Exception ignored) {}
+            // подпись и срок проверяются один раз на запрос
+            long start = System.nanoTime();
+            jwt = jwtUtil.verify(authHeader.substring(7));
+            (jwt != null ? validTimer : invalidTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (jwt == null) {
+                log.debug("Bearer token present but failed verification path={}", request.getRequestURI());
+            }
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+        if (jwt != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String username = jwt.getSubject();
             try {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                if (jwtUtil.validate(token)) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                    log.info("JWT validated: authenticated='{}' authorities={} path={}", username, userDetails.getAuthorities(), request.getRequestURI());
-                } else {
-                    log.debug("JWT validation failed for token user='{}' path={}", username, request.getRequestURI());
+                UserDetails userDetails = jwtUtil.principalFromClaims(jwt);
+                if (userDetails == null) {
+                    userDetails = userCache.getUserFromCache(username);
+                }
+                if (userDetails == null) {
+                    userDetails = userDetailsService.loadUserByUsername(username);
+                    userCache.putUserInCache(userDetails);
                 }
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+                log.debug("JWT validated: authenticated='{}' authorities={} path={}", username, userDetails.getAuthorities(), request.getRequestURI());
             } catch (Exception ex) {
                 log.warn("Failed to load user details for '{}' : {}", username, ex.getMessage());
             }
-        } else {
-            if (authHeader != null && authHeader.startsWith("Bearer ") && username == null) {
-                log.debug("Bearer token present but username could not be extracted (maybe invalid token) path={}", request.getRequestURI());
-            }
         }
 
         filterChain.doFilter(request, response);
@@ -0,0 +1,22 @@
+package com.systemcontrol.backend.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Principal, восстановленный из подписанных claims токена (без загрузки пользователя из БД).
+ */
+public class JwtUserDetails extends User {
+    private final Long id;
+
+    public JwtUserDetails(Long id, String username, Collection<? extends GrantedAuthority> authorities) {
+        super(username, "", authorities);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
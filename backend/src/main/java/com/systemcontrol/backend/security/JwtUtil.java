@@ -1,41 +1,100 @@
 package com.systemcontrol.backend.security;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.systemcontrol.backend.model.Role;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.util.Date;
+import java.util.List;
 
 public class JwtUtil {
-    private final String secret;
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLE = "role";
+
     private final long expirationMs;
+    private final boolean embedClaims;
+    // Algorithm и JWTVerifier неизменяемы и потокобезопасны — создаём один раз
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
 
     public JwtUtil(String secret, long expirationMs) {
-        this.secret = secret;
+        this(secret, expirationMs, false);
+    }
+
+    public JwtUtil(String secret, long expirationMs, boolean embedClaims) {
         this.expirationMs = expirationMs;
+        this.embedClaims = embedClaims;
+        this.algorithm = Algorithm.HMAC256(secret);
+        this.verifier = JWT.require(algorithm).build();
+    }
+
+    /**
+     * Включён ли режим, в котором id пользователя и роль подписываются в токен.
+     */
+    public boolean isEmbedClaims() {
+        return embedClaims;
     }
 
     public String generateToken(String username) {
+        return builder(username).sign(algorithm);
+    }
+
+    /**
+     * Токен с id и ролью пользователя; фильтр аутентифицирует такой токен без обращения к БД.
+     */
+    public String generateToken(String username, Long userId, Role role) {
+        JWTCreator.Builder builder = builder(username).withClaim(CLAIM_USER_ID, userId);
+        // пользователь без роли получает пустую строку, чтобы отличать его от токена без claims
+        builder.withClaim(CLAIM_ROLE, role != null ? role.name() : "");
+        return builder.sign(algorithm);
+    }
+
+    private JWTCreator.Builder builder(String username) {
         Date now = new Date();
         Date exp = new Date(now.getTime() + expirationMs);
         return JWT.create()
                 .withSubject(username)
                 .withIssuedAt(now)
-                .withExpiresAt(exp)
-                .sign(Algorithm.HMAC256(secret));
+                .withExpiresAt(exp);
+    }
+
+    /**
+     * Проверяет подпись и срок действия за один проход.
+     *
+     * @return декодированный токен или {@code null}, если токен недействителен
+     */
+    public DecodedJWT verify(String token) {
+        try {
+            return verifier.verify(token);
+        } catch (JWTVerificationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Строит principal из подписанных claims; {@code null}, если режим выключен или токен выпущен без них.
+     */
+    public JwtUserDetails principalFromClaims(DecodedJWT jwt) {
+        if (!embedClaims) return null;
+        Claim userId = jwt.getClaim(CLAIM_USER_ID);
+        Claim role = jwt.getClaim(CLAIM_ROLE);
+        if (userId.isMissing() || userId.isNull() || role.isMissing() || role.isNull()) return null;
+        String roleName = role.asString();
+        List<SimpleGrantedAuthority> authorities = roleName.isEmpty() ? List.of() : List.of(new SimpleGrantedAuthority(roleName));
+        return new JwtUserDetails(userId.asLong(), jwt.getSubject(), authorities);
     }
 
     public String extractUsername(String token) {
-        DecodedJWT jwt = JWT.require(Algorithm.HMAC256(secret)).build().verify(token);
-        return jwt.getSubject();
+        return verifier.verify(token).getSubject();
     }
 
     public boolean validate(String token) {
-        try {
-            JWT.require(Algorithm.HMAC256(secret)).build().verify(token);
-            return true;
-        } catch (Exception ex) {
-            return false;
-        }
+        return verify(token) != null;
     }
 }
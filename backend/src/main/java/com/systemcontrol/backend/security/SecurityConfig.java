@@ -1,16 +1,23 @@
 package com.systemcontrol.backend.security;
 
 import com.systemcontrol.backend.service.UserService;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementPortType;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
@@ -27,7 +34,15 @@ public class SecurityConfig {
     public JwtUtil jwtUtil(org.springframework.core.env.Environment env) {
         String secret = env.getProperty("app.jwt.secret", "secret-key-should-change");
         long exp = Long.parseLong(env.getProperty("app.jwt.expiration-ms", "86400000"));
-        return new JwtUtil(secret, exp);
+        boolean embedClaims = Boolean.parseBoolean(env.getProperty("app.jwt.embed-claims", "false"));
+        return new JwtUtil(secret, exp, embedClaims);
+    }
+
+    @Bean
+    public CaffeineUserCache userCache(org.springframework.core.env.Environment env) {
+        long maxSize = Long.parseLong(env.getProperty("app.security.user-cache.max-size", "10000"));
+        java.time.Duration ttl = env.getProperty("app.security.user-cache.ttl", java.time.Duration.class, java.time.Duration.ofSeconds(60));
+        return new CaffeineUserCache(maxSize, ttl);
     }
 
     @Bean
@@ -44,16 +59,28 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, JwtUtil jwtUtil) throws Exception {
-        JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(jwtUtil, userService);
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtUtil jwtUtil, CaffeineUserCache userCache,
+                                           io.micrometer.core.instrument.MeterRegistry meterRegistry,
+                                           org.springframework.core.env.Environment env) throws Exception {
+        JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(jwtUtil, userService, userCache, meterRegistry);
+        // Actuator is served on management.server.port, which is not published outside the host; if it is ever moved
+        // back onto the application port, everything except health is for admins only
+        AuthorizationManager<RequestAuthorizationContext> actuatorAccess = ManagementPortType.get(env) == ManagementPortType.DIFFERENT
+            ? (authentication, context) -> new AuthorizationDecision(true)
+            : AuthorityAuthorizationManager.hasAuthority("ROLE_ADMIN");
     http.cors().and()
         .csrf().disable()
         .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
         .authorizeHttpRequests()
+        // Streaming responses (StreamingResponseBody) finish with an ASYNC dispatch; the original request was already authorized
+        .dispatcherTypeMatchers(jakarta.servlet.DispatcherType.ASYNC).permitAll()
         .requestMatchers(org.springframework.http.HttpMethod.OPTIONS).permitAll()
-        .requestMatchers("/api/auth/**", "/actuator/**").permitAll()
+        .requestMatchers("/api/auth/**").permitAll()
+        .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+        .requestMatchers(EndpointRequest.toAnyEndpoint()).access(actuatorAccess)
         // Users admin-only management
         .requestMatchers(org.springframework.http.HttpMethod.PUT, "/api/users/*/role").hasAuthority("ROLE_ADMIN")
+        .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/users/cache-stats").hasAuthority("ROLE_ADMIN")
         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/users/**").hasAnyAuthority("ROLE_ADMIN", "ROLE_MANAGER")
         // Projects: create/update/delete — only MANAGER or ADMIN; read — all authenticated
         .requestMatchers(org.springframework.http.HttpMethod.POST, "/api/projects/**").hasAnyAuthority("ROLE_MANAGER", "ROLE_ADMIN")
@@ -70,6 +97,7 @@ public class SecurityConfig {
         .requestMatchers(org.springframework.http.HttpMethod.DELETE, "/api/comments/**").hasAnyAuthority("ROLE_ENGINEER", "ROLE_MANAGER", "ROLE_ADMIN")
         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/comments/**").authenticated()
         .requestMatchers(org.springframework.http.HttpMethod.POST, "/api/attachments/**").hasAnyAuthority("ROLE_ENGINEER", "ROLE_MANAGER", "ROLE_ADMIN")
+        .requestMatchers(org.springframework.http.HttpMethod.PATCH, "/api/attachments/**").hasAnyAuthority("ROLE_ENGINEER", "ROLE_MANAGER", "ROLE_ADMIN")
         .requestMatchers(org.springframework.http.HttpMethod.DELETE, "/api/attachments/**").hasAnyAuthority("ROLE_ENGINEER", "ROLE_MANAGER", "ROLE_ADMIN")
         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/attachments/**").authenticated()
         // Reports/Analytics — просматривать всем аутентифицированным
@@ -86,9 +114,9 @@ public class SecurityConfig {
         org.springframework.web.cors.CorsConfiguration config = new org.springframework.web.cors.CorsConfiguration();
         String frontend = env.getProperty("app.frontend.url", "http://localhost:5173");
         config.setAllowedOrigins(java.util.List.of(frontend));
-        config.setAllowedMethods(java.util.List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        config.setAllowedMethods(java.util.List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         config.setAllowedHeaders(java.util.List.of("*"));
-        config.setExposedHeaders(java.util.List.of("Authorization"));
+        config.setExposedHeaders(java.util.List.of("Authorization", "Upload-Offset", "X-SQL-Statements"));
         config.setAllowCredentials(true);
         org.springframework.web.cors.UrlBasedCorsConfigurationSource source = new org.springframework.web.cors.UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", config);
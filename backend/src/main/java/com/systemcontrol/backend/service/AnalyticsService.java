@@ -0,0 +1,70 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.DefectRepository.StatusPriorityCount;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Аналитика по дефектам. Читается из счётчиков {@link DefectStatsService}: одна строка для проекта, сумма строк для всех.
+ * Если у проекта ещё нет строки счётчиков, считается одним GROUP BY по дефектам.
+ */
+@Service
+public class AnalyticsService {
+
+    private final DefectRepository defectRepository;
+    private final DefectStatsService defectStats;
+
+    public AnalyticsService(DefectRepository defectRepository, DefectStatsService defectStats) {
+        this.defectRepository = defectRepository;
+        this.defectStats = defectStats;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getAnalytics(Long projectId) {
+        if (projectId == null) {
+            return result(defectStats.totals());
+        }
+        return defectStats.forProject(projectId)
+            .map(AnalyticsService::result)
+            .orElseGet(() -> result(count(defectRepository.countByStatusAndPriority(projectId))));
+    }
+
+    /**
+     * Прогресс всех проектов (всего и закрытых дефектов) из счётчиков, без обращения к дефектам.
+     */
+    @Transactional(readOnly = true)
+    public List<DefectStatsService.ProjectProgress> getProjectProgress() {
+        return defectStats.progress();
+    }
+
+    private static DefectStatsService.Counts count(List<StatusPriorityCount> rows) {
+        long total = 0;
+        Map<DefectStatus, Long> byStatus = new EnumMap<>(DefectStatus.class);
+        Map<Priority, Long> byPriority = new EnumMap<>(Priority.class);
+        for (StatusPriorityCount row : rows) {
+            total += row.getTotal();
+            if (row.getStatus() != null) byStatus.merge(row.getStatus(), row.getTotal(), Long::sum);
+            if (row.getPriority() != null) byPriority.merge(row.getPriority(), row.getTotal(), Long::sum);
+        }
+        return new DefectStatsService.Counts(total, byStatus, byPriority);
+    }
+
+    private static Map<String, Object> result(DefectStatsService.Counts counts) {
+        Map<DefectStatus, Long> byStatus = counts.byStatus();
+        return Map.of(
+            "totalDefects", counts.total(),
+            "statusDistribution", byStatus,
+            "priorityDistribution", counts.byPriority(),
+            "newDefects", byStatus.getOrDefault(DefectStatus.NEW, 0L),
+            "inProgressDefects", byStatus.getOrDefault(DefectStatus.IN_PROGRESS, 0L),
+            "closedDefects", byStatus.getOrDefault(DefectStatus.CLOSED, 0L)
+        );
+    }
+}
@@ -0,0 +1,188 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.repository.AttachmentBlobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Контентно-адресуемое хранилище вложений.
+ * <p>
+ * Загрузка пишется во временный файл и одновременно хэшируется (SHA-256); готовый файл лежит в
+ * {@code blobs/ab/cd/<hash>}, одинаковое содержимое хранится один раз. Число ссылок ведётся в
+ * {@code attachment_blobs}; файл удаляется, когда уходит последняя ссылка.
+ */
+@Service
+public class AttachmentStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER = 64 * 1024;
+
+    private final AttachmentBlobRepository blobRepository;
+    private final Path root;
+    private final Path tmp;
+    private final Path derivatives;
+
+    public AttachmentStore(AttachmentBlobRepository blobRepository, @Value("${app.upload.dir:uploads}") String uploadDir) {
+        this.blobRepository = blobRepository;
+        this.root = Paths.get(uploadDir, "blobs");
+        // same file system as the blobs, so publishing is an atomic rename
+        this.tmp = root.resolve("tmp");
+        this.derivatives = Paths.get(uploadDir, "derivatives");
+    }
+
+    /**
+     * Принятая, но ещё не опубликованная загрузка.
+     */
+    public record StagedBlob(Path tempFile, String hash, long size) {}
+
+    public static boolean isValidHash(String hash) {
+        return hash != null && HASH.matcher(hash).matches();
+    }
+
+    /**
+     * Копирует поток во временный файл, считая хэш на лету (один проход по данным).
+     */
+    public StagedBlob stage(InputStream in) throws IOException {
+        Files.createDirectories(tmp);
+        Path temp = Files.createTempFile(tmp, "upload-", ".part");
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            byte[] buf = new byte[BUFFER];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                digest.update(buf, 0, n);
+                out.write(buf, 0, n);
+                size += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new StagedBlob(temp, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    /**
+     * Файл для возобновляемой загрузки: лежит рядом с временными файлами, поэтому публикуется переименованием.
+     */
+    public Path partFile(String uploadId) throws IOException {
+        Files.createDirectories(tmp);
+        return tmp.resolve("resumable-" + uploadId + ".part");
+    }
+
+    /**
+     * Принимает уже собранный файл из {@link #partFile}: хэширует его одним последовательным чтением.
+     */
+    public StagedBlob stageFile(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buf = new byte[BUFFER];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                digest.update(buf, 0, n);
+                size += n;
+            }
+        }
+        return new StagedBlob(file, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    /**
+     * Публикует загрузку и добавляет ссылку на неё. Если такое содержимое уже есть, временный файл удаляется.
+     */
+    @Transactional
+    public Path addReference(StagedBlob staged) throws IOException {
+        Path target = pathFor(staged.hash());
+        try {
+            if (blobRepository.insertIfAbsent(staged.hash(), staged.size()) == 1 || Files.notExists(target)) {
+                // the new row stays locked until commit, so nobody can release this blob before the file is in place
+                Files.createDirectories(target.getParent());
+                moveIntoPlace(staged.tempFile(), target);
+            }
+            blobRepository.incrementRefCount(staged.hash());
+        } finally {
+            Files.deleteIfExists(staged.tempFile());
+        }
+        return target;
+    }
+
+    /**
+     * Ссылка на уже имеющееся содержимое без передачи байтов. {@code false}, если такого хэша нет.
+     */
+    @Transactional
+    public boolean addReference(String hash) {
+        return blobRepository.incrementRefCount(hash) == 1;
+    }
+
+    /**
+     * Убирает ссылку; последняя ссылка удаляет файл.
+     */
+    @Transactional
+    public void release(String hash) throws IOException {
+        if (blobRepository.decrementRefCount(hash) == 0) return;
+        if (blobRepository.deleteIfUnreferenced(hash) == 1) {
+            // unlinked while the row is still locked: a concurrent upload of the same content waits for
+            // this commit and then publishes its own copy
+            Files.deleteIfExists(pathFor(hash));
+            for (ImageVariant variant : ImageVariant.values()) {
+                Files.deleteIfExists(derivativePath(hash, variant));
+            }
+        }
+    }
+
+    public boolean contains(String hash) {
+        return isValidHash(hash) && blobRepository.existsById(hash);
+    }
+
+    public long size(String hash) {
+        return blobRepository.findById(hash).map(b -> b.getSize()).orElse(-1L);
+    }
+
+    public void discard(StagedBlob staged) throws IOException {
+        Files.deleteIfExists(staged.tempFile());
+    }
+
+    /**
+     * Два уровня каталогов по 256 записей, чтобы ни в одном каталоге не было сотен тысяч файлов.
+     */
+    public Path pathFor(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /**
+     * Производное изображение содержимого; раскладка по каталогам та же, что у самих файлов.
+     */
+    public Path derivativePath(String hash, ImageVariant variant) {
+        return derivatives.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + "-" + variant.key() + ".jpg");
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
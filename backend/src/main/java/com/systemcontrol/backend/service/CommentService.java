@@ -3,6 +3,7 @@ package com.systemcontrol.backend.service;
 import com.systemcontrol.backend.model.Comment;
 import com.systemcontrol.backend.repository.CommentRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import org.jsoup.Jsoup;
@@ -26,6 +27,7 @@ public class CommentService {
         return commentRepository.save(comment);
     }
     
+    @Transactional(readOnly = true)
     public List<Comment> getCommentsByDefectId(Long defectId) {
         return commentRepository.findByDefectIdOrderByCreatedAtAsc(defectId);
     }
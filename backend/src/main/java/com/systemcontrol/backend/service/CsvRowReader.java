@@ -0,0 +1,71 @@
+package com.systemcontrol.backend.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковое чтение CSV (RFC 4180): поля в кавычках, удвоенные кавычки, переводы строк внутри полей.
+ * Читает по одной записи, не держа файл в памяти.
+ */
+final class CsvRowReader {
+    private final BufferedReader in;
+    private final StringBuilder field = new StringBuilder();
+    private boolean first = true;
+
+    CsvRowReader(Reader in) {
+        this.in = in instanceof BufferedReader br ? br : new BufferedReader(in, 64 * 1024);
+    }
+
+    /**
+     * Следующая запись или null в конце файла.
+     */
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (first) {
+                first = false;
+                if (c == '\uFEFF') continue; // UTF-8 BOM from Excel
+            }
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    in.mark(1);
+                    int n = in.read();
+                    if (n == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (n != -1) in.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    in.mark(1);
+                    int n = in.read();
+                    if (n != '\n' && n != -1) in.reset();
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+        if (!any) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+}
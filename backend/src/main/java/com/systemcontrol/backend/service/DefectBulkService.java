@@ -0,0 +1,222 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.dto.BulkDefectReport;
+import com.systemcontrol.backend.dto.BulkDefectRequest;
+import com.systemcontrol.backend.dto.DefectChangeEvent;
+import com.systemcontrol.backend.dto.DefectFilter;
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectHistory;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.DefectSpecifications;
+import com.systemcontrol.backend.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Массовые операции над дефектами: смена статуса, исполнителя, приоритета или срока у выборки по id или фильтру.
+ * <p>
+ * Выборка обрабатывается пачками, каждая в своей транзакции: строки пачки блокируются и проверяются
+ * (переходы статуса — по правилам {@link com.systemcontrol.backend.model.DefectStatus}), затем все подходящие
+ * меняются одним UPDATE, история пишется одним batch, счётчики проектов — одним обращением на проект.
+ * Ошибка пачки не откатывает уже записанные.
+ */
+@Service
+public class DefectBulkService {
+
+    private static final Logger log = LoggerFactory.getLogger(DefectBulkService.class);
+
+    private final DefectRepository defectRepository;
+    private final UserRepository userRepository;
+    private final DefectHistoryService defectHistoryService;
+    private final DefectStatsService defectStats;
+    private final DefectChangeFeed changeFeed;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final int chunkSize;
+    private final int maxDefects;
+
+    public DefectBulkService(DefectRepository defectRepository, UserRepository userRepository, DefectHistoryService defectHistoryService,
+                             DefectStatsService defectStats, DefectChangeFeed changeFeed, TransactionTemplate transactionTemplate,
+                             EntityManager entityManager,
+                             @Value("${app.defects.bulk.chunk-size:500}") int chunkSize,
+                             @Value("${app.defects.bulk.max-defects:10000}") int maxDefects) {
+        this.defectRepository = defectRepository;
+        this.userRepository = userRepository;
+        this.defectHistoryService = defectHistoryService;
+        this.defectStats = defectStats;
+        this.changeFeed = changeFeed;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.chunkSize = chunkSize;
+        this.maxDefects = maxDefects;
+    }
+
+    public BulkDefectReport apply(BulkDefectRequest request) {
+        Change change = change(request);
+        List<Long> ids = select(request);
+        BulkDefectReport report = new BulkDefectReport(ids.size());
+        long started = System.nanoTime();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            try {
+                // results are reported only once the chunk has committed
+                List<BulkDefectReport.Result> results = transactionTemplate.execute(status -> applyChunk(chunk, change));
+                results.forEach(report::add);
+            } catch (RuntimeException e) {
+                log.warn("Bulk {} chunk of {} defects failed: {}", request.operation, chunk.size(), e.getMessage());
+                for (Long id : chunk) {
+                    report.add(new BulkDefectReport.Result(id, BulkDefectReport.Outcome.FAILED, "database error: " + e.getMessage()));
+                }
+            }
+        }
+        log.info("Bulk {}: {} selected, {} updated, {} unchanged, {} failed in {} ms", request.operation, report.getSelected(),
+            report.getUpdated(), report.getUnchanged(), report.getFailed(), (System.nanoTime() - started) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Изменяемое поле: имя и действие для истории, новое значение строкой (как в истории) и чтение текущего.
+     */
+    private record Change(BulkDefectRequest request, String field, String action, String value,
+                          Function<DefectRepository.BulkRow, String> current) {
+    }
+
+    private Change change(BulkDefectRequest request) {
+        if (request.operation == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "operation is required");
+        }
+        return switch (request.operation) {
+            case STATUS -> {
+                if (request.status == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "status is required");
+                // recorded like the single-defect transitions, where a cancellation has its own action
+                String action = request.status == DefectStatus.CANCELLED ? "CANCELLED" : "STATUS_CHANGED";
+                yield new Change(request, "status", action, request.status.toString(), r -> r.getStatus().toString());
+            }
+            case PRIORITY -> {
+                if (request.priority == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "priority is required");
+                yield new Change(request, "priority", "UPDATED", request.priority.toString(), r -> r.getPriority().toString());
+            }
+            case ASSIGN -> {
+                if (request.assigneeId != null && !userRepository.existsById(request.assigneeId)) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "assignee not found");
+                }
+                yield new Change(request, "assignee", "ASSIGNED", string(request.assigneeId), r -> string(r.getAssigneeId()));
+            }
+            case DUE_DATE -> new Change(request, "dueDate", "UPDATED", string(request.dueDate), r -> string(r.getDueDate()));
+        };
+    }
+
+    private List<Long> select(BulkDefectRequest request) {
+        boolean byIds = request.ids != null && !request.ids.isEmpty();
+        if (byIds == (request.filter != null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "either ids or filter is required");
+        }
+        if (byIds) {
+            List<Long> ids = new ArrayList<>(new LinkedHashSet<>(request.ids));
+            ids.removeIf(Objects::isNull);
+            if (ids.size() > maxDefects) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "at most " + maxDefects + " defects per request");
+            }
+            return ids;
+        }
+        if (isEmpty(request.filter)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "filter must restrict the selection");
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Defect> root = query.from(Defect.class);
+        query.select(root.get("id"))
+            .where(DefectSpecifications.matching(request.filter).toPredicate(root, query, cb))
+            .orderBy(cb.asc(root.get("id")));
+        List<Long> ids = entityManager.createQuery(query).setMaxResults(maxDefects + 1).getResultList();
+        if (ids.size() > maxDefects) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "filter matches more than " + maxDefects + " defects, narrow it");
+        }
+        return ids;
+    }
+
+    private List<BulkDefectReport.Result> applyChunk(List<Long> chunk, Change change) {
+        BulkDefectRequest request = change.request();
+        Map<Long, DefectRepository.BulkRow> rows = defectRepository.lockForBulk(chunk).stream()
+            .collect(Collectors.toMap(DefectRepository.BulkRow::getId, Function.identity()));
+        Long historyUserId = request.userId != null ? request.userId : 0L;
+
+        List<BulkDefectReport.Result> results = new ArrayList<>(chunk.size());
+        List<Long> changed = new ArrayList<>();
+        List<DefectHistory> history = new ArrayList<>();
+        List<DefectStatsService.Slot> before = new ArrayList<>();
+        List<DefectStatsService.Slot> after = new ArrayList<>();
+        for (Long id : chunk) {
+            DefectRepository.BulkRow row = rows.get(id);
+            if (row == null) {
+                results.add(new BulkDefectReport.Result(id, BulkDefectReport.Outcome.NOT_FOUND, "defect not found"));
+                continue;
+            }
+            String old = change.current().apply(row);
+            if (Objects.equals(old, change.value())) {
+                results.add(new BulkDefectReport.Result(id, BulkDefectReport.Outcome.UNCHANGED, null));
+                continue;
+            }
+            if (request.operation == BulkDefectRequest.Operation.STATUS && !row.getStatus().canTransitionTo(request.status)) {
+                results.add(new BulkDefectReport.Result(id, BulkDefectReport.Outcome.INVALID_TRANSITION,
+                    "Недопустимый переход статуса. " + row.getStatus().getAllowedTransitionsDescription()));
+                continue;
+            }
+            changed.add(id);
+            history.add(DefectHistoryService.entry(id, historyUserId, change.field(), old, change.value(), change.action()));
+            before.add(new DefectStatsService.Slot(row.getProjectId(), row.getStatus(), row.getPriority()));
+            after.add(new DefectStatsService.Slot(row.getProjectId(),
+                request.operation == BulkDefectRequest.Operation.STATUS ? request.status : row.getStatus(),
+                request.operation == BulkDefectRequest.Operation.PRIORITY ? request.priority : row.getPriority()));
+            results.add(new BulkDefectReport.Result(id, BulkDefectReport.Outcome.UPDATED, null));
+        }
+        if (changed.isEmpty()) return results;
+
+        Instant now = Instant.now();
+        switch (request.operation) {
+            case STATUS -> defectRepository.bulkSetStatus(changed, request.status, now);
+            case ASSIGN -> defectRepository.bulkSetAssignee(changed, request.assigneeId, now);
+            case PRIORITY -> defectRepository.bulkSetPriority(changed, request.priority, now);
+            case DUE_DATE -> defectRepository.bulkSetDueDate(changed, request.dueDate, now);
+        }
+        defectHistoryService.recordChanges(history);
+        defectStats.changedAll(before, after);
+        for (int i = 0; i < changed.size(); i++) {
+            DefectRepository.BulkRow row = rows.get(changed.get(i));
+            DefectStatsService.Slot slot = after.get(i);
+            Long assigneeId = request.operation == BulkDefectRequest.Operation.ASSIGN ? request.assigneeId : row.getAssigneeId();
+            changeFeed.publish(new DefectChangeEvent(DefectChangeEvent.UPDATED, row.getId(), slot.projectId(), slot.status(),
+                slot.priority(), assigneeId, now, List.of(DefectChangeEvent.FieldChange.of(history.get(i)))));
+        }
+        return results;
+    }
+
+    private static boolean isEmpty(DefectFilter f) {
+        return f.getProjectId() == null && f.getAssigneeId() == null && f.getDueFrom() == null && f.getDueTo() == null
+            && f.getUpdatedSince() == null && (f.getStatus() == null || f.getStatus().isEmpty())
+            && (f.getPriority() == null || f.getPriority().isEmpty());
+    }
+
+    private static String string(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,240 @@
+package com.systemcontrol.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.systemcontrol.backend.dto.DefectChangeEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Лента изменений дефектов (Server-Sent Events), заменяет периодический опрос списка.
+ * <p>
+ * События публикуются после коммита транзакции и сериализуются один раз на всех подписчиков.
+ * У каждого подписчика своя ограниченная очередь; отправка идёт из небольшого пула потоков,
+ * поэтому медленный клиент не задерживает ни публикующий поток, ни остальных подписчиков.
+ * Подписчик, переполнивший очередь, отключается — клиент переподключается и перечитывает список.
+ */
+@Service
+public class DefectChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(DefectChangeFeed.class);
+
+    /** Ключ подписчиков без фильтра по проекту. */
+    private static final long ALL_PROJECTS = 0L;
+    private static final String EVENT_NAME = "defect";
+
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMs;
+    private final ConcurrentMap<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeat;
+
+    public DefectChangeFeed(ObjectMapper objectMapper,
+                            @Value("${app.feed.buffer-size:256}") int bufferSize,
+                            @Value("${app.feed.max-subscribers:1000}") int maxSubscribers,
+                            @Value("${app.feed.sender-threads:4}") int senderThreads,
+                            @Value("${app.feed.heartbeat-interval:15s}") Duration heartbeatInterval,
+                            @Value("${app.feed.timeout:30m}") Duration timeout,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeout.toMillis();
+        AtomicInteger threadNo = new AtomicInteger();
+        // a send blocks on the client's socket: with virtual threads every draining subscriber gets its own thread,
+        // so one slow client no longer holds up a shared sender (at most one drain per subscriber runs at a time)
+        this.senders = virtualThreads
+            ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("defect-feed-sender-", 1).factory())
+            : Executors.newFixedThreadPool(senderThreads, r -> daemon(r, "defect-feed-sender-" + threadNo.incrementAndGet()));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "defect-feed-heartbeat"));
+        long period = heartbeatInterval.toMillis();
+        // комментарий-пинг держит соединение за прокси и выявляет отключившихся клиентов
+        heartbeat.scheduleAtFixedRate(() -> subscribers.values().forEach(set -> broadcast(set, Message.PING)), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Подписка на изменения дефектов проекта ({@code projectId == null} — всех проектов).
+     */
+    public SseEmitter subscribe(Long projectId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many subscribers");
+        }
+        long key = projectId != null ? projectId : ALL_PROJECTS;
+        Subscriber sub = new Subscriber(key, new SseEmitter(timeoutMs));
+        sub.emitter.onCompletion(() -> remove(sub));
+        sub.emitter.onTimeout(() -> remove(sub));
+        sub.emitter.onError(e -> remove(sub));
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        // первое сообщение отправляет заголовки ответа сразу, не дожидаясь изменений
+        sub.offer(Message.HELLO);
+        return sub.emitter;
+    }
+
+    /**
+     * Публикует изменение; внутри транзакции — только после её успешного коммита.
+     */
+    public void publish(DefectChangeEvent event) {
+        if (subscriberCount.get() == 0) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(event);
+                }
+            });
+        } else {
+            dispatch(event);
+        }
+    }
+
+    int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void dispatch(DefectChangeEvent event) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            log.warn("Cannot serialize defect change for defect {}: {}", event.getDefectId(), e.getMessage());
+            return;
+        }
+        Message message = new Message(sequence.incrementAndGet(), json);
+        if (event.getProjectId() != null) {
+            broadcast(subscribers.get(event.getProjectId()), message);
+        }
+        broadcast(subscribers.get(ALL_PROJECTS), message);
+    }
+
+    private void broadcast(Set<Subscriber> targets, Message message) {
+        if (targets != null) targets.forEach(s -> s.offer(message));
+    }
+
+    private void remove(Subscriber sub) {
+        if (sub.closed.getAndSet(true)) return;
+        subscriberCount.decrementAndGet();
+        Set<Subscriber> set = subscribers.get(sub.key);
+        if (set != null) set.remove(sub);
+        sub.queue.clear();
+    }
+
+    private void complete(Subscriber sub) {
+        remove(sub);
+        try {
+            sub.emitter.complete();
+        } catch (Exception ignored) {
+            // соединение уже закрыто
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(this::complete));
+        senders.shutdown();
+    }
+
+    /**
+     * Сообщение в очереди подписчика; {@code json == null} — служебный комментарий.
+     */
+    private record Message(long id, String json) {
+        static final Message HELLO = new Message(0, null);
+        static final Message PING = new Message(0, null);
+
+        SseEmitter.SseEventBuilder toEvent() {
+            if (json == null) {
+                return this == HELLO ? SseEmitter.event().reconnectTime(3000).comment("subscribed") : SseEmitter.event().comment("ping");
+            }
+            return SseEmitter.event().id(Long.toString(id)).name(EVENT_NAME).data(json, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private final class Subscriber {
+        final long key;
+        final SseEmitter emitter;
+        final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(long key, SseEmitter emitter) {
+            this.key = key;
+            this.emitter = emitter;
+        }
+
+        void offer(Message message) {
+            if (closed.get()) return;
+            if (!queue.offer(message)) {
+                log.info("Evicting slow defect feed subscriber (project {}): {} events pending", key, queue.size());
+                remove(this);
+                // complete() ждёт окончания текущей отправки, поэтому не делаем его в публикующем потоке
+                execute(() -> complete(this));
+                return;
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) execute(this::drain);
+        }
+
+        void drain() {
+            try {
+                Message message;
+                while (!closed.get() && (message = queue.poll()) != null) {
+                    emitter.send(message.toEvent());
+                }
+            } catch (IOException | IllegalStateException e) {
+                // клиент отключился
+                complete(this);
+            } finally {
+                scheduled.set(false);
+            }
+            if (!closed.get() && !queue.isEmpty()) schedule();
+        }
+
+        void execute(Runnable task) {
+            try {
+                senders.execute(task);
+            } catch (RejectedExecutionException e) {
+                // приложение останавливается
+                scheduled.set(false);
+            }
+        }
+    }
+}
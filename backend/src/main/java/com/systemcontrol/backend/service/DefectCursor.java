@@ -0,0 +1,31 @@
+package com.systemcontrol.backend.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор постраничного списка: порядок сортировки и ключ последней строки страницы.
+ */
+record DefectCursor(String sort, Instant updatedAt, long id) {
+
+    String encode() {
+        String raw = sort + "|" + (updatedAt != null ? updatedAt.toString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static DefectCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 3) throw new IllegalArgumentException(raw);
+            Instant updatedAt = parts[1].isEmpty() ? null : Instant.parse(parts[1]);
+            return new DefectCursor(parts[0], updatedAt, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor");
+        }
+    }
+}
@@ -1,19 +1,88 @@
 package com.systemcontrol.backend.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.systemcontrol.backend.model.DefectHistory;
 import com.systemcontrol.backend.repository.DefectHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Запись истории изменений дефектов.
+ * <p>
+ * Все изменения одной операции сохраняются одним {@code saveAll} (один JDBC batch). В режиме {@code app.history.async=true}
+ * записи после коммита транзакции уходят в ограниченную очередь, которую фоновый поток сбрасывает
+ * пачками (group commit). При корректной остановке приложения очередь дописывается до конца.
+ * Пачка, которую не удалось записать за {@link #MAX_ATTEMPTS} попыток, дописывается в файл
+ * {@code app.history.spill-file} и переносится в БД после следующей удачной записи или при старте.
+ */
 @Service
-public class DefectHistoryService {
-    
+public class DefectHistoryService implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(DefectHistoryService.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final ObjectMapper SPILL_FORMAT = new ObjectMapper().findAndRegisterModules();
+
     private final DefectHistoryRepository defectHistoryRepository;
-    
-    public DefectHistoryService(DefectHistoryRepository defectHistoryRepository) {
+    private final TransactionTemplate newTransaction;
+    private final boolean async;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Path spillFile;
+    private final BlockingQueue<DefectHistory> queue;
+
+    // running only changes under this lock, and entries are offered only under it: none slips in after the last drain
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private volatile boolean running;
+    private volatile boolean spilled;
+    private Thread writer;
+
+    public DefectHistoryService(DefectHistoryRepository defectHistoryRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.history.async:false}") boolean async,
+                                @Value("${app.history.queue-capacity:10000}") int queueCapacity,
+                                @Value("${app.history.batch-size:500}") int batchSize,
+                                @Value("${app.history.flush-interval-ms:200}") long flushIntervalMs,
+                                @Value("${app.history.spill-file:defect-history-spill.jsonl}") String spillFile) {
         this.defectHistoryRepository = defectHistoryRepository;
+        // queued entries are written after the commit of their transaction, whose resources may still be bound
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.async = async;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.spillFile = Paths.get(spillFile).toAbsolutePath();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.spilled = Files.exists(this.spillFile);
     }
-    
-    public DefectHistory recordChange(Long defectId, Long userId, String fieldName, String oldValue, String newValue, String action) {
+
+    public static DefectHistory entry(Long defectId, Long userId, String fieldName, String oldValue, String newValue, String action) {
         DefectHistory history = new DefectHistory();
         history.setDefectId(defectId);
         history.setUserId(userId);
@@ -21,6 +90,199 @@ public class DefectHistoryService {
         history.setOldValue(oldValue);
         history.setNewValue(newValue);
         history.setAction(action);
-        return defectHistoryRepository.save(history);
+        return history;
+    }
+
+    public void recordChange(Long defectId, Long userId, String fieldName, String oldValue, String newValue, String action) {
+        recordChanges(List.of(entry(defectId, userId, fieldName, oldValue, newValue, action)));
+    }
+
+    /**
+     * Записывает набор изменений одним batch (синхронно, в текущей транзакции)
+     * либо ставит их в очередь после коммита (асинхронный режим).
+     */
+    public void recordChanges(List<DefectHistory> changes) {
+        if (changes.isEmpty()) return;
+        if (!async) {
+            write(changes);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // не публикуем историю изменений, которые ещё могут откатиться
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(changes);
+                }
+            });
+        } else if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // транзакция без синхронизации: момент коммита не узнать, пишем в ней же
+            write(changes);
+        } else {
+            enqueue(changes);
+        }
+    }
+
+    private void enqueue(List<DefectHistory> changes) {
+        List<DefectHistory> overflow = new ArrayList<>();
+        queueLock.lock();
+        try {
+            for (DefectHistory h : changes) {
+                if (!running || !queue.offer(h)) overflow.add(h);
+            }
+        } finally {
+            queueLock.unlock();
+        }
+        if (!overflow.isEmpty()) {
+            // очередь переполнена или писатель остановлен: пишем в вызывающем потоке, чтобы ничего не потерять
+            flush(overflow);
+        }
+    }
+
+    private void write(List<DefectHistory> batch) {
+        // ids come from a pooled sequence, so Hibernate sends the inserts as one JDBC batch
+        defectHistoryRepository.saveAll(batch);
+    }
+
+    /**
+     * Пишет пачку в отдельной транзакции с повторами; не записанную — в файл переноса.
+     */
+    private void flush(List<DefectHistory> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // a failed attempt has already handed out ids; they belong to the rolled back transaction
+                batch.forEach(h -> h.setId(null));
+                newTransaction.executeWithoutResult(status -> write(batch));
+                break;
+            } catch (DataAccessException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    log.error("Defect history batch of {} failed {} times, spilling it to {}", batch.size(), attempt, spillFile, e);
+                    spill(batch);
+                    return;
+                }
+                log.warn("Defect history batch of {} failed (attempt {}), retrying: {}", batch.size(), attempt, e.getMessage());
+                try {
+                    Thread.sleep(flushIntervalMs * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        // the database takes writes again
+        if (spilled) replaySpill();
+    }
+
+    private void spill(List<DefectHistory> batch) {
+        spillLock.lock();
+        try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (DefectHistory h : batch) {
+                out.write(SPILL_FORMAT.writeValueAsString(h));
+                out.newLine();
+            }
+            spilled = true;
+        } catch (IOException e) {
+            // neither the database nor the disk: the log is the last copy
+            log.error("Could not spill defect history to {}", spillFile, e);
+            batch.forEach(h -> log.error("Lost history entry: defect={} user={} field={} old='{}' new='{}' action={} at={}",
+                h.getDefectId(), h.getUserId(), h.getFieldName(), h.getOldValue(), h.getNewValue(), h.getAction(), h.getCreatedAt()));
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Переносит записи из файла в БД; файл удаляется, только если записано всё.
+     */
+    private void replaySpill() {
+        if (!spillLock.tryLock()) return;
+        try {
+            if (!Files.exists(spillFile)) {
+                spilled = false;
+                return;
+            }
+            List<DefectHistory> entries = new ArrayList<>();
+            try (BufferedReader in = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    DefectHistory h = SPILL_FORMAT.readValue(line, DefectHistory.class);
+                    h.setId(null);
+                    entries.add(h);
+                }
+            }
+            newTransaction.executeWithoutResult(status -> {
+                for (int from = 0; from < entries.size(); from += batchSize) {
+                    write(entries.subList(from, Math.min(from + batchSize, entries.size())));
+                }
+            });
+            Files.delete(spillFile);
+            spilled = false;
+            log.info("Replayed {} spilled defect history entries from {}", entries.size(), spillFile);
+        } catch (IOException e) {
+            log.error("Could not read spilled defect history from {}", spillFile, e);
+        } catch (DataAccessException e) {
+            log.warn("Spilled defect history stays in {} until the next write: {}", spillFile, e.getMessage());
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                DefectHistory first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                List<DefectHistory> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!async || running) return;
+        if (spilled) replaySpill();
+        running = true;
+        writer = new Thread(this::drainLoop, "defect-history-writer");
+        writer.start();
+        log.info("Defect history writer started (queue capacity {}, batch size {})", queue.remainingCapacity(), batchSize);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        queueLock.lock();
+        try {
+            running = false;
+        } finally {
+            queueLock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // записи, попавшие в очередь во время остановки
+        List<DefectHistory> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) flush(rest);
+        log.info("Defect history writer stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // останавливаемся после веб-сервера (новых запросов уже нет), но до закрытия DataSource
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
     }
-}
\ No newline at end of file
+}
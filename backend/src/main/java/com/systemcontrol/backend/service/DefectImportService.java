@@ -0,0 +1,406 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.dto.ImportReport;
+import com.systemcontrol.backend.exception.ConnectionLimitExceededException;
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectHistory;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.ProjectRepository;
+import com.systemcontrol.backend.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Safelist;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Массовая загрузка дефектов из CSV или XLSX (те же колонки, что в выгрузках отчётов).
+ * Файл читается потоково, строки проверяются по заранее загруженным множествам id проектов
+ * и пользователей и сохраняются пачками, каждая пачка в своей транзакции.
+ * Если пачку отклоняет БД из-за данных, она делится пополам до отдельных строк, и в отчёт попадают только строки
+ * с ошибкой. Если БД недоступна (соединение, пул, таймаут), загрузка останавливается: оставшиеся строки
+ * учитываются как необработанные.
+ */
+@Service
+public class DefectImportService {
+
+    static final int CHUNK_SIZE = 1000;
+    private static final int MAX_TITLE = 500;
+    private static final int MAX_DESCRIPTION = 2000;
+
+    private static final Logger log = LoggerFactory.getLogger(DefectImportService.class);
+
+    private final DefectRepository defectRepository;
+    private final ProjectRepository projectRepository;
+    private final UserRepository userRepository;
+    private final DefectHistoryService defectHistoryService;
+    private final DefectStatsService defectStats;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    public DefectImportService(DefectRepository defectRepository, ProjectRepository projectRepository, UserRepository userRepository,
+                               DefectHistoryService defectHistoryService, DefectStatsService defectStats, TransactionTemplate transactionTemplate,
+                               EntityManager entityManager) {
+        this.defectRepository = defectRepository;
+        this.projectRepository = projectRepository;
+        this.userRepository = userRepository;
+        this.defectHistoryService = defectHistoryService;
+        this.defectStats = defectStats;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+    }
+
+    public ImportReport importFile(MultipartFile file) throws IOException {
+        String name = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase(Locale.ROOT) : "";
+        boolean xlsx = name.endsWith(".xlsx")
+            || "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet".equals(file.getContentType());
+
+        ImportRun run = new ImportRun(new HashSet<>(projectRepository.findAllIds()), new HashSet<>(userRepository.findAllIds()));
+        long started = System.nanoTime();
+        if (xlsx) {
+            // OPC needs random access to the zip, so the upload is spooled to a temp file instead of the heap
+            Path tmp = Files.createTempFile("defect-import", ".xlsx");
+            try {
+                file.transferTo(tmp);
+                readXlsx(tmp, run);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } else {
+            try (InputStream in = file.getInputStream()) {
+                readCsv(in, run);
+            }
+        }
+        run.finish();
+        log.info("Defect import '{}': {} rows, {} imported, {} failed, {} not processed in {} ms", file.getOriginalFilename(),
+            run.report.getTotalRows(), run.report.getImported(), run.report.getFailed(), run.report.getNotProcessed(),
+            (System.nanoTime() - started) / 1_000_000);
+        return run.report;
+    }
+
+    private void readCsv(InputStream in, ImportRun run) throws IOException {
+        CsvRowReader reader = new CsvRowReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        long rowNum = 0;
+        List<String> record;
+        while ((record = reader.next()) != null) {
+            run.accept(++rowNum, record);
+        }
+    }
+
+    private void readXlsx(Path path, ImportRun run) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            // the full report has a "Projects" sheet first; prefer the defects sheet when present
+            int target = 0;
+            XSSFReader.SheetIterator names = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int i = 0; names.hasNext(); i++) {
+                names.next().close();
+                if (names.getSheetName().startsWith("Defects")) {
+                    target = i;
+                    break;
+                }
+            }
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int i = 0; sheets.hasNext(); i++) {
+                try (InputStream sheet = sheets.next()) {
+                    if (i != target) continue;
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, new SheetRows(run), new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                    return;
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("invalid xlsx file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Собирает строки листа XLSX в список ячеек (пропущенные ячейки — пустые строки).
+     */
+    private static final class SheetRows implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final ImportRun run;
+        private final List<String> cells = new ArrayList<>();
+
+        SheetRows(ImportRun run) { this.run = run; }
+
+        @Override
+        public void startRow(int rowNum) { cells.clear(); }
+
+        @Override
+        public void endRow(int rowNum) { run.accept(rowNum + 1L, new ArrayList<>(cells)); }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : cells.size();
+            while (cells.size() < col) cells.add("");
+            cells.add(formattedValue != null ? formattedValue : "");
+        }
+    }
+
+    private record PendingRow(long row, Defect defect) {}
+
+    /**
+     * Состояние одной загрузки: разбор заголовка, проверка строк, накопление и запись пачек.
+     */
+    private final class ImportRun {
+        private final Set<Long> projectIds;
+        private final Set<Long> userIds;
+        private final ImportReport report = new ImportReport();
+        private final List<PendingRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        private Map<String, Integer> columns;
+
+        ImportRun(Set<Long> projectIds, Set<Long> userIds) {
+            this.projectIds = projectIds;
+            this.userIds = userIds;
+        }
+
+        void accept(long rowNum, List<String> cells) {
+            if (columns == null) {
+                columns = header(cells);
+                return;
+            }
+            if (cells.stream().allMatch(String::isBlank)) return;
+            report.countRow();
+            if (report.getAbortReason() != null) {
+                // the rest of the file is only counted
+                report.countNotProcessed(1);
+                return;
+            }
+            try {
+                chunk.add(new PendingRow(rowNum, parse(cells)));
+            } catch (IllegalArgumentException e) {
+                report.addError(rowNum, e.getMessage());
+            }
+            if (chunk.size() >= CHUNK_SIZE) flush();
+        }
+
+        void finish() {
+            if (columns == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "file is empty");
+            }
+            flush();
+        }
+
+        private Map<String, Integer> header(List<String> cells) {
+            Map<String, Integer> map = new HashMap<>();
+            for (int i = 0; i < cells.size(); i++) {
+                // "Assignee ID" (xlsx) and "assigneeId" (csv) both become "assigneeid"
+                map.putIfAbsent(cells.get(i).replaceAll("[\\s_]", "").toLowerCase(Locale.ROOT), i);
+            }
+            if (!map.containsKey("title") || !map.containsKey("projectid")) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "header must contain title and projectId columns");
+            }
+            return map;
+        }
+
+        private String value(List<String> cells, String column) {
+            Integer idx = columns.get(column);
+            if (idx == null || idx >= cells.size()) return null;
+            String v = cells.get(idx).trim();
+            return v.isEmpty() ? null : v;
+        }
+
+        private Defect parse(List<String> cells) {
+            String title = value(cells, "title");
+            if (title == null) throw new IllegalArgumentException("title is required");
+            // lengths are checked after sanitization, which may escape characters (& -> &amp;)
+            String description = value(cells, "description");
+
+            Long projectId = parseId(value(cells, "projectid"), "projectId");
+            if (projectId == null || !projectIds.contains(projectId)) throw new IllegalArgumentException("project not found");
+            Long assigneeId = parseId(value(cells, "assigneeid"), "assigneeId");
+            if (assigneeId != null && !userIds.contains(assigneeId)) throw new IllegalArgumentException("assignee not found");
+
+            Defect d = new Defect();
+            d.setTitle(title);
+            d.setDescription(description);
+            d.setProjectId(projectId);
+            d.setAssigneeId(assigneeId);
+            d.setPriority(parseEnum(Priority.class, value(cells, "priority"), Priority.MEDIUM));
+            d.setStatus(parseEnum(DefectStatus.class, value(cells, "status"), DefectStatus.NEW));
+            d.setDueDate(parseInstant(value(cells, "duedate")));
+            return d;
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) return;
+            List<PendingRow> rows = new ArrayList<>(chunk);
+            chunk.clear();
+
+            // Jsoup cleaning is CPU-bound and independent per row
+            rows.parallelStream().forEach(r -> {
+                r.defect().setTitle(Jsoup.clean(r.defect().getTitle(), Safelist.basic()));
+                if (r.defect().getDescription() != null) {
+                    r.defect().setDescription(Jsoup.clean(r.defect().getDescription(), Safelist.basic()));
+                }
+            });
+            List<PendingRow> validRows = new ArrayList<>(rows.size());
+            for (PendingRow r : rows) {
+                String error = checkSanitized(r.defect());
+                if (error != null) report.addError(r.row(), error);
+                else validRows.add(r);
+            }
+            save(validRows);
+        }
+
+        private String checkSanitized(Defect d) {
+            if (d.getTitle().isBlank()) return "title is empty after sanitization";
+            if (d.getTitle().length() > MAX_TITLE) return "title must not exceed " + MAX_TITLE + " characters";
+            if (d.getDescription() != null && d.getDescription().length() > MAX_DESCRIPTION) {
+                return "description must not exceed " + MAX_DESCRIPTION + " characters";
+            }
+            return null;
+        }
+
+        /**
+         * Сохраняет строки одной транзакцией; отклонённую из-за данных пачку делит пополам, пока не останется строка
+         * с ошибкой. При недоступной БД останавливает загрузку.
+         */
+        private void save(List<PendingRow> rows) {
+            if (rows.isEmpty()) return;
+            if (report.getAbortReason() != null) {
+                report.countNotProcessed(rows.size());
+                return;
+            }
+            List<Defect> defects = rows.stream().map(PendingRow::defect).toList();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    List<Defect> saved = defectRepository.saveAll(defects);
+                    List<DefectHistory> history = new ArrayList<>(saved.size());
+                    for (Defect d : saved) {
+                        history.add(DefectHistoryService.entry(d.getId(), d.getAssigneeId() != null ? d.getAssigneeId() : 0L, "CREATED", null, null, "CREATED"));
+                    }
+                    defectHistoryService.recordChanges(history);
+                    defectStats.createdAll(saved);
+                    // the chunk's entities must not stay managed, whatever context the import runs in
+                    entityManager.flush();
+                    entityManager.clear();
+                });
+                report.countImported(defects.size());
+            } catch (RuntimeException e) {
+                // the rolled back attempt has handed out ids and versions; the retry inserts afresh
+                String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                if (!isRowError(e)) {
+                    // splitting would only repeat the failure (and its timeout) once per row
+                    log.error("Defect import stopped at row {}: {}", rows.get(0).row(), cause);
+                    report.abort("database unavailable: " + cause);
+                    report.countNotProcessed(rows.size());
+                    return;
+                }
+                defects.forEach(d -> {
+                    d.setId(null);
+                    d.setVersion(null);
+                });
+                if (rows.size() == 1) {
+                    log.warn("Defect import row {} failed: {}", rows.get(0).row(), cause);
+                    report.addError(rows.get(0).row(), "database error: " + cause);
+                    return;
+                }
+                int half = rows.size() / 2;
+                save(rows.subList(0, half));
+                save(rows.subList(half, rows.size()));
+            }
+        }
+    }
+
+    /**
+     * Ошибка из-за данных строк (ограничение, тип, длина), а не из-за соединения, пула или таймаута.
+     */
+    private static boolean isRowError(RuntimeException e) {
+        // EntityManager.flush() throws untranslated JPA exceptions
+        DataAccessException translated = e instanceof DataAccessException dae ? dae : EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(e);
+        if (!(translated instanceof NonTransientDataAccessException) || translated instanceof NonTransientDataAccessResourceException) {
+            return false;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConnectionLimitExceededException) return false;
+        }
+        return true;
+    }
+
+    private static Long parseId(String v, String column) {
+        if (v == null) return null;
+        try {
+            // xlsx numeric cells may come back as "12.0"
+            return new BigDecimal(v).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + column + ": " + v);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String v, E defaultValue) {
+        if (v == null) return defaultValue;
+        try {
+            return Enum.valueOf(type, v.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid " + type.getSimpleName().toLowerCase(Locale.ROOT) + ": " + v);
+        }
+    }
+
+    private static Instant parseInstant(String v) {
+        if (v == null) return null;
+        try {
+            return Instant.parse(v);
+        } catch (DateTimeParseException ignored) {}
+        try {
+            return LocalDateTime.parse(v).toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException ignored) {}
+        try {
+            return LocalDate.parse(v).atStartOfDay().toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid dueDate: " + v);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.dto.DefectSearchPage;
+import com.systemcontrol.backend.dto.DefectSearchResult;
+import com.systemcontrol.backend.model.Comment;
+import com.systemcontrol.backend.model.Defect;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.HtmlUtils;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Полнотекстовый поиск по названию и описанию дефектов и по комментариям.
+ * <p>
+ * На PostgreSQL — сгенерированные столбцы {@code search_vector} с GIN-индексами (V13), запрос
+ * {@code websearch_to_tsquery}, ранжирование {@code ts_rank_cd} (вес названия A, описания B, комментариев C)
+ * и подсветка {@code ts_headline} — только для строк страницы. На других БД (H2 в тестах) — упрощённый поиск
+ * подстрок с тем же контрактом ответа; он включается только явно ({@code app.search.substring-fallback}).
+ * БД определяется по метаданным подключения при старте, а не по тексту URL или настроенному диалекту.
+ * <p>
+ * Порядок — по убыванию релевантности, id — тай-брейкер; следующая страница выбирается по ключу
+ * (rank, id) последней строки, без OFFSET.
+ */
+@Service
+@Transactional(readOnly = true)
+public class DefectSearchService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final Logger log = LoggerFactory.getLogger(DefectSearchService.class);
+
+    // ts_headline markers; the text is HTML-escaped afterwards and only these become tags
+    private static final String START = "⟦";
+    private static final String STOP = "⟧";
+    private static final String SNIPPET_OPTIONS =
+        "StartSel=" + START + ", StopSel=" + STOP + ", MaxWords=35, MinWords=15, MaxFragments=2, FragmentDelimiter=\" … \"";
+    private static final String TITLE_OPTIONS = "StartSel=" + START + ", StopSel=" + STOP + ", HighlightAll=true";
+
+    // weights of ts_rank_cd's default {D, C, B, A} = {0.1, 0.2, 0.4, 1.0}, reused by the fallback
+    private static final float TITLE_WEIGHT = 1.0f;
+    private static final float DESCRIPTION_WEIGHT = 0.4f;
+    private static final float COMMENT_WEIGHT = 0.2f;
+    private static final int FALLBACK_SNIPPET_CHARS = 200;
+
+    private final EntityManager entityManager;
+    private final boolean postgres;
+
+    public DefectSearchService(EntityManager entityManager, DataSource dataSource,
+                               @Value("${app.search.substring-fallback:false}") boolean substringFallback) {
+        this.entityManager = entityManager;
+        // asked of the database itself: a wrapped URL (p6spy, testcontainers) or a forced dialect would mislead
+        String product;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Cannot determine the database for defect search", e);
+        }
+        this.postgres = "PostgreSQL".equals(product);
+        if (!postgres) {
+            if (!substringFallback) {
+                throw new IllegalStateException("Full-text search needs PostgreSQL, the database is " + product
+                    + "; set app.search.substring-fallback=true to rank substring matches in memory instead");
+            }
+            log.warn("Defect search uses the in-memory substring fallback on {}", product);
+        }
+    }
+
+    public DefectSearchPage search(String q, Long projectId, String cursor, int limit) {
+        if (q == null || q.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q is required");
+        }
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        SearchCursor after = cursor != null && !cursor.isBlank() ? SearchCursor.decode(cursor) : null;
+
+        // one extra row tells whether there is a next page
+        List<DefectSearchResult> rows = postgres
+            ? searchPostgres(q.trim(), projectId, after, size + 1)
+            : searchFallback(q.trim(), projectId, after, size + 1);
+        if (rows.size() <= size) {
+            return new DefectSearchPage(rows, null);
+        }
+        List<DefectSearchResult> items = rows.subList(0, size);
+        DefectSearchResult last = items.get(size - 1);
+        return new DefectSearchPage(items, new SearchCursor(last.getRank(), last.getId()).encode());
+    }
+
+    private List<DefectSearchResult> searchPostgres(String q, Long projectId, SearchCursor after, int limit) {
+        String projectFilter = projectId != null ? " and d.project_id = :projectId" : "";
+        // ranks are real; the cursor carries the exact value, so equality on the tie-break is reliable
+        String cursorFilter = after != null
+            ? " where r.rank < cast(:afterRank as real) or (r.rank = cast(:afterRank as real) and r.id < :afterId)"
+            : "";
+        String sql = """
+            with q as (select websearch_to_tsquery('russian', :q) as query),
+            hits as (
+                select d.id as id, ts_rank_cd(d.search_vector, q.query, 32) as rank
+                from defects d, q where d.search_vector @@ q.query%1$s
+                union all
+                select c.defect_id, ts_rank_cd(c.search_vector, q.query, 32)
+                from comments c join defects d on d.id = c.defect_id, q where c.search_vector @@ q.query%1$s
+            ),
+            ranked as (select id, max(rank) as rank from hits group by id),
+            page as (select r.id, r.rank from ranked r%2$s order by r.rank desc, r.id desc limit :limit)
+            select p.id, p.rank, d.project_id, d.title, d.status, d.priority,
+                   ts_headline('russian', d.title, q.query, :titleOptions),
+                   d.search_vector @@ q.query,
+                   ts_headline('russian', coalesce(d.description, ''), q.query, :snippetOptions),
+                   (select ts_headline('russian', c.content, q.query, :snippetOptions) from comments c
+                    where c.defect_id = p.id and c.search_vector @@ q.query
+                    order by ts_rank_cd(c.search_vector, q.query, 32) desc limit 1)
+            from page p join defects d on d.id = p.id cross join q
+            order by p.rank desc, p.id desc
+            """.formatted(projectFilter, cursorFilter);
+
+        Query query = entityManager.createNativeQuery(sql)
+            .setParameter("q", q)
+            .setParameter("limit", limit)
+            .setParameter("titleOptions", TITLE_OPTIONS)
+            .setParameter("snippetOptions", SNIPPET_OPTIONS);
+        if (projectId != null) query.setParameter("projectId", projectId);
+        if (after != null) {
+            query.setParameter("afterRank", after.rank());
+            query.setParameter("afterId", after.id());
+        }
+
+        List<DefectSearchResult> results = new ArrayList<>();
+        for (Object row : query.getResultList()) {
+            Object[] r = (Object[]) row;
+            boolean selfMatch = Boolean.TRUE.equals(r[7]);
+            // headlines mark the page rows only: ts_headline re-parses the text and is the expensive part
+            String snippet = highlight(selfMatch || r[9] == null ? (String) r[8] : (String) r[9]);
+            results.add(new DefectSearchResult(((Number) r[0]).longValue(),
+                r[2] != null ? ((Number) r[2]).longValue() : null,
+                (String) r[3], (String) r[4], (String) r[5], ((Number) r[1]).floatValue(),
+                highlight((String) r[6]), snippet,
+                selfMatch ? DefectSearchResult.MATCHED_DEFECT : DefectSearchResult.MATCHED_COMMENT));
+        }
+        return results;
+    }
+
+    /**
+     * Без полнотекстового индекса: все слова запроса должны встретиться (как подстроки) в названии, описании
+     * или комментарии. Совпадения ранжируются в памяти, поэтому режим годится только для небольших баз.
+     */
+    private List<DefectSearchResult> searchFallback(String q, Long projectId, SearchCursor after, int limit) {
+        List<String> terms = Arrays.stream(q.toLowerCase(Locale.ROOT).split("[\\s\"]+"))
+            .map(t -> t.startsWith("-") ? "" : t)
+            .filter(t -> !t.isEmpty() && !t.equals("or"))
+            .distinct()
+            .toList();
+        if (terms.isEmpty()) return List.of();
+
+        StringBuilder jpql = new StringBuilder("select d from Defect d where 1 = 1");
+        for (int i = 0; i < terms.size(); i++) {
+            String param = ":t" + i + " escape '\\'";
+            jpql.append(" and (lower(d.title) like ").append(param)
+                .append(" or lower(d.description) like ").append(param)
+                .append(" or exists (select c.id from Comment c where c.defectId = d.id and lower(c.content) like ").append(param).append("))");
+        }
+        if (projectId != null) jpql.append(" and d.projectId = :projectId");
+        TypedQuery<Defect> query = entityManager.createQuery(jpql.toString(), Defect.class);
+        for (int i = 0; i < terms.size(); i++) {
+            query.setParameter("t" + i, "%" + terms.get(i).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+        if (projectId != null) query.setParameter("projectId", projectId);
+        List<Defect> defects = query.getResultList();
+        if (defects.isEmpty()) return List.of();
+
+        Map<Long, List<String>> commentsByDefect = new HashMap<>();
+        entityManager.createQuery("select c from Comment c where c.defectId in :ids", Comment.class)
+            .setParameter("ids", defects.stream().map(Defect::getId).toList())
+            .getResultList()
+            .forEach(c -> commentsByDefect.computeIfAbsent(c.getDefectId(), k -> new ArrayList<>()).add(text(c.getContent())));
+
+        List<DefectSearchResult> results = new ArrayList<>();
+        for (Defect d : defects) {
+            String title = text(d.getTitle());
+            String description = text(d.getDescription());
+            List<String> comments = commentsByDefect.getOrDefault(d.getId(), List.of());
+            float score = 0;
+            boolean selfMatch = false;
+            String matchedComment = null;
+            for (String term : terms) {
+                if (containsIgnoreCase(title, term)) {
+                    score += TITLE_WEIGHT;
+                    selfMatch = true;
+                } else if (containsIgnoreCase(description, term)) {
+                    score += DESCRIPTION_WEIGHT;
+                    selfMatch = true;
+                } else {
+                    score += COMMENT_WEIGHT;
+                    if (matchedComment == null) {
+                        matchedComment = comments.stream().filter(c -> containsIgnoreCase(c, term)).findFirst().orElse(null);
+                    }
+                }
+            }
+            // same normalisation as ts_rank_cd flag 32: rank / (rank + 1)
+            float rank = score / (score + 1);
+            if (after != null && !after.isBefore(rank, d.getId())) continue;
+            String snippetSource = selfMatch || matchedComment == null ? description : matchedComment;
+            results.add(new DefectSearchResult(d.getId(), d.getProjectId(), d.getTitle(),
+                d.getStatus() != null ? d.getStatus().name() : null,
+                d.getPriority() != null ? d.getPriority().name() : null,
+                rank, escape(mark(title, terms)), escape(mark(excerpt(snippetSource, terms), terms)),
+                selfMatch ? DefectSearchResult.MATCHED_DEFECT : DefectSearchResult.MATCHED_COMMENT));
+        }
+        results.sort(Comparator.comparing(DefectSearchResult::getRank).reversed()
+            .thenComparing(Comparator.comparing(DefectSearchResult::getId).reversed()));
+        return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+    }
+
+    /**
+     * Текст хранится очищенным HTML (Jsoup, basic): теги снимаются, текст экранируется заново,
+     * и HTML-разметкой остаются только маркеры совпадений, ставшие {@code <mark>}.
+     */
+    static String highlight(String marked) {
+        if (marked == null) return null;
+        return escape(text(marked));
+    }
+
+    private static String text(String html) {
+        return html == null ? "" : Jsoup.parse(html).text();
+    }
+
+    private static String escape(String marked) {
+        return HtmlUtils.htmlEscape(marked).replace(START, "<mark>").replace(STOP, "</mark>");
+    }
+
+    private static String mark(String text, List<String> terms) {
+        String alternatives = String.join("|", terms.stream().map(Pattern::quote).toList());
+        Matcher m = Pattern.compile(alternatives, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE).matcher(text);
+        return m.replaceAll(r -> Matcher.quoteReplacement(START + r.group() + STOP));
+    }
+
+    private static String excerpt(String text, List<String> terms) {
+        if (text.length() <= FALLBACK_SNIPPET_CHARS) return text;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int hit = terms.stream().mapToInt(lower::indexOf).filter(i -> i >= 0).min().orElse(0);
+        int start = Math.max(0, hit - FALLBACK_SNIPPET_CHARS / 4);
+        int end = Math.min(text.length(), start + FALLBACK_SNIPPET_CHARS);
+        return (start > 0 ? "… " : "") + text.substring(start, end) + (end < text.length() ? " …" : "");
+    }
+
+    private static boolean containsIgnoreCase(String text, String lowerTerm) {
+        return text.toLowerCase(Locale.ROOT).contains(lowerTerm);
+    }
+}
@@ -1,27 +1,46 @@
 package com.systemcontrol.backend.service;
 
+import com.systemcontrol.backend.dto.DefectChangeEvent;
+import com.systemcontrol.backend.dto.DefectFilter;
+import com.systemcontrol.backend.dto.DefectPage;
+import com.systemcontrol.backend.exception.DefectConflictException;
 import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectHistory;
 import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.DefectSpecifications;
 import com.systemcontrol.backend.repository.ProjectRepository;
 import com.systemcontrol.backend.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 public class DefectService {
+    public static final String SORT_ID = "id";
+    public static final String SORT_UPDATED_AT = "updatedAt";
+    public static final int MAX_PAGE_SIZE = 500;
+
     private final DefectRepository defectRepository;
     private final ProjectRepository projectRepository;
     private final UserRepository userRepository;
     private final DefectHistoryService defectHistoryService;
+    private final DefectChangeFeed changeFeed;
+    private final DefectStatsService defectStats;
 
-    public DefectService(DefectRepository defectRepository, ProjectRepository projectRepository, UserRepository userRepository, DefectHistoryService defectHistoryService) {
+    public DefectService(DefectRepository defectRepository, ProjectRepository projectRepository, UserRepository userRepository, DefectHistoryService defectHistoryService, DefectChangeFeed changeFeed, DefectStatsService defectStats) {
         this.defectRepository = defectRepository;
         this.projectRepository = projectRepository;
         this.userRepository = userRepository;
         this.defectHistoryService = defectHistoryService;
+        this.changeFeed = changeFeed;
+        this.defectStats = defectStats;
     }
 
     private static String clean(String s) {
@@ -29,6 +48,7 @@ public class DefectService {
         return org.jsoup.Jsoup.clean(s, org.jsoup.safety.Safelist.basic());
     }
 
+    @Transactional
     public Defect create(Defect d) {
         if (d.getProjectId() == null || !projectRepository.existsById(d.getProjectId())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "project not found");
@@ -39,12 +59,20 @@ public class DefectService {
         d.setTitle(clean(d.getTitle()));
         d.setDescription(clean(d.getDescription()));
         Defect saved = defectRepository.save(d);
+        defectStats.created(saved);
         // Record creation in history
         defectHistoryService.recordChange(saved.getId(), d.getAssigneeId() != null ? d.getAssigneeId() : 0L, "CREATED", null, null, "CREATED");
+        changeFeed.publish(DefectChangeEvent.of(DefectChangeEvent.CREATED, saved, List.of()));
         return saved;
     }
+    @Transactional
     public Defect update(Long id, Defect updated) {
         Defect exist = defectRepository.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "defect not found"));
+        // the client edited an older copy; a missing version (older clients) falls back to the flush-time check
+        if (updated.getVersion() != null && !updated.getVersion().equals(exist.getVersion())) {
+            throw new DefectConflictException(id, "Дефект уже изменён другим пользователем");
+        }
+        DefectStatsService.Slot before = DefectStatsService.Slot.of(exist);
         if (updated.getProjectId() == null || !projectRepository.existsById(updated.getProjectId())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "project not found");
         }
@@ -66,19 +94,22 @@ public class DefectService {
             }
         }
         
-        // Record changes in history
+        // Record changes in history (one batch for the whole update)
+        Long historyUserId = updated.getAssigneeId() != null ? updated.getAssigneeId() : 0L;
+        List<DefectHistory> changes = new ArrayList<>(4);
         if (!exist.getTitle().equals(updated.getTitle())) {
-            defectHistoryService.recordChange(id, updated.getAssigneeId() != null ? updated.getAssigneeId() : 0L, "title", exist.getTitle(), updated.getTitle(), "UPDATED");
+            changes.add(DefectHistoryService.entry(id, historyUserId, "title", exist.getTitle(), updated.getTitle(), "UPDATED"));
         }
         if (!exist.getStatus().equals(updated.getStatus())) {
-            defectHistoryService.recordChange(id, updated.getAssigneeId() != null ? updated.getAssigneeId() : 0L, "status", exist.getStatus().toString(), updated.getStatus().toString(), "STATUS_CHANGED");
+            changes.add(DefectHistoryService.entry(id, historyUserId, "status", exist.getStatus().toString(), updated.getStatus().toString(), "STATUS_CHANGED"));
         }
         if (!exist.getPriority().equals(updated.getPriority())) {
-            defectHistoryService.recordChange(id, updated.getAssigneeId() != null ? updated.getAssigneeId() : 0L, "priority", exist.getPriority().toString(), updated.getPriority().toString(), "UPDATED");
+            changes.add(DefectHistoryService.entry(id, historyUserId, "priority", exist.getPriority().toString(), updated.getPriority().toString(), "UPDATED"));
         }
         if (!java.util.Objects.equals(exist.getAssigneeId(), updated.getAssigneeId())) {
-            defectHistoryService.recordChange(id, updated.getAssigneeId() != null ? updated.getAssigneeId() : 0L, "assignee", exist.getAssigneeId() != null ? exist.getAssigneeId().toString() : null, updated.getAssigneeId() != null ? updated.getAssigneeId().toString() : null, "ASSIGNED");
+            changes.add(DefectHistoryService.entry(id, historyUserId, "assignee", exist.getAssigneeId() != null ? exist.getAssigneeId().toString() : null, updated.getAssigneeId() != null ? updated.getAssigneeId().toString() : null, "ASSIGNED"));
         }
+        defectHistoryService.recordChanges(changes);
         
         // copy mutable fields (with sanitization)
         exist.setTitle(clean(updated.getTitle()));
@@ -89,11 +120,19 @@ public class DefectService {
         exist.setProjectId(updated.getProjectId());
         exist.setDueDate(updated.getDueDate());
         exist.setUpdatedAt(java.time.Instant.now());
-        return defectRepository.save(exist);
+        Defect saved = defectRepository.save(exist);
+        // version check and increment happen now, so the response carries the version the next PUT must send
+        defectRepository.flush();
+        defectStats.changed(before, saved);
+        changeFeed.publish(DefectChangeEvent.of(DefectChangeEvent.UPDATED, saved,
+            changes.stream().map(DefectChangeEvent.FieldChange::of).toList()));
+        return saved;
     }
     /**
      * Изменяет только статус дефекта с валидацией переходов
      */
+    @Timed(value = "defects.transitions", extraTags = {"operation", "set"})
+    @Transactional
     public Defect updateStatus(Long id, com.systemcontrol.backend.model.DefectStatus newStatus, Long userId) {
         Defect exist = defectRepository.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "defect not found"));
         
@@ -103,20 +142,14 @@ public class DefectService {
                 "Недопустимый переход статуса. " + exist.getStatus().getAllowedTransitionsDescription());
         }
         
-        // Record status change in history
-        defectHistoryService.recordChange(id, userId != null ? userId : 0L, "status", 
-            exist.getStatus().toString(), newStatus.toString(), "STATUS_CHANGED");
-        
-        // Update status
-        exist.setStatus(newStatus);
-        exist.setUpdatedAt(java.time.Instant.now());
-        
-        return defectRepository.save(exist);
+        return transition(exist, newStatus, userId, "STATUS_CHANGED");
     }
     
     /**
      * Переводит дефект к следующему статусу в workflow
      */
+    @Timed(value = "defects.transitions", extraTags = {"operation", "next"})
+    @Transactional
     public Defect moveToNextStatus(Long id, Long userId, String userRole) {
         Defect defect = defectRepository.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "defect not found"));
         
@@ -128,15 +161,7 @@ public class DefectService {
                     "Дефект уже в финальном статусе: " + defect.getStatus());
             }
             
-            // Record status change in history
-            defectHistoryService.recordChange(id, userId != null ? userId : 0L, "status", 
-                defect.getStatus().toString(), nextStatus.toString(), "STATUS_CHANGED");
-            
-            // Update status
-            defect.setStatus(nextStatus);
-            defect.setUpdatedAt(java.time.Instant.now());
-            
-            return defectRepository.save(defect);
+            return transition(defect, nextStatus, userId, "STATUS_CHANGED");
         }
         
         // Для инженера: не может переводить из "На проверке" (только менеджер может закрывать)
@@ -152,20 +177,14 @@ public class DefectService {
         
         com.systemcontrol.backend.model.DefectStatus nextStatus = defect.getStatus().getNextStatus();
         
-        // Record status change in history
-        defectHistoryService.recordChange(id, userId != null ? userId : 0L, "status", 
-            defect.getStatus().toString(), nextStatus.toString(), "STATUS_CHANGED");
-        
-        // Update status
-        defect.setStatus(nextStatus);
-        defect.setUpdatedAt(java.time.Instant.now());
-        
-        return defectRepository.save(defect);
+        return transition(defect, nextStatus, userId, "STATUS_CHANGED");
     }
     
     /**
      * Отменяет дефект
      */
+    @Timed(value = "defects.transitions", extraTags = {"operation", "cancel"})
+    @Transactional
     public Defect cancelDefect(Long id, Long userId, String userRole) {
         Defect defect = defectRepository.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "defect not found"));
         
@@ -181,20 +200,39 @@ public class DefectService {
                 "Только менеджер или администратор могут отменять дефекты.");
         }
         
-        // Record status change in history
-        defectHistoryService.recordChange(id, userId != null ? userId : 0L, "status", 
-            defect.getStatus().toString(), com.systemcontrol.backend.model.DefectStatus.CANCELLED.toString(), "CANCELLED");
-        
-        // Update status
-        defect.setStatus(com.systemcontrol.backend.model.DefectStatus.CANCELLED);
-        defect.setUpdatedAt(java.time.Instant.now());
-        
-        return defectRepository.save(defect);
+        return transition(defect, com.systemcontrol.backend.model.DefectStatus.CANCELLED, userId, "CANCELLED");
+    }
+
+    /**
+     * Переход статуса одним условным UPDATE: строка меняется, только если статус всё ещё тот, по которому
+     * проверялся переход. Иначе дефект успели изменить параллельно — {@link DefectConflictException}.
+     */
+    private Defect transition(Defect defect, com.systemcontrol.backend.model.DefectStatus to, Long userId, String action) {
+        DefectStatsService.Slot before = DefectStatsService.Slot.of(defect);
+        com.systemcontrol.backend.model.DefectStatus from = defect.getStatus();
+        java.time.Instant now = java.time.Instant.now();
+        if (defectRepository.compareAndSetStatus(defect.getId(), from, to, now) == 0) {
+            throw new DefectConflictException(defect.getId(),
+                "Статус дефекта уже изменён другим пользователем (ожидался " + from + ")");
+        }
+        // the loaded entity is detached by the UPDATE; bring it in line with the row for the response.
+        // The version is read back: an edit committed between the load and the UPDATE has bumped it too
+        defect.setStatus(to);
+        defect.setUpdatedAt(now);
+        defect.setVersion(defectRepository.findVersionById(defect.getId()));
+
+        defectHistoryService.recordChange(defect.getId(), userId != null ? userId : 0L, "status",
+            from.toString(), to.toString(), action);
+        defectStats.changed(before, defect);
+        changeFeed.publish(DefectChangeEvent.of(DefectChangeEvent.UPDATED, defect,
+            List.of(new DefectChangeEvent.FieldChange("status", from.toString(), to.toString(), action))));
+        return defect;
     }
     
     /**
      * Получает разрешенные переходы для дефекта
      */
+    @Transactional(readOnly = true)
     public java.util.List<com.systemcontrol.backend.model.DefectStatus> getAllowedStatusTransitions(Long id) {
         Defect defect = defectRepository.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "defect not found"));
         return java.util.Arrays.stream(com.systemcontrol.backend.model.DefectStatus.values())
@@ -213,8 +251,61 @@ public class DefectService {
         return "ROLE_VIEWER"; // Default role
     }
 
+    // read-only methods may be served by a replica (ReplicaRoutingDataSource)
+    @Transactional(readOnly = true)
     public Defect get(Long id) { return defectRepository.findById(id).orElse(null); }
+    /** Дефект с основной базы, без отставания реплик: состояние, которое проиграло параллельной правке. */
+    @Transactional
+    public Defect current(Long id) { return defectRepository.findById(id).orElse(null); }
+    @Transactional(readOnly = true)
+    public java.util.Optional<java.time.Instant> updatedAt(Long id) { return defectRepository.findUpdatedAtById(id); }
+    @Transactional(readOnly = true)
+    public java.util.Optional<DefectStatsService.ChangeVersion> listVersion(Long projectId) { return defectStats.changeVersion(projectId); }
+    @Transactional(readOnly = true)
     public List<Defect> listByProject(Long projectId) { return defectRepository.findByProjectId(projectId); }
+    @Transactional(readOnly = true)
     public List<Defect> listAll() { return defectRepository.findAll(); }
-    public void delete(Long id) { defectRepository.deleteById(id); }
+
+    /**
+     * Постраничный список с фильтрами. Сортировка всегда по убыванию, id используется как тай-брейкер,
+     * поэтому порядок стабилен и следующая страница выбирается по ключу последней строки, без OFFSET.
+     */
+    @Transactional(readOnly = true)
+    public DefectPage listPage(DefectFilter filter, String sort, String cursor, int limit) {
+        if (!SORT_ID.equals(sort) && !SORT_UPDATED_AT.equals(sort)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unsupported sort: " + sort);
+        }
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        Specification<Defect> spec = DefectSpecifications.matching(filter);
+        if (cursor != null && !cursor.isBlank()) {
+            DefectCursor after = DefectCursor.decode(cursor);
+            if (!sort.equals(after.sort()) || (SORT_UPDATED_AT.equals(sort) && after.updatedAt() == null)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "cursor does not match sort");
+            }
+            spec = spec.and(SORT_ID.equals(sort)
+                ? DefectSpecifications.idBefore(after.id())
+                : DefectSpecifications.updatedBefore(after.updatedAt(), after.id()));
+        }
+        Sort order = SORT_ID.equals(sort)
+            ? Sort.by(Sort.Direction.DESC, "id")
+            : Sort.by(Sort.Direction.DESC, "updatedAt", "id");
+
+        // one extra row tells whether there is a next page without a COUNT query
+        List<Defect> rows = defectRepository.findBy(spec, q -> q.sortBy(order).limit(size + 1).all());
+        if (rows.size() <= size) {
+            return new DefectPage(rows, null);
+        }
+        List<Defect> items = rows.subList(0, size);
+        Defect last = items.get(size - 1);
+        return new DefectPage(items, new DefectCursor(sort, last.getUpdatedAt(), last.getId()).encode());
+    }
+    @Transactional
+    public void delete(Long id) {
+        defectRepository.findById(id).ifPresent(d -> {
+            defectRepository.delete(d);
+            defectStats.deleted(d);
+            changeFeed.publish(DefectChangeEvent.of(DefectChangeEvent.DELETED, d, List.of()));
+        });
+    }
 }
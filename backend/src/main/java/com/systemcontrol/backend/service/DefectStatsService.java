@@ -0,0 +1,324 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.repository.ProjectRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Счётчики дефектов по проектам (таблица {@code project_defect_stats}): всего, по статусам и по приоритетам.
+ * <p>
+ * Изменения дефектов переводятся в приращения и применяются одним {@code UPDATE ... SET c = c + ?} в транзакции
+ * изменения, поэтому параллельные правки не теряют друг друга. Если строки проекта ещё нет, она считается по дефектам.
+ * Периодическая сверка пересчитывает каждый проект под блокировкой строки и исправляет расхождения
+ * (правки в обход сервиса, ручные изменения в БД).
+ * Каждое изменение поднимает и {@code change_version} проекта — из неё строится ETag списков дефектов.
+ */
+@Service
+public class DefectStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(DefectStatsService.class);
+
+    private static final DefectStatus[] STATUSES = DefectStatus.values();
+    private static final Priority[] PRIORITIES = Priority.values();
+    // counter layout: [total, one per status, one per priority]
+    private static final int SIZE = 1 + STATUSES.length + PRIORITIES.length;
+
+    private static final List<String> COLUMNS = columns();
+    private static final String COLUMN_LIST = String.join(", ", COLUMNS);
+    private static final String APPLY_DELTA = "UPDATE project_defect_stats SET "
+        + COLUMNS.stream().map(c -> c + " = " + c + " + ?").collect(Collectors.joining(", "))
+        + ", change_version = change_version + 1, updated_at = CURRENT_TIMESTAMP WHERE project_id = ?";
+    private static final String OVERWRITE = "UPDATE project_defect_stats SET "
+        + COLUMNS.stream().map(c -> c + " = ?").collect(Collectors.joining(", "))
+        + ", change_version = change_version + 1, updated_at = CURRENT_TIMESTAMP WHERE project_id = ?";
+    private static final String COUNT_DEFECTS = "SELECT " + countExpressions() + " FROM defects WHERE project_id = ?";
+    // a concurrent first write may have created the row meanwhile; the sweep settles any difference
+    private static final String INSERT_COUNTED = "INSERT INTO project_defect_stats (project_id, " + COLUMN_LIST + ", change_version, updated_at) "
+        + "SELECT ?, " + countExpressions() + ", 0, CURRENT_TIMESTAMP FROM defects WHERE project_id = ? "
+        + "ON CONFLICT DO NOTHING";
+    private static final String SELECT_ROW = "SELECT " + COLUMN_LIST + " FROM project_defect_stats WHERE project_id = ?";
+    private static final String SUM_ALL = "SELECT " + COLUMNS.stream().map(c -> "COALESCE(SUM(" + c + "), 0)").collect(Collectors.joining(", "))
+        + " FROM project_defect_stats";
+    private static final String SELECT_PROGRESS = "SELECT project_id, total, status_closed FROM project_defect_stats ORDER BY project_id";
+    private static final String SELECT_VERSION = "SELECT change_version, updated_at FROM project_defect_stats WHERE project_id = ?";
+    private static final String SUM_VERSIONS = "SELECT COALESCE(SUM(change_version), 0), COUNT(*), MAX(updated_at) FROM project_defect_stats";
+
+    private final EntityManager entityManager;
+    private final ProjectRepository projectRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ResourceVersions resourceVersions;
+
+    public DefectStatsService(EntityManager entityManager, ProjectRepository projectRepository, TransactionTemplate transactionTemplate,
+                              ResourceVersions resourceVersions) {
+        this.entityManager = entityManager;
+        this.projectRepository = projectRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.resourceVersions = resourceVersions;
+    }
+
+    /**
+     * Проект, статус и приоритет дефекта — всё, от чего зависят счётчики.
+     */
+    public record Slot(Long projectId, DefectStatus status, Priority priority) {
+        public static Slot of(Defect d) {
+            return new Slot(d.getProjectId(), d.getStatus(), d.getPriority());
+        }
+    }
+
+    /**
+     * Счётчики проекта или всех проектов; в распределениях только ненулевые значения.
+     */
+    public record Counts(long total, Map<DefectStatus, Long> byStatus, Map<Priority, Long> byPriority) {
+    }
+
+    /**
+     * Всего и закрытых дефектов проекта.
+     */
+    public record ProjectProgress(Long projectId, long totalDefects, long closedDefects) {
+    }
+
+    /**
+     * Версия изменений дефектов проекта (или всех) для ETag и время последнего изменения.
+     */
+    public record ChangeVersion(String tag, Instant lastModified) {
+    }
+
+    /** Вызывается в транзакции создания дефекта. */
+    public void created(Defect defect) {
+        change(null, Slot.of(defect));
+    }
+
+    /** Вызывается в транзакции удаления дефекта. */
+    public void deleted(Defect defect) {
+        change(Slot.of(defect), null);
+    }
+
+    /**
+     * Вызывается в транзакции изменения: {@code before} — слот до правки, {@code after} — сохранённый дефект.
+     */
+    public void changed(Slot before, Defect after) {
+        change(before, Slot.of(after));
+    }
+
+    /** Пачка новых дефектов (импорт): одно обращение на проект. */
+    public void createdAll(Collection<Defect> defects) {
+        Map<Long, long[]> deltas = new HashMap<>();
+        for (Defect d : defects) {
+            add(deltas.computeIfAbsent(d.getProjectId(), id -> new long[SIZE]), Slot.of(d), 1);
+        }
+        deltas.forEach(this::apply);
+    }
+
+    /**
+     * Пачка изменений (массовые операции): {@code before.get(i)} переходит в {@code after.get(i)}, одно обращение на проект.
+     */
+    public void changedAll(List<Slot> before, List<Slot> after) {
+        Map<Long, long[]> deltas = new HashMap<>();
+        for (int i = 0; i < before.size(); i++) {
+            add(deltas.computeIfAbsent(before.get(i).projectId(), id -> new long[SIZE]), before.get(i), -1);
+            add(deltas.computeIfAbsent(after.get(i).projectId(), id -> new long[SIZE]), after.get(i), 1);
+        }
+        deltas.forEach(this::apply);
+    }
+
+    /** Строка нового проекта; вызывается в транзакции создания проекта. */
+    public void initialize(Long projectId) {
+        insertCounted(projectId);
+    }
+
+    private void change(Slot before, Slot after) {
+        if (before != null && after != null && before.projectId() != null && before.projectId().equals(after.projectId())) {
+            long[] delta = new long[SIZE];
+            add(delta, before, -1);
+            add(delta, after, 1);
+            apply(before.projectId(), delta);
+            return;
+        }
+        if (before != null) {
+            long[] delta = new long[SIZE];
+            add(delta, before, -1);
+            apply(before.projectId(), delta);
+        }
+        if (after != null) {
+            long[] delta = new long[SIZE];
+            add(delta, after, 1);
+            apply(after.projectId(), delta);
+        }
+    }
+
+    private static void add(long[] counters, Slot slot, int sign) {
+        counters[0] += sign;
+        if (slot.status() != null) counters[1 + slot.status().ordinal()] += sign;
+        if (slot.priority() != null) counters[1 + STATUSES.length + slot.priority().ordinal()] += sign;
+    }
+
+    // a zero delta (title, description, assignee changes) still raises the change version
+    private void apply(Long projectId, long[] delta) {
+        if (projectId == null) return;
+        Query update = entityManager.createNativeQuery(APPLY_DELTA);
+        for (int i = 0; i < SIZE; i++) update.setParameter(i + 1, delta[i]);
+        update.setParameter(SIZE + 1, projectId);
+        if (update.executeUpdate() == 0) {
+            // no row yet (project created outside ProjectService): count the defects, which already include this change
+            entityManager.flush();
+            insertCounted(projectId);
+        }
+    }
+
+    private void insertCounted(Long projectId) {
+        entityManager.createNativeQuery(INSERT_COUNTED)
+            .setParameter(1, projectId)
+            .setParameter(2, projectId)
+            .executeUpdate();
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Counts> forProject(Long projectId) {
+        List<?> rows = entityManager.createNativeQuery(SELECT_ROW).setParameter(1, projectId).getResultList();
+        return rows.isEmpty() ? Optional.empty() : Optional.of(toCounts(counters((Object[]) rows.get(0))));
+    }
+
+    @Transactional(readOnly = true)
+    public Counts totals() {
+        return toCounts(counters((Object[]) entityManager.createNativeQuery(SUM_ALL).getSingleResult()));
+    }
+
+    /** Всего и закрытых дефектов по всем проектам одним запросом. */
+    @Transactional(readOnly = true)
+    public List<ProjectProgress> progress() {
+        List<?> rows = entityManager.createNativeQuery(SELECT_PROGRESS).getResultList();
+        List<ProjectProgress> result = new ArrayList<>(rows.size());
+        for (Object r : rows) {
+            Object[] row = (Object[]) r;
+            result.add(new ProjectProgress(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), ((Number) row[2]).longValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Версия для списка дефектов проекта; без проекта — для всех дефектов. Пусто, если строки счётчиков проекта ещё нет.
+     */
+    @Transactional(readOnly = true)
+    public Optional<ChangeVersion> changeVersion(Long projectId) {
+        if (projectId != null) {
+            List<?> rows = entityManager.createNativeQuery(SELECT_VERSION).setParameter(1, projectId).getResultList();
+            if (rows.isEmpty()) return Optional.empty();
+            Object[] row = (Object[]) rows.get(0);
+            return Optional.of(new ChangeVersion(projectId + "." + ((Number) row[0]).longValue(), instant(row[1])));
+        }
+        // rows are only added while the project list stays the same, and each change raises one row's version;
+        // the projects version covers rows removed with their project
+        Object[] row = (Object[]) entityManager.createNativeQuery(SUM_VERSIONS).getSingleResult();
+        String tag = resourceVersions.current(ResourceVersions.PROJECTS) + "." + ((Number) row[1]).longValue()
+            + "." + ((Number) row[0]).longValue();
+        return Optional.of(new ChangeVersion(tag, instant(row[2])));
+    }
+
+    /**
+     * Сверяет счётчики каждого проекта с дефектами и исправляет расхождения. Возвращает число исправленных проектов.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.reconcile-interval:PT1H}",
+               initialDelayString = "${app.analytics.reconcile-interval:PT1H}")
+    public int reconcile() {
+        int repaired = 0;
+        for (Long projectId : projectRepository.findAllIds()) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> reconcile(projectId)))) repaired++;
+            } catch (RuntimeException e) {
+                log.warn("Could not reconcile defect counters of project {}: {}", projectId, e.getMessage());
+            }
+        }
+        if (repaired > 0) log.warn("Defect counters drifted for {} project(s), repaired", repaired);
+        return repaired;
+    }
+
+    private boolean reconcile(Long projectId) {
+        // the row lock orders this recount with concurrent deltas: those committed before are counted,
+        // those waiting for the lock are applied on top of the corrected row
+        List<?> locked = entityManager.createNativeQuery(SELECT_ROW + " FOR UPDATE").setParameter(1, projectId).getResultList();
+        if (locked.isEmpty()) {
+            insertCounted(projectId);
+            return true;
+        }
+        long[] stored = counters((Object[]) locked.get(0));
+        long[] actual = counters((Object[]) entityManager.createNativeQuery(COUNT_DEFECTS).setParameter(1, projectId).getSingleResult());
+        if (Arrays.equals(stored, actual)) return false;
+        log.info("Project {} defect counters {} differ from defects {}", projectId, Arrays.toString(stored), Arrays.toString(actual));
+        Query overwrite = entityManager.createNativeQuery(OVERWRITE);
+        for (int i = 0; i < SIZE; i++) overwrite.setParameter(i + 1, actual[i]);
+        overwrite.setParameter(SIZE + 1, projectId);
+        overwrite.executeUpdate();
+        return true;
+    }
+
+    private static Instant instant(Object value) {
+        return switch (value) {
+            case null -> null;
+            case Instant i -> i;
+            case OffsetDateTime o -> o.toInstant();
+            case Timestamp t -> t.toInstant();
+            default -> throw new IllegalStateException("unexpected timestamp type " + value.getClass());
+        };
+    }
+
+    private static long[] counters(Object[] row) {
+        long[] counters = new long[SIZE];
+        // SUM comes back as numeric on PostgreSQL, COUNT as bigint
+        for (int i = 0; i < SIZE; i++) counters[i] = ((Number) row[i]).longValue();
+        return counters;
+    }
+
+    private static Counts toCounts(long[] counters) {
+        Map<DefectStatus, Long> byStatus = new EnumMap<>(DefectStatus.class);
+        for (DefectStatus s : STATUSES) {
+            long v = counters[1 + s.ordinal()];
+            if (v != 0) byStatus.put(s, v);
+        }
+        Map<Priority, Long> byPriority = new EnumMap<>(Priority.class);
+        for (Priority p : PRIORITIES) {
+            long v = counters[1 + STATUSES.length + p.ordinal()];
+            if (v != 0) byPriority.put(p, v);
+        }
+        return new Counts(counters[0], byStatus, byPriority);
+    }
+
+    private static List<String> columns() {
+        List<String> columns = new ArrayList<>(SIZE);
+        columns.add("total");
+        for (DefectStatus s : STATUSES) columns.add("status_" + s.name().toLowerCase(Locale.ROOT));
+        for (Priority p : PRIORITIES) columns.add("priority_" + p.name().toLowerCase(Locale.ROOT));
+        return columns;
+    }
+
+    // enum names are constants, not user input
+    private static String countExpressions() {
+        List<String> expressions = new ArrayList<>(SIZE);
+        expressions.add("COUNT(*)");
+        for (DefectStatus s : STATUSES) expressions.add("COUNT(CASE WHEN status = '" + s.name() + "' THEN 1 END)");
+        for (Priority p : PRIORITIES) expressions.add("COUNT(CASE WHEN priority = '" + p.name() + "' THEN 1 END)");
+        return String.join(", ", expressions);
+    }
+}
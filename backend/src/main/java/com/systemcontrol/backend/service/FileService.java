@@ -2,59 +2,85 @@ package com.systemcontrol.backend.service;
 
 import com.systemcontrol.backend.model.Attachment;
 import com.systemcontrol.backend.repository.AttachmentRepository;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.UUID;
 
 @Service
 public class FileService {
     
-    @Value("${app.upload.dir:uploads}")
-    private String uploadDir;
-    
     private final AttachmentRepository attachmentRepository;
+    private final AttachmentStore attachmentStore;
+    private final ImageDerivativeService imageDerivativeService;
     
-    public FileService(AttachmentRepository attachmentRepository) {
+    public FileService(AttachmentRepository attachmentRepository, AttachmentStore attachmentStore,
+                       ImageDerivativeService imageDerivativeService) {
         this.attachmentRepository = attachmentRepository;
+        this.attachmentStore = attachmentStore;
+        this.imageDerivativeService = imageDerivativeService;
     }
     
     public Attachment saveFile(MultipartFile file, Long defectId) throws IOException {
-        // Create upload directory if it doesn't exist
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+        // Hash while streaming to a temp file, then publish into the content-addressed store
+        AttachmentStore.StagedBlob staged;
+        try (InputStream in = file.getInputStream()) {
+            staged = attachmentStore.stage(in);
         }
-        
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+        return saveStaged(staged, file.getOriginalFilename(), file.getContentType(), defectId);
+    }
+
+    /**
+     * Публикует принятое содержимое и создаёт вложение. Временный файл удаляется в любом случае.
+     */
+    public Attachment saveStaged(AttachmentStore.StagedBlob staged, String originalFilename, String contentType, Long defectId) throws IOException {
+        Path filePath;
+        try {
+            filePath = attachmentStore.addReference(staged);
+        } catch (IOException | RuntimeException e) {
+            attachmentStore.discard(staged);
+            throw e;
         }
-        String uniqueFilename = UUID.randomUUID().toString() + extension;
-        
-        // Save file
-        Path filePath = uploadPath.resolve(uniqueFilename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        
-        // Save attachment record
+        return saveReference(staged.hash(), staged.size(), filePath, originalFilename, contentType, defectId);
+    }
+
+    /**
+     * Вложение на уже загруженное содержимое (клиент знает хэш и не передаёт байты).
+     * Возвращает null, если содержимого с таким хэшем нет.
+     */
+    public Attachment linkExisting(String hash, String originalFilename, String contentType, Long defectId) throws IOException {
+        if (!AttachmentStore.isValidHash(hash) || !attachmentStore.addReference(hash)) {
+            return null;
+        }
+        return saveReference(hash, attachmentStore.size(hash), attachmentStore.pathFor(hash), originalFilename,
+            contentType != null ? contentType : "application/octet-stream", defectId);
+    }
+
+    private Attachment saveReference(String hash, long size, Path filePath, String originalFilename, String contentType, Long defectId) throws IOException {
         Attachment attachment = new Attachment();
-        attachment.setFileName(uniqueFilename);
+        attachment.setFileName(hash);
         attachment.setOriginalFileName(originalFilename);
-        attachment.setContentType(file.getContentType());
-        attachment.setFileSize(file.getSize());
+        attachment.setContentType(contentType);
+        attachment.setFileSize(size);
         attachment.setFilePath(filePath.toString());
+        attachment.setContentHash(hash);
         attachment.setDefectId(defectId);
-        
-        return attachmentRepository.save(attachment);
+        Attachment saved;
+        try {
+            saved = attachmentRepository.save(attachment);
+        } catch (RuntimeException e) {
+            // do not leave a reference nobody owns
+            attachmentStore.release(hash);
+            throw e;
+        }
+        // previews are made in the background; the upload does not wait for them
+        imageDerivativeService.submit(hash, contentType);
+        return saved;
     }
     
     public List<Attachment> getAttachmentsByDefectId(Long defectId) {
@@ -64,10 +90,15 @@ public class FileService {
     public void deleteAttachment(Long attachmentId) throws IOException {
         Attachment attachment = attachmentRepository.findById(attachmentId).orElse(null);
         if (attachment != null) {
-            // Delete file from filesystem
-            Files.deleteIfExists(Paths.get(attachment.getFilePath()));
             // Delete record from database
             attachmentRepository.deleteById(attachmentId);
+            if (attachment.getContentHash() != null) {
+                // the blob goes away with its last reference
+                attachmentStore.release(attachment.getContentHash());
+            } else {
+                // stored before the content-addressed store: the file belongs to this attachment only
+                Files.deleteIfExists(Paths.get(attachment.getFilePath()));
+            }
         }
     }
     
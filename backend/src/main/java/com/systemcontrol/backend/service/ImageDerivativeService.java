@@ -0,0 +1,288 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.model.AttachmentBlob;
+import com.systemcontrol.backend.model.PreviewStatus;
+import com.systemcontrol.backend.repository.AttachmentBlobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Превью для изображений-вложений: уменьшенные копии по {@link ImageVariant} средствами JDK (ImageIO + Java2D).
+ * <p>
+ * Загрузка не ждёт обработки: после коммита содержимое помечается PENDING и уходит в ограниченный пул.
+ * Если очередь пула заполнена или приложение перезапустилось, задачу подберёт периодический проход по PENDING.
+ * Производные считаются один раз на содержимое (SHA-256), а не на каждое вложение.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    // each smaller variant is scaled from the previous one
+    private static final ImageVariant[] LARGEST_FIRST = Arrays.stream(ImageVariant.values())
+        .sorted(Comparator.comparingInt(ImageVariant::maxEdge).reversed())
+        .toArray(ImageVariant[]::new);
+    private static final int LARGEST_EDGE = LARGEST_FIRST[0].maxEdge();
+
+    private final AttachmentBlobRepository blobRepository;
+    private final AttachmentStore attachmentStore;
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+    private final float quality;
+
+    // hashes queued or being processed, so the sweep does not queue them twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public ImageDerivativeService(AttachmentBlobRepository blobRepository,
+                                  AttachmentStore attachmentStore,
+                                  @Value("${app.derivatives.workers:2}") int workers,
+                                  @Value("${app.derivatives.queue-capacity:200}") int queueCapacity,
+                                  @Value("${app.derivatives.max-pixels:100000000}") long maxPixels,
+                                  @Value("${app.derivatives.jpeg-quality:0.82}") float quality) {
+        this.blobRepository = blobRepository;
+        this.attachmentStore = attachmentStore;
+        this.maxPixels = maxPixels;
+        this.quality = quality;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread t = new Thread(r, "image-derivatives-" + threadNo.incrementAndGet());
+                t.setDaemon(true);
+                // previews must not compete with request threads for the CPU
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Есть ли у JDK декодер для такого типа.
+     */
+    public static boolean isSupported(String contentType) {
+        return contentType != null && contentType.startsWith("image/")
+            && ImageIO.getImageReadersByMIMEType(contentType).hasNext();
+    }
+
+    /**
+     * Ставит содержимое в очередь на обработку после коммита текущей транзакции. Не блокирует.
+     */
+    public void submit(String hash, String contentType) {
+        if (hash == null || !isSupported(contentType)) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the worker must see the committed blob row
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    claim(hash);
+                }
+            });
+        } else {
+            claim(hash);
+        }
+    }
+
+    public Optional<AttachmentBlob> preview(String hash) {
+        return hash == null ? Optional.empty() : blobRepository.findById(hash);
+    }
+
+    private void claim(String hash) {
+        try {
+            if (blobRepository.markPreviewPending(hash) == 1) enqueue(hash);
+        } catch (RuntimeException e) {
+            // the upload itself has succeeded; a preview is best effort
+            log.warn("Could not queue previews for {}: {}", hash, e.getMessage());
+        }
+    }
+
+    private void enqueue(String hash) {
+        if (!inFlight.add(hash)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    process(hash);
+                } finally {
+                    inFlight.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // stays PENDING; the sweep retries once the queue has room
+            inFlight.remove(hash);
+            log.debug("Preview queue full, {} left for the sweep", hash);
+        }
+    }
+
+    /**
+     * Подбирает PENDING, не попавшие в очередь (переполнение, перезапуск).
+     */
+    @Scheduled(fixedDelayString = "${app.derivatives.sweep-interval:PT1M}",
+               initialDelayString = "${app.derivatives.sweep-interval:PT1M}")
+    public void sweep() {
+        int room = executor.getQueue().remainingCapacity();
+        if (room == 0) return;
+        for (String hash : blobRepository.findHashesByPreviewStatus(PreviewStatus.PENDING, PageRequest.of(0, room))) {
+            enqueue(hash);
+        }
+    }
+
+    void process(String hash) {
+        Path source = attachmentStore.pathFor(hash);
+        // file-backed streams read and write the file directly, without ImageIO's temp-file cache
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                finish(hash, PreviewStatus.FAILED, null, null);
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // the header is enough for the dimensions; nothing is decoded yet
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.info("Image {} is {}x{}, above the preview limit", hash, width, height);
+                    finish(hash, PreviewStatus.FAILED, width, height);
+                    return;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                // decode every n-th pixel while the long edge stays at least the largest derivative:
+                // a 24 MP photo (6000x4000) is decoded at 2000x1334, ~2.7 MP instead of ~96 MB of pixels
+                int step = subsamplingStep(Math.max(width, height));
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage image = reader.read(0, param);
+
+                for (ImageVariant variant : LARGEST_FIRST) {
+                    image = scale(image, variant.maxEdge());
+                    writeJpeg(image, attachmentStore.derivativePath(hash, variant));
+                }
+                finish(hash, PreviewStatus.READY, width, height);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Preview generation failed for {}: {}", hash, e.getMessage());
+            finish(hash, PreviewStatus.FAILED, null, null);
+        }
+    }
+
+    /**
+     * Наибольший шаг, при котором длинная сторона после прореживания ({@code ceil(edge / step)}) не меньше
+     * {@link #LARGEST_EDGE}; для изображений не больше этого размера — 1.
+     */
+    static int subsamplingStep(int edge) {
+        // ceil(edge / step) >= LARGEST_EDGE  <=>  step <= (edge - 1) / (LARGEST_EDGE - 1)
+        return Math.max(1, (edge - 1) / (LARGEST_EDGE - 1));
+    }
+
+    private void finish(String hash, PreviewStatus status, Integer width, Integer height) {
+        try {
+            if (blobRepository.updatePreview(hash, status, width, height) == 0) {
+                // the last reference went away meanwhile; release() could not see these files yet
+                for (ImageVariant variant : ImageVariant.values()) {
+                    Files.deleteIfExists(attachmentStore.derivativePath(hash, variant));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not record preview state for {}: {}", hash, e.getMessage());
+        }
+    }
+
+    /**
+     * Уменьшение до длинной стороны {@code maxEdge} с шагами не более чем вдвое: билинейная интерполяция
+     * на большом шаге теряет пиксели и даёт «лесенку».
+     */
+    static BufferedImage scale(BufferedImage source, int maxEdge) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        double ratio = Math.min(1.0, (double) maxEdge / Math.max(w, h));
+        int targetW = Math.max(1, (int) Math.round(w * ratio));
+        int targetH = Math.max(1, (int) Math.round(h * ratio));
+        BufferedImage current = source;
+        boolean first = true;
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (first) {
+                    // JPEG has no alpha: transparent PNG areas become white, not black
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+            first = false;
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "derivative-", ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // queued work stays PENDING in the database and is picked up after restart
+        executor.shutdownNow();
+    }
+}
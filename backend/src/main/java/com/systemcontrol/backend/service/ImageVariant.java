@@ -0,0 +1,37 @@
+package com.systemcontrol.backend.service;
+
+import java.util.Locale;
+
+/**
+ * Размеры производных изображений. Набор фиксирован: произвольный размер по запросу
+ * означал бы неограниченный кэш на диске.
+ */
+public enum ImageVariant {
+    // list rows and galleries
+    THUMB(256),
+    // full-screen viewing in the browser
+    WEB(1600);
+
+    private final int maxEdge;
+
+    ImageVariant(int maxEdge) {
+        this.maxEdge = maxEdge;
+    }
+
+    /** Длинная сторона в пикселях; меньшие изображения не увеличиваются. */
+    public int maxEdge() {
+        return maxEdge;
+    }
+
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /** null для неизвестного имени. */
+    public static ImageVariant fromKey(String key) {
+        for (ImageVariant v : values()) {
+            if (v.key().equals(key)) return v;
+        }
+        return null;
+    }
+}
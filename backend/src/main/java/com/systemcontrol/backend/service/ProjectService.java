@@ -3,21 +3,50 @@ package com.systemcontrol.backend.service;
 import com.systemcontrol.backend.model.Project;
 import com.systemcontrol.backend.repository.ProjectRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Service
 public class ProjectService {
     private final ProjectRepository projectRepository;
+    private final DefectStatsService defectStats;
+    private final ResourceVersions resourceVersions;
 
-    public ProjectService(ProjectRepository projectRepository) {
+    public ProjectService(ProjectRepository projectRepository, DefectStatsService defectStats, ResourceVersions resourceVersions) {
         this.projectRepository = projectRepository;
+        this.defectStats = defectStats;
+        this.resourceVersions = resourceVersions;
     }
 
+    @Transactional(readOnly = true)
     public List<Project> list() { return projectRepository.findAll(); }
+    @Transactional(readOnly = true)
     public List<Project> listAll() { return projectRepository.findAll(); }
-    public Project create(Project p) { return projectRepository.save(p); }
+    @Transactional
+    public Project create(Project p) {
+        Project saved = projectRepository.save(p);
+        defectStats.initialize(saved.getId());
+        resourceVersions.bump(ResourceVersions.PROJECTS);
+        return saved;
+    }
+    @Transactional(readOnly = true)
     public Project get(Long id) { return projectRepository.findById(id).orElse(null); }
-    public Project update(Long id, Project p) { p.setId(id); return projectRepository.save(p); }
-    public void delete(Long id) { projectRepository.deleteById(id); }
+    @Transactional
+    public Project update(Long id, Project p) {
+        p.setId(id);
+        Project saved = projectRepository.save(p);
+        resourceVersions.bump(ResourceVersions.PROJECTS);
+        return saved;
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        projectRepository.deleteById(id);
+        resourceVersions.bump(ResourceVersions.PROJECTS);
+    }
+
+    /** Версия списка проектов для ETag. */
+    @Transactional(readOnly = true)
+    public long version() { return resourceVersions.current(ResourceVersions.PROJECTS); }
 }
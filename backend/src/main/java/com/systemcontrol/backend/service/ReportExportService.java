@@ -0,0 +1,345 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.Project;
+import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.ProjectRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Пишет XLSX- и CSV-отчёты напрямую в выходной поток.
+ * Строки читаются курсором; для XLSX в памяти держится только окно из {@link #ROW_WINDOW} строк,
+ * CSV пишется построчно без промежуточного буфера на весь файл.
+ * XLSX сначала заполняется целиком в отдельной транзакции чтения (строки уходят во временные файлы SXSSF),
+ * и соединение возвращается в пул до того, как книга пишется клиенту.
+ * <p>
+ * Метрики: {@code reports.export} (время), {@code reports.export.rows} (строки, по скорости роста — строк в секунду)
+ * и {@code reports.export.bytes} (размер XLSX); теги — отчёт и формат.
+ */
+@Service
+public class ReportExportService {
+
+    static final int ROW_WINDOW = 100;
+
+    private static final String[] DEFECT_HEADERS = {"ID", "Title", "Description", "Priority", "Status", "Assignee ID", "Project ID", "Due Date", "Created At", "Updated At"};
+    // SXSSF cannot autosize flushed rows, so column widths are fixed (in characters)
+    private static final int[] DEFECT_WIDTHS = {10, 40, 60, 12, 14, 12, 12, 24, 24, 24};
+    private static final String[] PROJECT_HEADERS = {"ID", "Name", "Description", "Start Date", "End Date"};
+    private static final int[] PROJECT_WIDTHS = {10, 40, 60, 14, 14};
+
+    private final DefectRepository defectRepository;
+    private final ProjectRepository projectRepository;
+    private final EntityManager entityManager;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate readTransaction;
+
+    public ReportExportService(DefectRepository defectRepository, ProjectRepository projectRepository, EntityManager entityManager,
+                               MeterRegistry meterRegistry, PlatformTransactionManager transactionManager) {
+        this.defectRepository = defectRepository;
+        this.projectRepository = projectRepository;
+        this.entityManager = entityManager;
+        this.meterRegistry = meterRegistry;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Отчёт по дефектам (всем или одного проекта). Возвращает число выгруженных строк.
+     */
+    public long writeDefectsWorkbook(Long projectId, OutputStream out) throws IOException {
+        return measureWorkbook("defects", out, counted -> {
+            SXSSFWorkbook workbook = newWorkbook();
+            try {
+                CellStyle headerStyle = createHeaderStyle(workbook);
+                long rows = read(() -> writeDefectsSheet(workbook, "Defects Report", headerStyle, projectId));
+                workbook.write(counted);
+                return rows;
+            } finally {
+                workbook.dispose();
+                workbook.close();
+            }
+        });
+    }
+
+    /**
+     * Полный отчёт: лист проектов и лист дефектов. Возвращает число выгруженных дефектов.
+     */
+    public long writeFullWorkbook(OutputStream out) throws IOException {
+        return measureWorkbook("full", out, this::writeFullWorkbookTo);
+    }
+
+    private long writeFullWorkbookTo(OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = newWorkbook();
+        try {
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            long rows = read(() -> {
+                Sheet projectsSheet = workbook.createSheet("Projects");
+                writeHeader(projectsSheet, PROJECT_HEADERS, PROJECT_WIDTHS, headerStyle);
+                List<Project> projects = projectRepository.findAll();
+                for (int i = 0; i < projects.size(); i++) {
+                    Project prj = projects.get(i);
+                    Row row = projectsSheet.createRow(i + 1);
+                    row.createCell(0).setCellValue(prj.getId() != null ? prj.getId().toString() : "");
+                    row.createCell(1).setCellValue(prj.getName() != null ? prj.getName() : "");
+                    row.createCell(2).setCellValue(prj.getDescription() != null ? prj.getDescription() : "");
+                    row.createCell(3).setCellValue(prj.getStartDate() != null ? prj.getStartDate().toString() : "");
+                    row.createCell(4).setCellValue(prj.getEndDate() != null ? prj.getEndDate().toString() : "");
+                }
+                return writeDefectsSheet(workbook, "Defects", headerStyle, null);
+            });
+            workbook.write(out);
+            return rows;
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * CSV по дефектам (всем или одного проекта). Возвращает число выгруженных строк.
+     */
+    @Transactional(readOnly = true)
+    public long writeDefectsCsv(Long projectId, Writer out) throws IOException {
+        return measure("defects", "csv", () -> writeDefectsCsvTo(projectId, out));
+    }
+
+    private long writeDefectsCsvTo(Long projectId, Writer out) throws IOException {
+        out.write("id,title,description,priority,status,assigneeId,projectId,dueDate,createdAt,updatedAt\n");
+        long rows = 0;
+        try (Stream<Defect> defects = projectId != null
+                ? defectRepository.streamByProjectId(projectId)
+                : defectRepository.streamAll()) {
+            var it = defects.iterator();
+            while (it.hasNext()) {
+                Defect d = it.next();
+                writeValue(out, d.getId());
+                out.write(',');
+                writeCsv(out, d.getTitle());
+                out.write(',');
+                writeCsv(out, d.getDescription());
+                out.write(',');
+                writeValue(out, d.getPriority());
+                out.write(',');
+                writeValue(out, d.getStatus());
+                out.write(',');
+                writeValue(out, d.getAssigneeId());
+                out.write(',');
+                writeValue(out, d.getProjectId());
+                out.write(',');
+                writeValue(out, d.getDueDate());
+                out.write(',');
+                writeValue(out, d.getCreatedAt());
+                out.write(',');
+                writeValue(out, d.getUpdatedAt());
+                out.write('\n');
+                entityManager.detach(d);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * CSV по проектам. Возвращает число выгруженных строк.
+     */
+    @Transactional(readOnly = true)
+    public long writeProjectsCsv(Writer out) throws IOException {
+        return measure("projects", "csv", () -> writeProjectsCsvTo(out));
+    }
+
+    private long writeProjectsCsvTo(Writer out) throws IOException {
+        out.write("id,name,description,startDate,endDate\n");
+        long rows = 0;
+        try (Stream<Project> projects = projectRepository.streamAll()) {
+            var it = projects.iterator();
+            while (it.hasNext()) {
+                Project p = it.next();
+                writeValue(out, p.getId());
+                out.write(',');
+                writeCsv(out, p.getName());
+                out.write(',');
+                writeCsv(out, p.getDescription());
+                out.write(',');
+                writeValue(out, p.getStartDate());
+                out.write(',');
+                writeValue(out, p.getEndDate());
+                out.write('\n');
+                entityManager.detach(p);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    // the rows are in the SXSSF temp files once this returns; the connection is released before the client is written to
+    private long read(LongSupplier body) {
+        return readTransaction.execute(status -> body.getAsLong());
+    }
+
+    private long measureWorkbook(String report, OutputStream out, WorkbookBody body) throws IOException {
+        CountingOutputStream counted = new CountingOutputStream(out);
+        long rows = measure(report, "xlsx", () -> body.write(counted));
+        DistributionSummary.builder("reports.export.bytes")
+            .baseUnit("bytes")
+            .tags("report", report, "format", "xlsx")
+            .register(meterRegistry)
+            .record(counted.count);
+        return rows;
+    }
+
+    private long measure(String report, String format, ExportBody body) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            long rows = body.write();
+            meterRegistry.counter("reports.export.rows", "report", report, "format", format).increment(rows);
+            outcome = "success";
+            return rows;
+        } finally {
+            sample.stop(Timer.builder("reports.export")
+                .tags("report", report, "format", format, "outcome", outcome)
+                .register(meterRegistry));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ExportBody {
+        long write() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface WorkbookBody {
+        long write(OutputStream out) throws IOException;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // FilterOutputStream would otherwise write byte by byte
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    // ids, enums and dates never contain CSV special characters
+    private static void writeValue(Writer out, Object v) throws IOException {
+        if (v != null) out.write(v.toString());
+    }
+
+    /**
+     * Экранирует значение по RFC 4180 за один проход: строка без спецсимволов пишется как есть,
+     * иначе в кавычках с удвоением внутренних кавычек.
+     */
+    static void writeCsv(Writer out, String v) throws IOException {
+        if (v == null) return;
+        int len = v.length();
+        int i = 0;
+        while (i < len) {
+            char c = v.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') break;
+            i++;
+        }
+        if (i == len) {
+            out.write(v);
+            return;
+        }
+        out.write('"');
+        int from = 0;
+        for (int j = i; j < len; j++) {
+            if (v.charAt(j) == '"') {
+                // пишем кусок вместе с кавычкой и повторяем её
+                out.write(v, from, j + 1 - from);
+                out.write('"');
+                from = j + 1;
+            }
+        }
+        out.write(v, from, len - from);
+        out.write('"');
+    }
+
+    private long writeDefectsSheet(SXSSFWorkbook workbook, String name, CellStyle headerStyle, Long projectId) {
+        Sheet sheet = workbook.createSheet(name);
+        writeHeader(sheet, DEFECT_HEADERS, DEFECT_WIDTHS, headerStyle);
+        int rowNum = 1;
+        try (Stream<Defect> defects = projectId != null
+                ? defectRepository.streamByProjectId(projectId)
+                : defectRepository.streamAll()) {
+            var it = defects.iterator();
+            while (it.hasNext()) {
+                Defect defect = it.next();
+                writeDefectRow(sheet.createRow(rowNum++), defect);
+                // keep the persistence context from growing with the cursor
+                entityManager.detach(defect);
+            }
+        }
+        return rowNum - 1L;
+    }
+
+    private static void writeDefectRow(Row row, Defect defect) {
+        if (defect.getId() != null) row.createCell(0).setCellValue(defect.getId());
+        row.createCell(1).setCellValue(defect.getTitle() != null ? defect.getTitle() : "");
+        row.createCell(2).setCellValue(defect.getDescription() != null ? defect.getDescription() : "");
+        row.createCell(3).setCellValue(defect.getPriority() != null ? defect.getPriority().toString() : "");
+        row.createCell(4).setCellValue(defect.getStatus() != null ? defect.getStatus().toString() : "");
+        row.createCell(5).setCellValue(defect.getAssigneeId() != null ? defect.getAssigneeId().toString() : "");
+        row.createCell(6).setCellValue(defect.getProjectId() != null ? defect.getProjectId().toString() : "");
+        row.createCell(7).setCellValue(defect.getDueDate() != null ? defect.getDueDate().toString() : "");
+        row.createCell(8).setCellValue(defect.getCreatedAt() != null ? defect.getCreatedAt().toString() : "");
+        row.createCell(9).setCellValue(defect.getUpdatedAt() != null ? defect.getUpdatedAt().toString() : "");
+    }
+
+    private static void writeHeader(Sheet sheet, String[] headers, int[] widths, CellStyle style) {
+        Row headerRow = sheet.createRow(0);
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(style);
+            sheet.setColumnWidth(i, widths[i] * 256);
+        }
+    }
+
+    private static SXSSFWorkbook newWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
+    private static CellStyle createHeaderStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        Font font = workbook.createFont();
+        font.setBold(true);
+        style.setFont(font);
+        style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        return style;
+    }
+}
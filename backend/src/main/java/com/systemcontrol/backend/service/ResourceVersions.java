@@ -0,0 +1,37 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.repository.ResourceVersionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Версии изменений списков проектов и пользователей для ETag.
+ * <p>
+ * {@link #bump} вызывается после записи: в транзакции записи, а без неё — следом за ней. Так версия никогда не опережает
+ * данные: в худшем случае клиент один лишний раз получит 200 вместо 304.
+ */
+@Service
+public class ResourceVersions {
+
+    public static final String PROJECTS = "projects";
+    public static final String USERS = "users";
+
+    private final ResourceVersionRepository repository;
+
+    public ResourceVersions(ResourceVersionRepository repository) {
+        this.repository = repository;
+    }
+
+    @Transactional
+    public void bump(String resource) {
+        if (repository.increment(resource) == 0 && repository.insertIfAbsent(resource) == 0) {
+            // created concurrently between the two statements
+            repository.increment(resource);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long current(String resource) {
+        return repository.findVersion(resource).orElse(0L);
+    }
+}
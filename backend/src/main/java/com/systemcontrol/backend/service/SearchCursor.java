@@ -0,0 +1,35 @@
+package com.systemcontrol.backend.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор результатов поиска: релевантность и id последней строки страницы. Релевантность хранится
+ * битами float, чтобы сравнение в следующем запросе было точным.
+ */
+record SearchCursor(float rank, long id) {
+
+    String encode() {
+        String raw = Integer.toHexString(Float.floatToIntBits(rank)) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 2) throw new IllegalArgumentException(raw);
+            return new SearchCursor(Float.intBitsToFloat(Integer.parseUnsignedInt(parts[0], 16)), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor");
+        }
+    }
+
+    /** Строка идёт после курсора в порядке (rank desc, id desc). */
+    boolean isBefore(float otherRank, long otherId) {
+        return otherRank < rank || (otherRank == rank && otherId < id);
+    }
+}
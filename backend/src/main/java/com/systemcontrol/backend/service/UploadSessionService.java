@@ -0,0 +1,238 @@
+package com.systemcontrol.backend.service;
+
+import com.systemcontrol.backend.dto.UploadStatus;
+import com.systemcontrol.backend.model.Attachment;
+import com.systemcontrol.backend.model.UploadSession;
+import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Возобновляемая загрузка больших вложений.
+ * <p>
+ * Клиент создаёт сессию с итоговым размером и отправляет куски с явным смещением; каждый кусок пишется
+ * из тела запроса прямо в файл-часть, без multipart и промежуточных копий. Принятое смещение — это длина
+ * файла-части, поэтому после обрыва клиент узнаёт его и продолжает с того же места. Завершение публикует
+ * файл в {@link AttachmentStore} переименованием и создаёт вложение. Брошенные сессии удаляются по сроку.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionService.class);
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final UploadSessionRepository sessionRepository;
+    private final DefectRepository defectRepository;
+    private final AttachmentStore attachmentStore;
+    private final FileService fileService;
+    private final Duration ttl;
+    private final long maxSize;
+
+    // sessions with a chunk or finalize in flight; one writer per part file
+    private final Set<String> busy = ConcurrentHashMap.newKeySet();
+
+    public UploadSessionService(UploadSessionRepository sessionRepository,
+                                DefectRepository defectRepository,
+                                AttachmentStore attachmentStore,
+                                FileService fileService,
+                                @Value("${app.upload.resumable.ttl:24h}") Duration ttl,
+                                @Value("${app.upload.resumable.max-size:2147483648}") long maxSize) {
+        this.sessionRepository = sessionRepository;
+        this.defectRepository = defectRepository;
+        this.attachmentStore = attachmentStore;
+        this.fileService = fileService;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    public UploadStatus create(Long defectId, String fileName, String contentType, long size, String owner) throws IOException {
+        if (defectId == null || fileName == null || fileName.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "defectId and fileName are required");
+        }
+        if (size < 0 || size > maxSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "size must be between 0 and " + maxSize);
+        }
+        if (!defectRepository.existsById(defectId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "defect not found");
+        }
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setDefectId(defectId);
+        session.setOriginalFileName(fileName);
+        session.setContentType(contentType != null ? contentType : "application/octet-stream");
+        session.setTotalSize(size);
+        session.setOwner(owner);
+        session.setExpiresAt(Instant.now().plus(ttl));
+        sessionRepository.save(session);
+        Files.createFile(attachmentStore.partFile(session.getId()));
+        return status(session, 0);
+    }
+
+    public UploadStatus get(String id, String owner) throws IOException {
+        UploadSession session = find(id, owner);
+        return status(session, received(session));
+    }
+
+    /**
+     * Дописывает кусок, начинающийся со смещения {@code offset}. Смещение должно совпадать с уже принятым
+     * числом байт (иначе 409 — клиент переспрашивает смещение). При обрыве соединения уже записанные
+     * байты остаются принятыми.
+     */
+    public UploadStatus append(String id, String owner, long offset, InputStream body) throws IOException {
+        UploadSession session = find(id, owner);
+        if (!busy.add(id)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "another request is writing to this upload");
+        }
+        try {
+            Path part = attachmentStore.partFile(id);
+            try (FileChannel channel = openPart(session, part)) {
+                long received = channel.size();
+                if (offset != received) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT, "expected offset " + received);
+                }
+                long remaining = session.getTotalSize() - received;
+                ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+                byte[] array = buf.array();
+                long position = received;
+                int n;
+                while ((n = body.read(array, 0, (int) Math.min(BUFFER, remaining + 1))) != -1) {
+                    if (n > remaining) {
+                        // the declared size is the contract; drop the whole chunk rather than keep a prefix of it
+                        channel.truncate(received);
+                        throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "chunk exceeds the declared upload size");
+                    }
+                    buf.clear().limit(n);
+                    while (buf.hasRemaining()) {
+                        position += channel.write(buf, position);
+                    }
+                    remaining -= n;
+                }
+            }
+            session.setExpiresAt(Instant.now().plus(ttl));
+            sessionRepository.save(session);
+            return status(session, Files.size(part));
+        } finally {
+            busy.remove(id);
+        }
+    }
+
+    /**
+     * Завершает загрузку: все байты должны быть приняты. Сессия удаляется, файл-часть становится содержимым вложения.
+     */
+    public Attachment complete(String id, String owner) throws IOException {
+        UploadSession session = find(id, owner);
+        if (!busy.add(id)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "another request is writing to this upload");
+        }
+        try {
+            Path part = attachmentStore.partFile(id);
+            if (Files.notExists(part)) throw partGone(session);
+            long received = Files.size(part);
+            if (received != session.getTotalSize()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "upload incomplete: " + received + " of " + session.getTotalSize() + " bytes received");
+            }
+            AttachmentStore.StagedBlob staged = attachmentStore.stageFile(part);
+            Attachment attachment;
+            try {
+                attachment = fileService.saveStaged(staged, session.getOriginalFileName(), session.getContentType(), session.getDefectId());
+            } catch (IOException | RuntimeException e) {
+                // publishing consumed the part file either way; a session without it could never complete
+                remove(session);
+                throw e;
+            }
+            sessionRepository.delete(session);
+            return attachment;
+        } finally {
+            busy.remove(id);
+        }
+    }
+
+    public void abort(String id, String owner) throws IOException {
+        UploadSession session = find(id, owner);
+        if (!busy.add(id)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "another request is writing to this upload");
+        }
+        try {
+            remove(session);
+        } finally {
+            busy.remove(id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.upload.resumable.cleanup-interval:PT15M}",
+               initialDelayString = "${app.upload.resumable.cleanup-interval:PT15M}")
+    public void removeExpired() {
+        for (UploadSession session : sessionRepository.findByExpiresAtBefore(Instant.now())) {
+            // a chunk still being written extends the session when it finishes
+            if (!busy.add(session.getId())) continue;
+            try {
+                remove(session);
+                log.info("Expired upload {} for defect {} removed", session.getId(), session.getDefectId());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to remove expired upload {}: {}", session.getId(), e.getMessage());
+            } finally {
+                busy.remove(session.getId());
+            }
+        }
+    }
+
+    private void remove(UploadSession session) throws IOException {
+        sessionRepository.delete(session);
+        Files.deleteIfExists(attachmentStore.partFile(session.getId()));
+    }
+
+    private FileChannel openPart(UploadSession session, Path part) throws IOException {
+        try {
+            return FileChannel.open(part, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            throw partGone(session);
+        }
+    }
+
+    /**
+     * Файл-часть пропал (неудачное завершение, ручная очистка): сессия удаляется, клиент начинает загрузку заново.
+     */
+    private ResponseStatusException partGone(UploadSession session) {
+        log.warn("Part file of upload {} is missing; removing the session", session.getId());
+        sessionRepository.delete(session);
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "upload data is gone; start a new upload");
+    }
+
+    private UploadSession find(String id, String owner) {
+        // someone else's upload is reported as missing, not forbidden
+        return sessionRepository.findById(id)
+            .filter(s -> s.getOwner().equals(owner))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "upload not found"));
+    }
+
+    private long received(UploadSession session) throws IOException {
+        Path part = attachmentStore.partFile(session.getId());
+        return Files.exists(part) ? Files.size(part) : 0;
+    }
+
+    private static UploadStatus status(UploadSession session, long offset) {
+        return new UploadStatus(session.getId(), offset, session.getTotalSize(), session.getExpiresAt());
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
 import java.util.List;
@@ -18,9 +19,11 @@ public class UserService implements UserDetailsService {
 
     private final UserRepository userRepository;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final ResourceVersions resourceVersions;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, ResourceVersions resourceVersions) {
         this.userRepository = userRepository;
+        this.resourceVersions = resourceVersions;
         this.passwordEncoder = new BCryptPasswordEncoder();
     }
 
@@ -38,14 +41,21 @@ public class UserService implements UserDetailsService {
         return List.of(new SimpleGrantedAuthority(user.getRole().name()));
     }
 
+    @Transactional
     public User save(User user) {
         // Hash password before saving
         if (user.getPassword() != null && !user.getPassword().startsWith("$2a$")) {
             user.setPassword(passwordEncoder.encode(user.getPassword()));
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        resourceVersions.bump(ResourceVersions.USERS);
+        return saved;
     }
     
+    public java.util.Optional<User> findByUsername(String username) {
+        return userRepository.findByUsername(username);
+    }
+
     public boolean existsByUsername(String username) {
         return userRepository.existsByUsername(username);
     }
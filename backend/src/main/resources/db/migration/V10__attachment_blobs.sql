@@ -0,0 +1,11 @@
+-- Content-addressed attachment store: one file per SHA-256 under uploads/blobs/ab/cd/<hash>,
+-- shared by every attachment with the same content
+CREATE TABLE attachment_blobs (
+    hash VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- NULL for files uploaded before the store existed; those keep their own file under uploads/
+ALTER TABLE attachments ADD COLUMN content_hash VARCHAR(64);
@@ -0,0 +1,13 @@
+-- Resumable (chunked) uploads in progress; the bytes live in uploads/blobs/tmp/<id>.part
+CREATE TABLE upload_sessions (
+    id VARCHAR(36) PRIMARY KEY,
+    defect_id BIGINT NOT NULL,
+    original_file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100),
+    total_size BIGINT NOT NULL,
+    owner VARCHAR(100) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_upload_sessions_expires_at ON upload_sessions(expires_at);
@@ -0,0 +1,8 @@
+-- Preview pipeline state per content: NULL (not an image), PENDING, READY or FAILED.
+-- Derivatives live under uploads/derivatives/ab/cd/<hash>-<variant>.jpg and go away with the blob
+ALTER TABLE attachment_blobs ADD COLUMN preview_status VARCHAR(16);
+ALTER TABLE attachment_blobs ADD COLUMN image_width INTEGER;
+ALTER TABLE attachment_blobs ADD COLUMN image_height INTEGER;
+
+-- the sweep only ever looks for work left behind by a full queue or a restart
+CREATE INDEX idx_attachment_blobs_preview_pending ON attachment_blobs(hash) WHERE preview_status = 'PENDING';
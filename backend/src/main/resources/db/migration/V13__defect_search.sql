@@ -0,0 +1,15 @@
+-- Full-text search over defects and their comments.
+-- The 'russian' configuration stems Cyrillic words with the Russian Snowball stemmer and Latin-script
+-- words (asciiword) with the English one, so a single configuration covers both languages.
+-- Generated columns are recomputed by the INSERT/UPDATE itself: the index never lags behind a write.
+ALTER TABLE defects ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('russian', coalesce(description, '')), 'B')
+) STORED;
+
+ALTER TABLE comments ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('russian', coalesce(content, '')), 'C')
+) STORED;
+
+CREATE INDEX idx_defects_search_vector ON defects USING GIN (search_vector);
+CREATE INDEX idx_comments_search_vector ON comments USING GIN (search_vector);
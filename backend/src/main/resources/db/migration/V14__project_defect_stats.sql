@@ -0,0 +1,34 @@
+-- Per-project defect counters, kept in step with defects by DefectStatsService in the same transaction.
+-- One row per project: the dashboard reads a single row instead of grouping all defects.
+-- Columns follow the enums: status_<DefectStatus>, priority_<Priority>
+CREATE TABLE project_defect_stats (
+    project_id BIGINT PRIMARY KEY REFERENCES projects(id) ON DELETE CASCADE,
+    total BIGINT NOT NULL DEFAULT 0,
+    status_new BIGINT NOT NULL DEFAULT 0,
+    status_in_progress BIGINT NOT NULL DEFAULT 0,
+    status_in_review BIGINT NOT NULL DEFAULT 0,
+    status_closed BIGINT NOT NULL DEFAULT 0,
+    status_cancelled BIGINT NOT NULL DEFAULT 0,
+    priority_low BIGINT NOT NULL DEFAULT 0,
+    priority_medium BIGINT NOT NULL DEFAULT 0,
+    priority_high BIGINT NOT NULL DEFAULT 0,
+    priority_critical BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+INSERT INTO project_defect_stats (project_id, total,
+    status_new, status_in_progress, status_in_review, status_closed, status_cancelled,
+    priority_low, priority_medium, priority_high, priority_critical)
+SELECT p.id, COUNT(d.id),
+    COUNT(*) FILTER (WHERE d.status = 'NEW'),
+    COUNT(*) FILTER (WHERE d.status = 'IN_PROGRESS'),
+    COUNT(*) FILTER (WHERE d.status = 'IN_REVIEW'),
+    COUNT(*) FILTER (WHERE d.status = 'CLOSED'),
+    COUNT(*) FILTER (WHERE d.status = 'CANCELLED'),
+    COUNT(*) FILTER (WHERE d.priority = 'LOW'),
+    COUNT(*) FILTER (WHERE d.priority = 'MEDIUM'),
+    COUNT(*) FILTER (WHERE d.priority = 'HIGH'),
+    COUNT(*) FILTER (WHERE d.priority = 'CRITICAL')
+FROM projects p
+LEFT JOIN defects d ON d.project_id = p.id
+GROUP BY p.id;
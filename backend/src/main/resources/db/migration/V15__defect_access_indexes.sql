@@ -0,0 +1,24 @@
+-- Indexes for the defect access paths (DefectRepository, DefectSpecifications, comments of a defect).
+-- Built CONCURRENTLY so writes to defects are not blocked; Flyway runs this script outside a transaction,
+-- so it must not contain statements that can run in one (Flyway rejects mixed scripts).
+-- The non-partial ones are mirrored in @Table(indexes) so the H2 test schema has them (QueryPlanTest).
+
+-- findByProjectId, streamByProjectId, project page sorted by id, per-project recount
+CREATE INDEX CONCURRENTLY idx_defects_project_id ON defects (project_id, id);
+-- project page sorted by updated_at (the default list)
+CREATE INDEX CONCURRENTLY idx_defects_project_updated ON defects (project_id, updated_at DESC, id DESC);
+-- findByAssigneeId, "my defects" page sorted by updated_at
+CREATE INDEX CONCURRENTLY idx_defects_assignee_updated ON defects (assignee_id, updated_at DESC, id DESC);
+-- unfiltered page sorted by updated_at, updatedSince sync
+CREATE INDEX CONCURRENTLY idx_defects_updated ON defects (updated_at DESC, id DESC);
+
+-- open defects by due date (overdue lists); closed and cancelled defects are the bulk of an old project
+-- and never match these filters. Used when the query's status list is a subset of the open statuses.
+CREATE INDEX CONCURRENTLY idx_defects_open_project_due ON defects (project_id, due_date)
+    WHERE status IN ('NEW', 'IN_PROGRESS', 'IN_REVIEW');
+CREATE INDEX CONCURRENTLY idx_defects_open_assignee_due ON defects (assignee_id, due_date)
+    WHERE status IN ('NEW', 'IN_PROGRESS', 'IN_REVIEW');
+
+-- findByDefectIdOrderByCreatedAtAsc reads the comments already in order; replaces the single-column index
+CREATE INDEX CONCURRENTLY idx_comments_defect_created ON comments (defect_id, created_at);
+DROP INDEX CONCURRENTLY idx_comments_defect_id;
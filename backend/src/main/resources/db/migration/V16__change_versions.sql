@@ -0,0 +1,10 @@
+-- Change versions behind the ETags of JSON resources (conditional GET answers 304 after one small lookup).
+-- Defects: per project, raised in the same UPDATE as the counters. Projects and users: one row per list.
+ALTER TABLE project_defect_stats ADD COLUMN change_version BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE resource_versions (
+    resource VARCHAR(64) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO resource_versions (resource) VALUES ('projects'), ('users');
@@ -0,0 +1,2 @@
+-- Optimistic locking for defect edits (JPA @Version); status transitions raise it in their compare-and-set UPDATE
+ALTER TABLE defects ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
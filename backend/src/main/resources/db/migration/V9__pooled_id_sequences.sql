@@ -0,0 +1,38 @@
+-- Switch primary keys from BIGSERIAL (IDENTITY-style) to sequences with pooled-lo allocation.
+-- Hibernate fetches one value per 50 rows and can batch inserts; the column defaults point to the
+-- same sequences, so plain SQL inserts stay possible (each nextval() owns a whole block of 50).
+
+CREATE SEQUENCE users_seq INCREMENT BY 50;
+CREATE SEQUENCE projects_seq INCREMENT BY 50;
+CREATE SEQUENCE defects_seq INCREMENT BY 50;
+CREATE SEQUENCE attachments_seq INCREMENT BY 50;
+CREATE SEQUENCE comments_seq INCREMENT BY 50;
+CREATE SEQUENCE defect_history_seq INCREMENT BY 50;
+
+SELECT setval('users_seq', COALESCE((SELECT MAX(id) FROM users), 0) + 1, false);
+SELECT setval('projects_seq', COALESCE((SELECT MAX(id) FROM projects), 0) + 1, false);
+SELECT setval('defects_seq', COALESCE((SELECT MAX(id) FROM defects), 0) + 1, false);
+SELECT setval('attachments_seq', COALESCE((SELECT MAX(id) FROM attachments), 0) + 1, false);
+SELECT setval('comments_seq', COALESCE((SELECT MAX(id) FROM comments), 0) + 1, false);
+SELECT setval('defect_history_seq', COALESCE((SELECT MAX(id) FROM defect_history), 0) + 1, false);
+
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_seq');
+ALTER TABLE projects ALTER COLUMN id SET DEFAULT nextval('projects_seq');
+ALTER TABLE defects ALTER COLUMN id SET DEFAULT nextval('defects_seq');
+ALTER TABLE attachments ALTER COLUMN id SET DEFAULT nextval('attachments_seq');
+ALTER TABLE comments ALTER COLUMN id SET DEFAULT nextval('comments_seq');
+ALTER TABLE defect_history ALTER COLUMN id SET DEFAULT nextval('defect_history_seq');
+
+ALTER SEQUENCE users_seq OWNED BY users.id;
+ALTER SEQUENCE projects_seq OWNED BY projects.id;
+ALTER SEQUENCE defects_seq OWNED BY defects.id;
+ALTER SEQUENCE attachments_seq OWNED BY attachments.id;
+ALTER SEQUENCE comments_seq OWNED BY comments.id;
+ALTER SEQUENCE defect_history_seq OWNED BY defect_history.id;
+
+DROP SEQUENCE IF EXISTS users_id_seq;
+DROP SEQUENCE IF EXISTS projects_id_seq;
+DROP SEQUENCE IF EXISTS defects_id_seq;
+DROP SEQUENCE IF EXISTS attachments_id_seq;
+DROP SEQUENCE IF EXISTS comments_id_seq;
+DROP SEQUENCE IF EXISTS defect_history_id_seq;
@@ -0,0 +1,68 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Общие помощники интеграционных тестов, работающих через HTTP API на случайном порту:
+ * вход администратором, создание проектов и дефектов.
+ */
+abstract class AbstractApiIntegrationTest {
+
+    @LocalServerPort
+    protected int port;
+
+    @Autowired
+    protected TestRestTemplate restTemplate;
+
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    protected String baseUrl(String path) {
+        return "http://localhost:" + port + path;
+    }
+
+    protected HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+
+    /** JSON-заголовки с токеном администратора из начальных данных. */
+    protected HttpHeaders adminHeaders() throws Exception {
+        String adminLoginJson = "{\"username\":\"admin\",\"password\":\"admin\"}";
+        ResponseEntity<String> loginResp = restTemplate.postForEntity(baseUrl("/api/auth/login"), new HttpEntity<>(adminLoginJson, jsonHeaders()), String.class);
+        assertTrue(loginResp.getStatusCode().is2xxSuccessful());
+        HttpHeaders headers = jsonHeaders();
+        headers.setBearerAuth(mapper.readTree(loginResp.getBody()).get("token").asText());
+        return headers;
+    }
+
+    protected long createProject(HttpHeaders auth) throws Exception {
+        return createProject(auth, "Test Project");
+    }
+
+    protected long createProject(HttpHeaders auth, String name) throws Exception {
+        String projectJson = mapper.writeValueAsString(Map.of("name", name, "description", "integration test"));
+        ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/projects"), new HttpEntity<>(projectJson, auth), String.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        return mapper.readTree(resp.getBody()).get("id").asLong();
+    }
+
+    protected long createDefect(HttpHeaders auth, long projectId) throws Exception {
+        return createDefect(auth, projectId, "Test defect");
+    }
+
+    protected long createDefect(HttpHeaders auth, long projectId, String title) throws Exception {
+        String defectJson = mapper.writeValueAsString(Map.of("title", title, "projectId", projectId));
+        ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/defects"), new HttpEntity<>(defectJson, auth), String.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        return mapper.readTree(resp.getBody()).get("id").asLong();
+    }
+}
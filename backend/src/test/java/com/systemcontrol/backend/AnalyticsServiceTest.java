@@ -0,0 +1,95 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.DefectRepository.StatusPriorityCount;
+import com.systemcontrol.backend.service.AnalyticsService;
+import com.systemcontrol.backend.service.DefectStatsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsServiceTest {
+
+    @Mock
+    private DefectRepository defectRepository;
+
+    @Mock
+    private DefectStatsService defectStats;
+
+    @InjectMocks
+    private AnalyticsService analyticsService;
+
+    @Test
+    void getAnalytics_ForProject_ShouldReadCounterRow() {
+        // Given
+        when(defectStats.forProject(7L)).thenReturn(Optional.of(new DefectStatsService.Counts(9,
+            Map.of(DefectStatus.NEW, 5L, DefectStatus.CLOSED, 4L),
+            Map.of(Priority.HIGH, 7L, Priority.LOW, 2L))));
+
+        // When
+        Map<String, Object> result = analyticsService.getAnalytics(7L);
+
+        // Then
+        assertEquals(9L, result.get("totalDefects"));
+        assertEquals(5L, result.get("newDefects"));
+        assertEquals(0L, result.get("inProgressDefects"));
+        assertEquals(Map.of(Priority.HIGH, 7L, Priority.LOW, 2L), result.get("priorityDistribution"));
+        verifyNoInteractions(defectRepository);
+    }
+
+    @Test
+    void getAnalytics_ForProjectWithoutCounters_ShouldFoldGroupedCounts() {
+        // Given
+        when(defectStats.forProject(7L)).thenReturn(Optional.empty());
+        when(defectRepository.countByStatusAndPriority(7L)).thenReturn(List.of(
+            row(DefectStatus.NEW, Priority.HIGH, 3),
+            row(DefectStatus.NEW, Priority.LOW, 2),
+            row(DefectStatus.CLOSED, Priority.HIGH, 4)
+        ));
+
+        // When
+        Map<String, Object> result = analyticsService.getAnalytics(7L);
+
+        // Then
+        assertEquals(9L, result.get("totalDefects"));
+        assertEquals(5L, result.get("newDefects"));
+        assertEquals(0L, result.get("inProgressDefects"));
+        assertEquals(4L, result.get("closedDefects"));
+        assertEquals(Map.of(DefectStatus.NEW, 5L, DefectStatus.CLOSED, 4L), result.get("statusDistribution"));
+        assertEquals(Map.of(Priority.HIGH, 7L, Priority.LOW, 2L), result.get("priorityDistribution"));
+        verify(defectRepository, never()).countByStatusAndPriority();
+    }
+
+    @Test
+    void getAnalytics_WithoutDefects_ShouldReturnZeros() {
+        // Given
+        when(defectStats.totals()).thenReturn(new DefectStatsService.Counts(0, Map.of(), Map.of()));
+
+        // When
+        Map<String, Object> result = analyticsService.getAnalytics(null);
+
+        // Then
+        assertEquals(0L, result.get("totalDefects"));
+        assertEquals(Map.of(), result.get("statusDistribution"));
+    }
+
+    private static StatusPriorityCount row(DefectStatus status, Priority priority, long total) {
+        return new StatusPriorityCount() {
+            public DefectStatus getStatus() { return status; }
+            public Priority getPriority() { return priority; }
+            public long getTotal() { return total; }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package com.systemcontrol.backend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class AttachmentDownloadIntegrationTest extends AbstractApiIntegrationTest {
+
+    // larger than the sendfile threshold, so the zero-copy path is exercised as well
+    private static final int FILE_SIZE = 100_000;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpHeaders auth;
+    private Long attachmentId;
+
+    @AfterEach
+    void deleteAttachment() {
+        if (attachmentId != null) {
+            restTemplate.exchange(baseUrl("/api/attachments/" + attachmentId), HttpMethod.DELETE, new HttpEntity<>(auth), String.class);
+        }
+    }
+
+    @Test
+    void download_ShouldSupportRangesAndValidators() throws Exception {
+        byte[] content = new byte[FILE_SIZE];
+        for (int i = 0; i < content.length; i++) content[i] = (byte) ('a' + i % 26);
+        upload(content);
+        String url = "/api/attachments/" + attachmentId + "/download";
+
+        // full download with validators
+        HttpResponse<byte[]> full = get(url);
+        assertEquals(200, full.statusCode());
+        assertArrayEquals(content, full.body());
+        assertEquals("bytes", full.headers().firstValue("Accept-Ranges").orElse(null));
+        String etag = full.headers().firstValue("ETag").orElseThrow();
+        assertTrue(full.headers().firstValue("Last-Modified").isPresent());
+        assertTrue(full.headers().firstValue("Cache-Control").orElse("").contains("private"));
+
+        // resume after an interruption
+        HttpResponse<byte[]> tail = get(url, "Range", "bytes=99990-", "If-Range", etag);
+        assertEquals(206, tail.statusCode());
+        assertEquals("bytes 99990-99999/" + FILE_SIZE, tail.headers().firstValue("Content-Range").orElse(null));
+        assertArrayEquals(Arrays.copyOfRange(content, 99_990, FILE_SIZE), tail.body());
+
+        // stale If-Range falls back to the whole file
+        HttpResponse<byte[]> stale = get(url, "Range", "bytes=0-9", "If-Range", "\"stale\"");
+        assertEquals(200, stale.statusCode());
+        assertEquals(FILE_SIZE, stale.body().length);
+
+        // several ranges come back as multipart/byteranges
+        HttpResponse<byte[]> multi = get(url, "Range", "bytes=0-4,26-30");
+        assertEquals(206, multi.statusCode());
+        assertTrue(multi.headers().firstValue("Content-Type").orElse("").startsWith("multipart/byteranges"));
+        String body = new String(multi.body(), StandardCharsets.US_ASCII);
+        assertTrue(body.contains("Content-Range: bytes 0-4/" + FILE_SIZE + "\r\n\r\nabcde"), body);
+        assertTrue(body.contains("Content-Range: bytes 26-30/" + FILE_SIZE + "\r\n\r\nabcde"), body);
+
+        // conditional GET
+        assertEquals(304, get(url, "If-None-Match", etag).statusCode());
+
+        // unsatisfiable range
+        HttpResponse<byte[]> outside = get(url, "Range", "bytes=200000-");
+        assertEquals(416, outside.statusCode());
+        assertEquals("bytes */" + FILE_SIZE, outside.headers().firstValue("Content-Range").orElse(null));
+    }
+
+    private HttpResponse<byte[]> get(String path, String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl(path)))
+            .header("Authorization", auth.getFirst("Authorization"));
+        for (int i = 0; i < headers.length; i += 2) request.header(headers[i], headers[i + 1]);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private void upload(byte[] content) throws Exception {
+        auth = adminHeaders();
+        String projectJson = "{\"name\":\"Download Project\",\"description\":\"download test\"}";
+        ResponseEntity<String> projResp = restTemplate.postForEntity(baseUrl("/api/projects"), new HttpEntity<>(projectJson, auth), String.class);
+        long projectId = mapper.readTree(projResp.getBody()).get("id").asLong();
+        String defectJson = String.format("{\"title\":\"Photo\",\"projectId\":%d}", projectId);
+        ResponseEntity<String> defectResp = restTemplate.postForEntity(baseUrl("/api/defects"), new HttpEntity<>(defectJson, auth), String.class);
+        long defectId = mapper.readTree(defectResp.getBody()).get("id").asLong();
+
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "drawing.bin";
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", auth.getFirst("Authorization"));
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        ResponseEntity<String> uploadResp = restTemplate.postForEntity(baseUrl("/api/attachments/upload/" + defectId), new HttpEntity<>(form, headers), String.class);
+        assertEquals(HttpStatus.OK, uploadResp.getStatusCode());
+        attachmentId = mapper.readTree(uploadResp.getBody()).get("id").asLong();
+    }
+}
@@ -0,0 +1,96 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class AttachmentStoreIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Test
+    void sameContent_ShouldBeStoredOnceAndRemovedWithLastReference() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth);
+        long firstDefect = createDefect(auth, projectId, "Site photo 1");
+        long secondDefect = createDefect(auth, projectId, "Site photo 2");
+        byte[] content = ("site photo " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        // the server does not have it yet
+        assertEquals(HttpStatus.NOT_FOUND, get("/api/attachments/blobs/" + hash, auth).getStatusCode());
+
+        JsonNode first = upload(auth, firstDefect, content);
+        JsonNode second = upload(auth, secondDefect, content);
+        assertEquals(hash, first.get("contentHash").asText());
+        assertEquals(first.get("filePath").asText(), second.get("filePath").asText());
+        Path blob = Path.of(first.get("filePath").asText());
+        assertTrue(Files.exists(blob));
+        assertEquals(hash, blob.getFileName().toString());
+        assertEquals(hash.substring(2, 4), blob.getParent().getFileName().toString());
+
+        // the client can skip sending bytes the server already has
+        ResponseEntity<String> have = get("/api/attachments/blobs/" + hash, auth);
+        assertEquals(HttpStatus.OK, have.getStatusCode());
+        assertEquals(content.length, mapper.readTree(have.getBody()).get("size").asLong());
+        String linkJson = String.format("{\"hash\":\"%s\",\"fileName\":\"photo.jpg\",\"contentType\":\"image/jpeg\"}", hash);
+        ResponseEntity<String> linked = restTemplate.postForEntity(baseUrl("/api/attachments/link/" + firstDefect), new HttpEntity<>(linkJson, auth), String.class);
+        assertEquals(HttpStatus.OK, linked.getStatusCode());
+        long linkedId = mapper.readTree(linked.getBody()).get("id").asLong();
+
+        // the blob survives until the last reference is deleted
+        delete(auth, first.get("id").asLong());
+        delete(auth, second.get("id").asLong());
+        assertTrue(Files.exists(blob));
+        delete(auth, linkedId);
+        assertFalse(Files.exists(blob));
+        assertEquals(HttpStatus.NOT_FOUND, get("/api/attachments/blobs/" + hash, auth).getStatusCode());
+    }
+
+    @Test
+    void link_WithUnknownHash_ShouldReturnNotFound() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        String linkJson = String.format("{\"hash\":\"%s\",\"fileName\":\"photo.jpg\"}", "0".repeat(64));
+        ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/attachments/link/1"), new HttpEntity<>(linkJson, auth), String.class);
+        assertEquals(HttpStatus.NOT_FOUND, resp.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, get("/api/attachments/blobs/not-a-hash", auth).getStatusCode());
+    }
+
+    private ResponseEntity<String> get(String path, HttpHeaders auth) {
+        return restTemplate.exchange(baseUrl(path), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+    }
+
+    private void delete(HttpHeaders auth, long attachmentId) {
+        ResponseEntity<String> resp = restTemplate.exchange(baseUrl("/api/attachments/" + attachmentId), HttpMethod.DELETE, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+    }
+
+    private JsonNode upload(HttpHeaders auth, long defectId, byte[] content) throws Exception {
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "photo.jpg";
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", auth.getFirst("Authorization"));
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/attachments/upload/" + defectId), new HttpEntity<>(form, headers), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        return mapper.readTree(resp.getBody());
+    }
+}
@@ -0,0 +1,52 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.model.DefectHistory;
+import com.systemcontrol.backend.repository.DefectHistoryRepository;
+import com.systemcontrol.backend.service.DefectHistoryService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// own in-memory database: a second create-drop context must not reset the schema shared by other tests
+@SpringBootTest(properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "spring.datasource.url=jdbc:h2:mem:batchdb;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE"
+})
+@ActiveProfiles("test")
+class BatchInsertTest {
+
+    @Autowired
+    private DefectHistoryRepository defectHistoryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void saveAll_ShouldBatchInsertsWithPooledIds() {
+        // Given
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<DefectHistory> rows = new ArrayList<>();
+        for (long i = 0; i < 120; i++) {
+            rows.add(DefectHistoryService.entry(i, 1L, "status", "NEW", "IN_PROGRESS", "STATUS_CHANGED"));
+        }
+        stats.clear();
+
+        // When
+        defectHistoryRepository.saveAll(rows);
+
+        // Then
+        assertEquals(120, stats.getEntityInsertCount());
+        // 3 sequence calls (allocation size 50) + 3 insert batches (batch size 50); one statement per row without batching
+        assertTrue(stats.getPrepareStatementCount() <= 6, "prepared statements: " + stats.getPrepareStatementCount());
+        assertTrue(rows.stream().allMatch(r -> r.getId() != null));
+    }
+}
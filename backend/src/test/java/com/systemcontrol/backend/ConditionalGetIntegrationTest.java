@@ -0,0 +1,109 @@
+package com.systemcontrol.backend;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class ConditionalGetIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Test
+    void defectList_ShouldAnswer304UntilADefectOfTheProjectChanges() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth, "ETag project");
+        long otherProjectId = createProject(auth, "Other ETag project");
+        long defectId = createDefect(auth, projectId, "Скол бетона");
+        String path = "/api/defects?projectId=" + projectId;
+
+        ResponseEntity<String> first = get(path, auth, null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("W/\""), etag);
+        assertEquals("private, no-cache", first.getHeaders().getCacheControl());
+        assertTrue(first.getHeaders().getLastModified() > 0);
+
+        ResponseEntity<String> unchanged = get(path, auth, etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+        assertNull(unchanged.getBody());
+        assertEquals(etag, unchanged.getHeaders().getETag());
+        // the version lookup only: no page query, no entities
+        StatementCountExtension.assertAtMost(1, unchanged, "GET /api/defects 304");
+
+        // a change in another project leaves this list's version alone
+        createDefect(auth, otherProjectId, "Трещина");
+        assertEquals(HttpStatus.NOT_MODIFIED, get(path, auth, etag).getStatusCode());
+
+        // a title edit moves no counter but still changes the list
+        String update = mapper.writeValueAsString(Map.of("title", "Скол бетона, ось 3", "projectId", projectId,
+            "priority", "MEDIUM", "status", "NEW"));
+        assertEquals(HttpStatus.OK, restTemplate.exchange(baseUrl("/api/defects/" + defectId), HttpMethod.PUT,
+            new HttpEntity<>(update, auth), String.class).getStatusCode());
+        ResponseEntity<String> changed = get(path, auth, etag);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(etag, changed.getHeaders().getETag());
+        assertTrue(changed.getBody().contains("ось 3"));
+
+        // the unfiltered list follows any change
+        String all = get("/api/defects", auth, null).getHeaders().getETag();
+        assertEquals(HttpStatus.NOT_MODIFIED, get("/api/defects", auth, all).getStatusCode());
+        createDefect(auth, otherProjectId, "Протечка");
+        assertEquals(HttpStatus.OK, get("/api/defects", auth, all).getStatusCode());
+    }
+
+    @Test
+    void defect_ShouldRevalidateByUpdatedAt() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth, "Single defect ETag");
+        long defectId = createDefect(auth, projectId, "Отслоение плитки");
+        String path = "/api/defects/" + defectId;
+
+        ResponseEntity<String> first = get(path, auth, null);
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+        assertTrue(first.getHeaders().getLastModified() > 0);
+
+        ResponseEntity<String> unchanged = get(path, auth, etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+        StatementCountExtension.assertAtMost(1, unchanged, "GET /api/defects/{id} 304");
+
+        String status = "{\"status\":\"IN_PROGRESS\"}";
+        assertEquals(HttpStatus.OK, restTemplate.exchange(baseUrl(path + "/status"), HttpMethod.PUT,
+            new HttpEntity<>(status, auth), String.class).getStatusCode());
+        ResponseEntity<String> changed = get(path, auth, etag);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertTrue(changed.getBody().contains("IN_PROGRESS"));
+
+        assertEquals(HttpStatus.NOT_FOUND, get("/api/defects/99999999", auth, etag).getStatusCode());
+    }
+
+    @Test
+    void projectAndUserLists_ShouldChangeVersionOnWrites() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        String projects = get("/api/projects", auth, null).getHeaders().getETag();
+        assertEquals(HttpStatus.NOT_MODIFIED, get("/api/projects", auth, projects).getStatusCode());
+        createProject(auth, "Another project");
+        assertEquals(HttpStatus.OK, get("/api/projects", auth, projects).getStatusCode());
+
+        String users = get("/api/users", auth, null).getHeaders().getETag();
+        assertEquals(HttpStatus.NOT_MODIFIED, get("/api/users", auth, users).getStatusCode());
+        String register = String.format("{\"username\":\"etag-%s\",\"password\":\"testpass123\"}", UUID.randomUUID().toString().substring(0, 8));
+        assertTrue(restTemplate.postForEntity(baseUrl("/api/auth/register"), new HttpEntity<>(register, jsonHeaders()), String.class)
+            .getStatusCode().is2xxSuccessful());
+        assertEquals(HttpStatus.OK, get("/api/users", auth, users).getStatusCode());
+    }
+
+    private ResponseEntity<String> get(String path, HttpHeaders auth, String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(auth);
+        if (ifNoneMatch != null) headers.setIfNoneMatch(ifNoneMatch);
+        return restTemplate.exchange(baseUrl(path), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+}
@@ -0,0 +1,189 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.systemcontrol.backend.dto.BulkDefectReport;
+import com.systemcontrol.backend.dto.BulkDefectRequest;
+import com.systemcontrol.backend.dto.DefectFilter;
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.model.Project;
+import com.systemcontrol.backend.model.User;
+import com.systemcontrol.backend.repository.UserRepository;
+import com.systemcontrol.backend.service.DefectBulkService;
+import com.systemcontrol.backend.service.DefectService;
+import com.systemcontrol.backend.service.DefectStatsService;
+import com.systemcontrol.backend.service.ProjectService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// a small chunk size, so a handful of defects already spans several chunks
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "app.defects.bulk.chunk-size=3")
+@ActiveProfiles("test")
+public class DefectBulkIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Autowired
+    private DefectBulkService bulkService;
+
+    @Autowired
+    private DefectService defectService;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private DefectStatsService defectStats;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @RegisterExtension
+    final StatementCountExtension sql = new StatementCountExtension();
+
+    @Test
+    void statusChange_ShouldValidateEachDefectAndReportPerId() throws Exception {
+        long projectId = createProject("Bulk status");
+        List<Long> open = new ArrayList<>();
+        for (int i = 0; i < 5; i++) open.add(defectService.create(defect(projectId, DefectStatus.NEW)).getId());
+        long inProgress = defectService.create(defect(projectId, DefectStatus.IN_PROGRESS)).getId();
+        long closed = defectService.create(defect(projectId, DefectStatus.CLOSED)).getId();
+
+        BulkDefectRequest request = new BulkDefectRequest();
+        request.operation = BulkDefectRequest.Operation.STATUS;
+        request.status = DefectStatus.IN_PROGRESS;
+        request.userId = 42L;
+        request.ids = new ArrayList<>(open);
+        request.ids.addAll(List.of(inProgress, closed, 99999999L, open.get(0)));
+
+        // three chunks: lock, update, history batch, counters each, plus history id fetches
+        BulkDefectReport report = sql.assertAtMost(16, "bulk status of 8 defects", () -> bulkService.apply(request));
+
+        assertEquals(8, report.getSelected());
+        assertEquals(5, report.getUpdated());
+        assertEquals(1, report.getUnchanged());
+        assertEquals(2, report.getFailed());
+        List<BulkDefectReport.Result> results = report.getResults();
+        assertEquals(open.get(0), results.get(0).id());
+        assertEquals(BulkDefectReport.Outcome.UPDATED, results.get(4).outcome());
+        assertEquals(BulkDefectReport.Outcome.UNCHANGED, results.get(5).outcome());
+        assertEquals(BulkDefectReport.Outcome.INVALID_TRANSITION, results.get(6).outcome());
+        assertNotNull(results.get(6).message());
+        assertEquals(BulkDefectReport.Outcome.NOT_FOUND, results.get(7).outcome());
+
+        for (Long id : open) {
+            Defect d = defectService.get(id);
+            assertEquals(DefectStatus.IN_PROGRESS, d.getStatus());
+            assertEquals(1L, d.getVersion());
+        }
+        assertEquals(0L, defectService.get(closed).getVersion());
+        assertEquals(5, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM defect_history WHERE user_id = 42 AND field_name = 'status' AND new_value = 'IN_PROGRESS'", Integer.class));
+        assertEquals(Map.of(DefectStatus.IN_PROGRESS, 6L, DefectStatus.CLOSED, 1L), defectStats.forProject(projectId).orElseThrow().byStatus());
+
+        // a bulk cancellation is recorded as one, like DefectService.cancelDefect
+        BulkDefectRequest cancel = new BulkDefectRequest();
+        cancel.operation = BulkDefectRequest.Operation.STATUS;
+        cancel.status = DefectStatus.CANCELLED;
+        cancel.userId = 42L;
+        cancel.ids = List.of(open.get(0));
+        assertEquals(1, bulkService.apply(cancel).getUpdated());
+        assertEquals("CANCELLED", jdbcTemplate.queryForObject(
+            "SELECT action FROM defect_history WHERE defect_id = ? AND new_value = 'CANCELLED'", String.class, open.get(0)));
+    }
+
+    @Test
+    void reassignByFilter_ShouldMoveOnlyMatchingDefects() throws Exception {
+        long projectId = createProject("Bulk reassign");
+        long otherProjectId = createProject("Bulk reassign, other zone");
+        long leaving = createUser();
+        long successor = createUser();
+        List<Long> handedOver = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Defect d = defect(projectId, DefectStatus.NEW);
+            d.setAssigneeId(leaving);
+            handedOver.add(defectService.create(d).getId());
+        }
+        Defect elsewhere = defect(otherProjectId, DefectStatus.NEW);
+        elsewhere.setAssigneeId(leaving);
+        long kept = defectService.create(elsewhere).getId();
+        String listVersion = defectStats.changeVersion(projectId).orElseThrow().tag();
+
+        BulkDefectRequest request = new BulkDefectRequest();
+        request.operation = BulkDefectRequest.Operation.ASSIGN;
+        request.assigneeId = successor;
+        request.filter = new DefectFilter();
+        request.filter.setProjectId(projectId);
+        request.filter.setAssigneeId(leaving);
+
+        BulkDefectReport report = bulkService.apply(request);
+
+        assertEquals(4, report.getUpdated());
+        assertEquals(handedOver, report.getResults().stream().map(BulkDefectReport.Result::id).toList());
+        for (Long id : handedOver) assertEquals(successor, defectService.get(id).getAssigneeId());
+        assertEquals(leaving, defectService.get(kept).getAssigneeId());
+        // counters are untouched, but the project's list version moves on
+        assertNotEquals(listVersion, defectStats.changeVersion(projectId).orElseThrow().tag());
+        assertEquals(4, defectStats.forProject(projectId).orElseThrow().total());
+    }
+
+    @Test
+    void endpoint_ShouldRejectAmbiguousOrUnboundedSelection() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject("Bulk endpoint");
+        long id = defectService.create(defect(projectId, DefectStatus.NEW)).getId();
+
+        ResponseEntity<String> ok = post(Map.of("operation", "PRIORITY", "priority", "CRITICAL", "ids", List.of(id)), auth);
+        assertEquals(HttpStatus.OK, ok.getStatusCode());
+        JsonNode body = mapper.readTree(ok.getBody());
+        assertEquals(1, body.get("updated").asLong());
+        assertEquals("UPDATED", body.get("results").get(0).get("outcome").asText());
+        assertEquals(Priority.CRITICAL, defectService.get(id).getPriority());
+
+        assertEquals(HttpStatus.BAD_REQUEST, post(Map.of("operation", "PRIORITY", "priority", "LOW", "filter", Map.of()), auth).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, post(Map.of("operation", "PRIORITY", "priority", "LOW", "ids", List.of(id),
+            "filter", Map.of("projectId", projectId)), auth).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, post(Map.of("operation", "STATUS", "ids", List.of(id)), auth).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, post(Map.of("operation", "ASSIGN", "assigneeId", 99999999, "ids", List.of(id)), auth).getStatusCode());
+    }
+
+    private ResponseEntity<String> post(Map<String, Object> body, HttpHeaders auth) throws Exception {
+        return restTemplate.postForEntity(baseUrl("/api/defects/bulk-update"),
+            new HttpEntity<>(mapper.writeValueAsString(body), auth), String.class);
+    }
+
+    private long createProject(String name) {
+        Project project = new Project();
+        project.setName(name);
+        return projectService.create(project).getId();
+    }
+
+    private long createUser() {
+        User user = new User();
+        user.setUsername("bulk-" + UUID.randomUUID().toString().substring(0, 8));
+        user.setPassword("x");
+        return userRepository.save(user).getId();
+    }
+
+    private static Defect defect(long projectId, DefectStatus status) {
+        Defect d = new Defect();
+        d.setTitle("Нет герметизации шва");
+        d.setProjectId(projectId);
+        d.setStatus(status);
+        return d;
+    }
+}
@@ -0,0 +1,85 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class DefectChangeFeedIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Test
+    void stream_ShouldPushChangesOfSubscribedProjectOnly() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth, "Feed Project");
+        long otherProjectId = createProject(auth, "Other Feed Project");
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest subscribe = HttpRequest.newBuilder(URI.create(baseUrl("/api/defects/stream?projectId=" + projectId)))
+            .header("Authorization", auth.getFirst("Authorization"))
+            .header("Accept", MediaType.TEXT_EVENT_STREAM_VALUE)
+            .build();
+        HttpResponse<InputStream> stream = client.send(subscribe, HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, stream.statusCode());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream.body(), StandardCharsets.UTF_8));
+        // the subscription is registered once the first comment arrives
+        assertEquals(":subscribed", readLineSkippingBlank(reader));
+
+        // a change in another project is not delivered
+        createDefect(auth, otherProjectId, "Elsewhere");
+        long defectId = createDefect(auth, projectId, "Streamed defect");
+        String body = "{\"status\":\"IN_PROGRESS\",\"userId\":1}";
+        ResponseEntity<String> statusResp = restTemplate.exchange(baseUrl("/api/defects/" + defectId + "/status"), HttpMethod.PUT, new HttpEntity<>(body, auth), String.class);
+        assertEquals(HttpStatus.OK, statusResp.getStatusCode());
+
+        List<JsonNode> events = CompletableFuture.supplyAsync(() -> readEvents(reader, 2)).get(10, TimeUnit.SECONDS);
+        stream.body().close();
+
+        assertEquals("CREATED", events.get(0).get("type").asText());
+        assertEquals(defectId, events.get(0).get("defectId").asLong());
+        JsonNode update = events.get(1);
+        assertEquals("UPDATED", update.get("type").asText());
+        assertEquals(projectId, update.get("projectId").asLong());
+        assertEquals("IN_PROGRESS", update.get("status").asText());
+        assertEquals("status", update.get("changes").get(0).get("field").asText());
+        assertEquals("NEW", update.get("changes").get(0).get("oldValue").asText());
+    }
+
+    private List<JsonNode> readEvents(BufferedReader reader, int count) {
+        List<JsonNode> events = new ArrayList<>();
+        try {
+            String line;
+            while (events.size() < count && (line = reader.readLine()) != null) {
+                if (line.startsWith("data:")) events.add(mapper.readTree(line.substring(5)));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return events;
+    }
+
+    private String readLineSkippingBlank(BufferedReader reader) throws Exception {
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && (line.isBlank() || line.startsWith("retry:")));
+        return line;
+    }
+}
@@ -0,0 +1,139 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.systemcontrol.backend.exception.DefectConflictException;
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Project;
+import com.systemcontrol.backend.service.DefectService;
+import com.systemcontrol.backend.service.DefectStatsService;
+import com.systemcontrol.backend.service.ProjectService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class DefectConcurrencyIntegrationTest extends AbstractApiIntegrationTest {
+
+    private static final int CALLERS = 8;
+
+    @Autowired
+    private DefectService defectService;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private DefectStatsService defectStats;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentNextStatus_ShouldAdvanceOneStepPerSuccessfulCall() throws Exception {
+        long projectId = createProject("Concurrent transitions");
+        long defectId = defectService.create(defect(projectId)).getId();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        List<Future<Boolean>> calls = new ArrayList<>();
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                calls.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        defectService.moveToNextStatus(defectId, null, "ROLE_MANAGER");
+                        return true;
+                    } catch (DefectConflictException | ResponseStatusException e) {
+                        // lost the race, or the defect is already closed
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+        } finally {
+            pool.shutdown();
+        }
+        int succeeded = 0;
+        for (Future<Boolean> call : calls) {
+            if (call.get()) succeeded++;
+        }
+
+        // without the conditional UPDATE two callers reading the same status both "succeed" with one step between them
+        assertTrue(succeeded >= 1 && succeeded <= 3, "succeeded: " + succeeded);
+        DefectStatus expected = DefectStatus.values()[succeeded];
+        Defect current = defectService.get(defectId);
+        assertEquals(expected, current.getStatus());
+        assertEquals(succeeded, current.getVersion());
+        assertEquals(succeeded, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM defect_history WHERE defect_id = ? AND action = 'STATUS_CHANGED'", Integer.class, defectId));
+        assertEquals(Map.of(expected, 1L), defectStats.forProject(projectId).orElseThrow().byStatus());
+    }
+
+    @Test
+    void staleTransitionAndEdit_ShouldAnswer409WithCurrentDefect() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject("Optimistic locking");
+        Defect created = defectService.create(defect(projectId));
+        long defectId = created.getId();
+        assertEquals(0L, created.getVersion());
+
+        String edit = mapper.writeValueAsString(Map.of("title", "Скол бетона, ось 3", "projectId", projectId,
+            "priority", "MEDIUM", "status", "NEW", "version", 0));
+        ResponseEntity<String> first = put("/api/defects/" + defectId, edit, auth);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(1, mapper.readTree(first.getBody()).get("version").asLong());
+
+        // the same edit made from the copy read before the first one
+        String stale = edit.replace("ось 3", "ось 4");
+        ResponseEntity<String> conflict = put("/api/defects/" + defectId, stale, auth);
+        assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+        JsonNode body = mapper.readTree(conflict.getBody());
+        assertNotNull(body.get("message").asText());
+        assertEquals("Скол бетона, ось 3", body.get("current").get("title").asText());
+        assertEquals(1, body.get("current").get("version").asLong());
+
+        // an edit without a version (older clients) is still accepted
+        String unversioned = mapper.writeValueAsString(Map.of("title", "Скол бетона, ось 5", "projectId", projectId,
+            "priority", "MEDIUM", "status", "NEW"));
+        assertEquals(HttpStatus.OK, put("/api/defects/" + defectId, unversioned, auth).getStatusCode());
+
+        ResponseEntity<String> next = put("/api/defects/" + defectId + "/next-status", "{}", auth);
+        assertEquals(HttpStatus.OK, next.getStatusCode());
+        JsonNode moved = mapper.readTree(next.getBody());
+        assertEquals("IN_PROGRESS", moved.get("status").asText());
+        assertEquals(3, moved.get("version").asLong());
+    }
+
+    private ResponseEntity<String> put(String path, String json, HttpHeaders auth) {
+        return restTemplate.exchange(baseUrl(path), HttpMethod.PUT, new HttpEntity<>(json, auth), String.class);
+    }
+
+    private long createProject(String name) {
+        Project project = new Project();
+        project.setName(name);
+        return projectService.create(project).getId();
+    }
+
+    private static Defect defect(long projectId) {
+        Defect d = new Defect();
+        d.setTitle("Скол бетона");
+        d.setProjectId(projectId);
+        return d;
+    }
+}
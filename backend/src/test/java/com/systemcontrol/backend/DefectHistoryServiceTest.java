@@ -0,0 +1,153 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.model.DefectHistory;
+import com.systemcontrol.backend.repository.DefectHistoryRepository;
+import com.systemcontrol.backend.service.DefectHistoryService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DefectHistoryServiceTest {
+
+    @Mock
+    private DefectHistoryRepository defectHistoryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path dir;
+
+    private DefectHistoryService service(boolean async, int queueCapacity, int batchSize) {
+        return new DefectHistoryService(defectHistoryRepository, transactionManager, async, queueCapacity, batchSize, 10,
+            dir.resolve("spill.jsonl").toString());
+    }
+
+    @Test
+    void recordChanges_Sync_ShouldWriteOneBatch() {
+        // Given
+        DefectHistoryService service = service(false, 100, 50);
+        List<DefectHistory> changes = List.of(
+            DefectHistoryService.entry(1L, 2L, "title", "a", "b", "UPDATED"),
+            DefectHistoryService.entry(1L, 2L, "priority", "LOW", "HIGH", "UPDATED")
+        );
+
+        // When
+        service.recordChanges(changes);
+
+        // Then
+        verify(defectHistoryRepository, times(1)).saveAll(changes);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordChanges_Async_ShouldFlushEverythingOnStop() {
+        // Given
+        List<DefectHistory> written = new ArrayList<>();
+        when(defectHistoryRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<DefectHistory> batch = inv.getArgument(0);
+            synchronized (written) { written.addAll(batch); }
+            return batch;
+        });
+        DefectHistoryService service = service(true, 1000, 50);
+        service.start();
+
+        // When
+        for (long id = 1; id <= 300; id++) {
+            service.recordChange(id, 1L, "status", "NEW", "IN_PROGRESS", "STATUS_CHANGED");
+        }
+        service.stop();
+
+        // Then
+        assertFalse(service.isRunning());
+        assertEquals(300, written.size());
+        ArgumentCaptor<List<DefectHistory>> batches = ArgumentCaptor.forClass(List.class);
+        verify(defectHistoryRepository, atMost(300)).saveAll(batches.capture());
+        assertTrue(batches.getAllValues().stream().allMatch(b -> b.size() <= 50));
+    }
+
+    @Test
+    void recordChanges_Async_ShouldQueueOnlyAfterCommitAndWriteInNewTransaction() {
+        // Given
+        DefectHistoryService service = service(true, 100, 50);
+        service.start();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When: a rolled back change, then a committed one
+            service.recordChange(1L, 1L, "status", "NEW", "IN_PROGRESS", "STATUS_CHANGED");
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.initSynchronization();
+            service.recordChange(2L, 1L, "status", "NEW", "IN_PROGRESS", "STATUS_CHANGED");
+            verifyNoInteractions(defectHistoryRepository);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        service.stop();
+
+        // Then
+        ArgumentCaptor<List<DefectHistory>> batches = captor();
+        verify(defectHistoryRepository).saveAll(batches.capture());
+        assertEquals(List.of(2L), batches.getValue().stream().map(DefectHistory::getDefectId).toList());
+        verify(transactionManager).getTransaction(argThat(d -> d.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    }
+
+    @Test
+    void failedBatch_ShouldBeSpilledAndReplayedAfterNextSuccessfulWrite() throws Exception {
+        // Given: the database rejects the first batch on every attempt
+        AtomicBoolean down = new AtomicBoolean(true);
+        List<DefectHistory> written = new ArrayList<>();
+        when(defectHistoryRepository.saveAll(anyList())).thenAnswer(inv -> {
+            if (down.get()) throw new DataAccessResourceFailureException("connection refused");
+            List<DefectHistory> batch = inv.getArgument(0);
+            written.addAll(batch);
+            return batch;
+        });
+        DefectHistoryService service = service(true, 100, 50);
+        Path spill = dir.resolve("spill.jsonl");
+
+        // When: the writer is not running, so entries are written by the caller
+        service.recordChange(1L, 1L, "title", "a", "b", "UPDATED");
+
+        // Then
+        verify(defectHistoryRepository, times(3)).saveAll(anyList());
+        assertTrue(Files.exists(spill));
+        assertTrue(written.isEmpty());
+
+        // When: the database is back
+        down.set(false);
+        service.recordChange(2L, 1L, "title", "c", "d", "UPDATED");
+
+        // Then: the spilled entry follows the successful write, and the file is gone
+        assertEquals(List.of(2L, 1L), written.stream().map(DefectHistory::getDefectId).toList());
+        assertEquals("b", written.get(1).getNewValue());
+        assertNotNull(written.get(1).getCreatedAt());
+        assertFalse(Files.exists(spill));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<DefectHistory>> captor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+}
@@ -0,0 +1,121 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class DefectImportIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void bulkImportCsv_ShouldInsertValidRowsAndReportErrors() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth, "Import CSV Project");
+
+        String csv = "id,title,description,priority,status,assigneeId,projectId,dueDate,createdAt,updatedAt\n"
+            + ",Crack,\"multi\nline, \"\"quoted\"\"\",HIGH,NEW,," + projectId + ",2025-02-15T00:00:00Z,,\n"
+            + ",Leak,<script>x</script>plain,,,," + projectId + ",2025-03-01,,\n"
+            + ",No project,,LOW,NEW,,999999,,,\n"
+            + ",Bad priority,,URGENT,NEW,," + projectId + ",,,\n"
+            + ",,missing title,LOW,NEW,," + projectId + ",,,\n";
+
+        JsonNode report = upload(auth, "defects.csv", csv.getBytes(StandardCharsets.UTF_8));
+        assertEquals(5, report.get("totalRows").asLong());
+        assertEquals(2, report.get("imported").asLong());
+        assertEquals(3, report.get("failed").asLong());
+        assertEquals(4, report.get("errors").get(0).get("row").asLong());
+        assertEquals("project not found", report.get("errors").get(0).get("message").asText());
+
+        JsonNode defects = get("/api/defects?legacy=true&projectId=" + projectId, auth);
+        assertEquals(2, defects.size());
+        // sanitized the same way as single creates (Jsoup collapses whitespace)
+        assertEquals("multi line, \"quoted\"", defects.get(0).get("description").asText());
+        assertEquals("plain", defects.get(1).get("description").asText());
+        assertEquals("MEDIUM", defects.get(1).get("priority").asText());
+    }
+
+    @Test
+    void bulkImportCsv_ShouldReportOnlyRowsTheDatabaseRejects() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth, "Import Rejected Rows Project");
+        // 495 characters that grow past the 500 of the column once escaped
+        String escapesPastLimit = "&".repeat(5) + "x".repeat(490);
+
+        StringBuilder csv = new StringBuilder("title,projectId\n");
+        for (int i = 1; i <= 9; i++) {
+            String title = i == 4 ? "Rejected by database" : i == 7 ? escapesPastLimit : "Imported " + i;
+            csv.append(title).append(',').append(projectId).append('\n');
+        }
+        jdbcTemplate.execute("ALTER TABLE defects ADD CONSTRAINT import_test_reject CHECK (title <> 'Rejected by database')");
+        JsonNode report;
+        try {
+            report = upload(auth, "rejected.csv", csv.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE defects DROP CONSTRAINT import_test_reject");
+        }
+
+        assertEquals(9, report.get("totalRows").asLong());
+        assertEquals(7, report.get("imported").asLong());
+        assertEquals(2, report.get("failed").asLong());
+        JsonNode tooLong = report.get("errors").get(0);
+        assertEquals(8, tooLong.get("row").asLong());
+        assertEquals("title must not exceed 500 characters", tooLong.get("message").asText());
+        JsonNode rejected = report.get("errors").get(1);
+        assertEquals(5, rejected.get("row").asLong());
+        assertTrue(rejected.get("message").asText().startsWith("database error"), rejected.get("message").asText());
+        assertEquals(7, get("/api/defects?legacy=true&projectId=" + projectId, auth).size());
+    }
+
+    @Test
+    void bulkImportXlsx_ShouldAcceptExportedReport() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long source = createProject(auth, "Import XLSX Source");
+        for (int i = 0; i < 3; i++) {
+            String defectJson = String.format("{\"title\":\"Roundtrip %d\",\"projectId\":%d,\"priority\":\"CRITICAL\"}", i, source);
+            restTemplate.postForEntity(baseUrl("/api/defects"), new HttpEntity<>(defectJson, auth), String.class);
+        }
+        ResponseEntity<byte[]> export = restTemplate.exchange(baseUrl("/api/reports/defects/export?projectId=" + source),
+            HttpMethod.GET, new HttpEntity<>(auth), byte[].class);
+        assertEquals(HttpStatus.OK, export.getStatusCode());
+
+        JsonNode report = upload(auth, "defects_report.xlsx", export.getBody());
+        assertEquals(3, report.get("imported").asLong());
+        assertEquals(0, report.get("failed").asLong());
+        assertEquals(6, get("/api/defects?legacy=true&projectId=" + source, auth).size());
+    }
+
+    private JsonNode upload(HttpHeaders auth, String filename, byte[] content) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", auth.getFirst("Authorization"));
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() { return filename; }
+        });
+        ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/defects/bulk"), new HttpEntity<>(body, headers), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode(), resp.getBody());
+        return mapper.readTree(resp.getBody());
+    }
+
+    private JsonNode get(String path, HttpHeaders auth) throws Exception {
+        ResponseEntity<String> resp = restTemplate.exchange(baseUrl(path), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        return mapper.readTree(resp.getBody());
+    }
+}
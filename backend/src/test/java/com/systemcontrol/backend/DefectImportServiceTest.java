@@ -0,0 +1,118 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.dto.ImportReport;
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.ProjectRepository;
+import com.systemcontrol.backend.repository.UserRepository;
+import com.systemcontrol.backend.service.DefectHistoryService;
+import com.systemcontrol.backend.service.DefectImportService;
+import com.systemcontrol.backend.service.DefectStatsService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DefectImportServiceTest {
+
+    private static final int ROWS = 2500;
+
+    @Mock
+    private DefectRepository defectRepository;
+    @Mock
+    private ProjectRepository projectRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private DefectHistoryService defectHistoryService;
+    @Mock
+    private DefectStatsService defectStats;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private EntityManager entityManager;
+
+    private DefectImportService service;
+
+    @BeforeEach
+    void setUp() {
+        when(projectRepository.findAllIds()).thenReturn(List.of(1L));
+        when(userRepository.findAllIds()).thenReturn(List.of());
+        service = new DefectImportService(defectRepository, projectRepository, userRepository, defectHistoryService,
+            defectStats, new TransactionTemplate(transactionManager), entityManager);
+    }
+
+    @Test
+    void importFile_WhenNoConnection_ShouldStopInsteadOfSplittingChunks() throws Exception {
+        when(transactionManager.getTransaction(any())).thenThrow(new CannotCreateTransactionException("Connection is not available"));
+
+        ImportReport report = service.importFile(csv(null));
+
+        // one attempt, not one per row of the first chunk
+        verify(transactionManager, times(1)).getTransaction(any());
+        assertEquals(ROWS, report.getTotalRows());
+        assertEquals(0, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertEquals(ROWS, report.getNotProcessed());
+        assertNotNull(report.getAbortReason());
+    }
+
+    @Test
+    void importFile_WhenQueryTimesOut_ShouldStop() throws Exception {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(defectRepository.saveAll(anyList())).thenThrow(new QueryTimeoutException("statement timeout"));
+
+        ImportReport report = service.importFile(csv(null));
+
+        verify(defectRepository, times(1)).saveAll(anyList());
+        assertEquals(ROWS, report.getNotProcessed());
+        assertTrue(report.getErrors().isEmpty());
+    }
+
+    @Test
+    void importFile_WhenRowViolatesConstraint_ShouldReportOnlyThatRow() throws Exception {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(defectRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Defect> defects = inv.getArgument(0);
+            if (defects.stream().anyMatch(d -> d.getTitle().equals("Bad"))) {
+                throw new DataIntegrityViolationException("check constraint");
+            }
+            return defects;
+        });
+
+        ImportReport report = service.importFile(csv("Bad"));
+
+        assertEquals(ROWS - 1, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(11, report.getErrors().get(0).row());
+        assertEquals(0, report.getNotProcessed());
+        assertNull(report.getAbortReason());
+    }
+
+    /** Файл из {@link #ROWS} строк; десятая строка данных получает {@code specialTitle}, если он задан. */
+    private static MockMultipartFile csv(String specialTitle) {
+        StringBuilder sb = new StringBuilder("title,projectId\n");
+        for (int i = 1; i <= ROWS; i++) {
+            sb.append(i == 10 && specialTitle != null ? specialTitle : "Defect " + i).append(",1\n");
+        }
+        return new MockMultipartFile("file", "defects.csv", "text/csv", sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
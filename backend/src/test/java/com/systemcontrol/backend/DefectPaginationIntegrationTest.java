@@ -0,0 +1,72 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class DefectPaginationIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Test
+    void listDefects_ShouldWalkAllPagesWithCursor() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth);
+        List<Long> created = new ArrayList<>();
+        String[] priorities = {"LOW", "HIGH", "LOW", "HIGH", "HIGH"};
+        for (String priority : priorities) {
+            String defectJson = String.format("{\"title\":\"Paged %s\",\"projectId\":%d,\"priority\":\"%s\"}", priority, projectId, priority);
+            ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/defects"), new HttpEntity<>(defectJson, auth), String.class);
+            assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+            created.add(mapper.readTree(resp.getBody()).get("id").asLong());
+        }
+
+        // walk pages of two, newest first
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String url = "/api/defects?projectId=" + projectId + "&limit=2" + (cursor != null ? "&cursor=" + cursor : "");
+            JsonNode page = get(url, auth);
+            page.get("items").forEach(item -> seen.add(item.get("id").asLong()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(created.reversed(), seen);
+
+        // server-side filter
+        JsonNode high = get("/api/defects?projectId=" + projectId + "&priority=HIGH", auth);
+        assertEquals(3, high.get("items").size());
+        assertTrue(high.get("nextCursor").isNull());
+        // the frontend sends updatedSince as Date.toISOString() does
+        assertEquals(5, get("/api/defects?projectId=" + projectId + "&status=NEW&updatedSince=2000-01-01T00:00:00.000Z", auth).get("items").size());
+        assertEquals(0, get("/api/defects?projectId=" + projectId + "&updatedSince=2999-01-01T00:00:00.000Z", auth).get("items").size());
+
+        // legacy mode keeps the plain array
+        JsonNode legacy = get("/api/defects?legacy=true&projectId=" + projectId, auth);
+        assertTrue(legacy.isArray());
+        assertEquals(5, legacy.size());
+    }
+
+    @Test
+    void listDefects_WithInvalidCursor_ShouldReturnBadRequest() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        ResponseEntity<String> resp = restTemplate.exchange(baseUrl("/api/defects?cursor=not-a-cursor"), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+    }
+
+    private JsonNode get(String path, HttpHeaders auth) throws Exception {
+        ResponseEntity<String> resp = restTemplate.exchange(baseUrl(path), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        return mapper.readTree(resp.getBody());
+    }
+}
@@ -0,0 +1,98 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class DefectSearchIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Test
+    void search_ShouldRankTitleOverDescriptionOverCommentsAndPage() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth);
+        // unique per run, the database is shared with other tests
+        String word = "трещина" + Long.toString(System.nanoTime(), 36);
+
+        long inComment = createDefect(auth, projectId, "Плита перекрытия", "Осмотр 3 этажа");
+        addComment(auth, inComment, "<p>Найдена " + word + " у колонны</p>");
+        long inDescription = createDefect(auth, projectId, "Стена по оси Б", "Вертикальная " + word + " шириной 2 мм");
+        long inTitle = createDefect(auth, projectId, "Крупная " + word, "Требуется обследование");
+        createDefect(auth, projectId, "Протечка кровли", "Не относится к поиску");
+        long escaped = createDefect(auth, projectId, "Фасад", "Зазор 5 < 7 мм, <b>" + word + "</b>");
+
+        JsonNode page = get("/api/defects/search?q=" + word + "&projectId=" + projectId, auth);
+        List<Long> ids = ids(page);
+        // title first; equal description ranks fall back to id desc; comment-only match last
+        assertEquals(List.of(inTitle, escaped, inDescription, inComment), ids);
+        assertTrue(page.get("nextCursor").isNull());
+
+        JsonNode title = page.get("items").get(0);
+        assertEquals("defect", title.get("matchedIn").asText());
+        assertEquals("Крупная <mark>" + word + "</mark>", title.get("titleHighlight").asText());
+
+        JsonNode comment = page.get("items").get(3);
+        assertEquals("comment", comment.get("matchedIn").asText());
+        assertTrue(comment.get("snippet").asText().contains("<mark>" + word + "</mark>"), comment.get("snippet").asText());
+        assertFalse(comment.get("snippet").asText().contains("<p>"));
+
+        // stored markup is dropped and text escaped once; only the highlight is HTML
+        String snippet = page.get("items").get(1).get("snippet").asText();
+        assertTrue(snippet.contains("5 &lt; 7"), snippet);
+        assertFalse(snippet.contains("<b>"), snippet);
+        assertTrue(snippet.contains("<mark>" + word + "</mark>"), snippet);
+
+        // keyset pages of two walk the same order
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode p = get("/api/defects/search?q=" + word + "&projectId=" + projectId + "&limit=2"
+                + (cursor != null ? "&cursor=" + cursor : ""), auth);
+            walked.addAll(ids(p));
+            cursor = p.get("nextCursor").isNull() ? null : p.get("nextCursor").asText();
+        } while (cursor != null);
+        assertEquals(ids, walked);
+    }
+
+    @Test
+    void search_WithoutQuery_ShouldReturnBadRequest() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        ResponseEntity<String> resp = restTemplate.exchange(baseUrl("/api/defects/search?q= "), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+        resp = restTemplate.exchange(baseUrl("/api/defects/search?q=x&cursor=bad"), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+    }
+
+    private static List<Long> ids(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("items").forEach(item -> ids.add(item.get("id").asLong()));
+        return ids;
+    }
+
+    private JsonNode get(String path, HttpHeaders auth) throws Exception {
+        ResponseEntity<String> resp = restTemplate.exchange(baseUrl(path), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        return mapper.readTree(resp.getBody());
+    }
+
+    private void addComment(HttpHeaders auth, long defectId, String content) throws Exception {
+        String json = mapper.writeValueAsString(java.util.Map.of("content", content, "defectId", defectId));
+        ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/comments"), new HttpEntity<>(json, auth), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+    }
+
+    private long createDefect(HttpHeaders auth, long projectId, String title, String description) throws Exception {
+        String defectJson = mapper.writeValueAsString(java.util.Map.of("title", title, "description", description, "projectId", projectId));
+        ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/defects"), new HttpEntity<>(defectJson, auth), String.class);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        return mapper.readTree(resp.getBody()).get("id").asLong();
+    }
+}
@@ -1,13 +1,17 @@
 package com.systemcontrol.backend;
 
+import com.systemcontrol.backend.exception.DefectConflictException;
 import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectHistory;
 import com.systemcontrol.backend.model.DefectStatus;
 import com.systemcontrol.backend.model.Priority;
 import com.systemcontrol.backend.repository.DefectRepository;
 import com.systemcontrol.backend.repository.ProjectRepository;
 import com.systemcontrol.backend.repository.UserRepository;
+import com.systemcontrol.backend.service.DefectChangeFeed;
 import com.systemcontrol.backend.service.DefectHistoryService;
 import com.systemcontrol.backend.service.DefectService;
+import com.systemcontrol.backend.service.DefectStatsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,11 +21,14 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,6 +46,12 @@ class DefectServiceTest {
     @Mock
     private DefectHistoryService defectHistoryService;
     
+    @Mock
+    private DefectChangeFeed changeFeed;
+
+    @Mock
+    private DefectStatsService defectStats;
+    
     @InjectMocks
     private DefectService defectService;
     
@@ -115,7 +128,13 @@ class DefectServiceTest {
         // Then
         assertNotNull(result);
         verify(defectRepository).save(any(Defect.class));
-        verify(defectHistoryService, atLeastOnce()).recordChange(anyLong(), anyLong(), anyString(), any(), any(), anyString());
+        verify(defectHistoryService).recordChanges(argThat(changes -> changes.size() == 3
+            && changes.stream().map(DefectHistory::getFieldName).toList().equals(List.of("title", "priority", "assignee"))));
+        verify(defectHistoryService, never()).recordChange(anyLong(), anyLong(), anyString(), any(), any(), anyString());
+        // the feed is told the title changed, not what it says
+        verify(changeFeed).publish(argThat(event -> event.getChanges().get(0).getField().equals("title")
+            && event.getChanges().get(0).getOldValue() == null && event.getChanges().get(0).getNewValue() == null
+            && event.getChanges().get(1).getNewValue().equals("HIGH")));
     }
     
     @Test
@@ -128,6 +147,52 @@ class DefectServiceTest {
         verify(defectRepository, never()).save(any(Defect.class));
     }
     
+    @Test
+    void updateDefect_WithStaleVersion_ShouldThrowConflict() {
+        // Given
+        Defect existingDefect = new Defect();
+        existingDefect.setId(1L);
+        existingDefect.setVersion(4L);
+        testDefect.setVersion(3L);
+        when(defectRepository.findById(1L)).thenReturn(Optional.of(existingDefect));
+
+        // When & Then
+        assertThrows(DefectConflictException.class, () -> defectService.update(1L, testDefect));
+        verify(defectRepository, never()).save(any(Defect.class));
+        verifyNoInteractions(defectHistoryService, defectStats);
+    }
+
+    @Test
+    void updateStatus_ShouldChangeStatusWithConditionalUpdate() {
+        // Given
+        testDefect.setVersion(2L);
+        when(defectRepository.findById(1L)).thenReturn(Optional.of(testDefect));
+        when(defectRepository.compareAndSetStatus(eq(1L), eq(DefectStatus.NEW), eq(DefectStatus.IN_PROGRESS), any(Instant.class))).thenReturn(1);
+        // an edit committed after the load took the row to version 3, the UPDATE to 4
+        when(defectRepository.findVersionById(1L)).thenReturn(4L);
+
+        // When
+        Defect result = defectService.updateStatus(1L, DefectStatus.IN_PROGRESS, 5L);
+
+        // Then
+        assertEquals(DefectStatus.IN_PROGRESS, result.getStatus());
+        assertEquals(4L, result.getVersion());
+        verify(defectRepository, never()).save(any(Defect.class));
+        verify(defectHistoryService).recordChange(1L, 5L, "status", "NEW", "IN_PROGRESS", "STATUS_CHANGED");
+        verify(defectStats).changed(argThat(before -> before.status() == DefectStatus.NEW), eq(result));
+    }
+
+    @Test
+    void updateStatus_WhenStatusChangedConcurrently_ShouldThrowConflict() {
+        // Given
+        when(defectRepository.findById(1L)).thenReturn(Optional.of(testDefect));
+        when(defectRepository.compareAndSetStatus(eq(1L), eq(DefectStatus.NEW), eq(DefectStatus.IN_PROGRESS), any(Instant.class))).thenReturn(0);
+
+        // When & Then
+        assertThrows(DefectConflictException.class, () -> defectService.updateStatus(1L, DefectStatus.IN_PROGRESS, 5L));
+        verifyNoInteractions(defectHistoryService, defectStats, changeFeed);
+    }
+
     @Test
     void getDefect_WithValidId_ShouldReturnDefect() {
         // Given
@@ -0,0 +1,136 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.model.Project;
+import com.systemcontrol.backend.repository.ProjectRepository;
+import com.systemcontrol.backend.service.AnalyticsService;
+import com.systemcontrol.backend.service.DefectService;
+import com.systemcontrol.backend.service.DefectStatsService;
+import com.systemcontrol.backend.service.ProjectService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class DefectStatsIntegrationTest {
+
+    @Autowired
+    private DefectService defectService;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private DefectStatsService defectStats;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @RegisterExtension
+    final StatementCountExtension statements = new StatementCountExtension();
+
+    @Test
+    void counters_ShouldFollowCreateStatusChangeAndDelete() {
+        Project project = new Project();
+        project.setName("Counters project");
+        long projectId = projectService.create(project).getId();
+        assertEquals(0, defectStats.forProject(projectId).orElseThrow().total());
+
+        long first = defectService.create(defect(projectId, Priority.HIGH)).getId();
+        defectService.create(defect(projectId, Priority.HIGH));
+        long third = defectService.create(defect(projectId, Priority.LOW)).getId();
+
+        defectService.updateStatus(first, DefectStatus.IN_PROGRESS, null);
+        defectService.delete(third);
+
+        DefectStatsService.Counts counts = defectStats.forProject(projectId).orElseThrow();
+        assertEquals(2, counts.total());
+        assertEquals(Map.of(DefectStatus.NEW, 1L, DefectStatus.IN_PROGRESS, 1L), counts.byStatus());
+        assertEquals(Map.of(Priority.HIGH, 2L), counts.byPriority());
+
+        Map<String, Object> analytics = analyticsService.getAnalytics(projectId);
+        assertEquals(2L, analytics.get("totalDefects"));
+        assertEquals(1L, analytics.get("inProgressDefects"));
+    }
+
+    @Test
+    void firstDefect_OfProjectWithoutCounterRow_ShouldCreateRowFromDefects() {
+        // bypasses ProjectService, as projects created before the counters did
+        Project project = new Project();
+        project.setName("Project without counters");
+        long projectId = projectRepository.save(project).getId();
+        assertTrue(defectStats.forProject(projectId).isEmpty());
+
+        defectService.create(defect(projectId, Priority.MEDIUM));
+
+        DefectStatsService.Counts counts = defectStats.forProject(projectId).orElseThrow();
+        assertEquals(1, counts.total());
+        assertEquals(Map.of(Priority.MEDIUM, 1L), counts.byPriority());
+    }
+
+    @Test
+    void reconcile_ShouldRepairDriftedCounters() {
+        Project project = new Project();
+        project.setName("Drifted counters");
+        long projectId = projectService.create(project).getId();
+        defectService.create(defect(projectId, Priority.CRITICAL));
+        defectService.create(defect(projectId, Priority.CRITICAL));
+
+        // a change made around the service
+        jdbcTemplate.update("UPDATE project_defect_stats SET total = 7, status_new = 0 WHERE project_id = ?", projectId);
+
+        assertTrue(defectStats.reconcile() >= 1);
+
+        DefectStatsService.Counts counts = defectStats.forProject(projectId).orElseThrow();
+        assertEquals(2, counts.total());
+        assertEquals(Map.of(DefectStatus.NEW, 2L), counts.byStatus());
+        assertEquals(Map.of(Priority.CRITICAL, 2L), counts.byPriority());
+        assertEquals(0, defectStats.reconcile());
+    }
+
+    @Test
+    void projectProgress_ShouldCountAllProjectsInOneStatement() throws Exception {
+        Project first = new Project();
+        first.setName("Progress A");
+        long firstId = projectService.create(first).getId();
+        Project second = new Project();
+        second.setName("Progress B");
+        long secondId = projectService.create(second).getId();
+        long closed = defectService.create(defect(firstId, Priority.LOW)).getId();
+        defectService.create(defect(firstId, Priority.LOW));
+        for (DefectStatus status : new DefectStatus[]{DefectStatus.IN_PROGRESS, DefectStatus.IN_REVIEW, DefectStatus.CLOSED}) {
+            defectService.updateStatus(closed, status, null);
+        }
+
+        List<DefectStatsService.ProjectProgress> progress = statements.assertAtMost(1, "project progress",
+            analyticsService::getProjectProgress);
+
+        assertTrue(progress.contains(new DefectStatsService.ProjectProgress(firstId, 2, 1)), progress.toString());
+        assertTrue(progress.contains(new DefectStatsService.ProjectProgress(secondId, 0, 0)), progress.toString());
+    }
+
+    private static Defect defect(long projectId, Priority priority) {
+        Defect d = new Defect();
+        d.setTitle("Отслоение штукатурки");
+        d.setProjectId(projectId);
+        d.setPriority(priority);
+        return d;
+    }
+}
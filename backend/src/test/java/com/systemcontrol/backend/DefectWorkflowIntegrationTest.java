@@ -1,12 +1,15 @@
 package com.systemcontrol.backend;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.model.Project;
+import com.systemcontrol.backend.repository.ProjectRepository;
+import com.systemcontrol.backend.service.DefectService;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.web.client.TestRestTemplate;
-import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.*;
 import org.springframework.test.context.ActiveProfiles;
 
@@ -16,19 +19,16 @@ import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
-public class DefectWorkflowIntegrationTest {
-
-    @LocalServerPort
-    private int port;
+public class DefectWorkflowIntegrationTest extends AbstractApiIntegrationTest {
 
     @Autowired
-    private TestRestTemplate restTemplate;
+    private DefectService defectService;
 
-    private final ObjectMapper mapper = new ObjectMapper();
+    @Autowired
+    private ProjectRepository projectRepository;
 
-    private String baseUrl(String path) {
-        return "http://localhost:" + port + path;
-    }
+    @RegisterExtension
+    final StatementCountExtension sql = new StatementCountExtension();
 
     @Test
     void completeDefectWorkflow_ShouldWorkCorrectly() throws Exception {
@@ -90,6 +90,8 @@ public class DefectWorkflowIntegrationTest {
             String.class
         );
         assertEquals(HttpStatus.CREATED, defectResp.getStatusCode());
+        // budgets leave room for pooled-lo sequence fetches (defect and history) where rows are inserted
+        StatementCountExtension.assertAtMost(5, defectResp, "POST /api/defects");
         
         JsonNode defectNode = mapper.readTree(defectResp.getBody());
         long defectId = defectNode.get("id").asLong();
@@ -109,6 +111,7 @@ public class DefectWorkflowIntegrationTest {
             String.class
         );
         assertEquals(HttpStatus.OK, updateResp.getStatusCode());
+        StatementCountExtension.assertAtMost(5, updateResp, "PUT /api/defects/{id}");
 
         // 6. Get defect to verify update
         ResponseEntity<String> getResp = restTemplate.exchange(
@@ -118,6 +121,7 @@ public class DefectWorkflowIntegrationTest {
             String.class
         );
         assertEquals(HttpStatus.OK, getResp.getStatusCode());
+        StatementCountExtension.assertAtMost(1, getResp, "GET /api/defects/{id}");
         
         JsonNode getNode = mapper.readTree(getResp.getBody());
         assertEquals("IN_PROGRESS", getNode.get("status").asText());
@@ -130,12 +134,34 @@ public class DefectWorkflowIntegrationTest {
             String.class
         );
         assertEquals(HttpStatus.OK, analyticsResp.getStatusCode());
+        StatementCountExtension.assertAtMost(1, analyticsResp, "GET /api/reports/analytics");
         
         JsonNode analyticsNode = mapper.readTree(analyticsResp.getBody());
         assertTrue(analyticsNode.has("totalDefects"));
         assertTrue(analyticsNode.has("statusDistribution"));
     }
 
+    @Test
+    void defectUpdate_ShouldStayWithinStatementBudget() throws Exception {
+        Project project = new Project();
+        project.setName("Statement budget project");
+        long projectId = projectRepository.save(project).getId();
+        Defect defect = new Defect();
+        defect.setTitle("Трещина в плите");
+        defect.setProjectId(projectId);
+        long defectId = defectService.create(defect).getId();
+
+        Defect changed = new Defect();
+        changed.setProjectId(projectId);
+        changed.setTitle("Трещина в плите, секция 2");
+        changed.setPriority(Priority.HIGH);
+        changed.setDescription("<p>ширина 2 мм</p>");
+        changed.setStatus(defect.getStatus());
+
+        // find, project check, history insert (+ sequence), update, counter delta
+        sql.assertAtMost(6, "DefectService.update", () -> defectService.update(defectId, changed));
+    }
+
     @Test
     void defectWorkflow_WithInvalidData_ShouldHandleErrors() throws Exception {
         // Test creating defect with non-existent project
@@ -164,14 +190,4 @@ public class DefectWorkflowIntegrationTest {
         // Since regular user has no role/privileges to create defects, expect 403
         assertEquals(HttpStatus.FORBIDDEN, badResp.getStatusCode());
     }
-
-    private HttpHeaders jsonHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        return headers;
-    }
 }
-
-
-
-
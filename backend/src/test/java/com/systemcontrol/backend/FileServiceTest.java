@@ -2,7 +2,9 @@ package com.systemcontrol.backend;
 
 import com.systemcontrol.backend.model.Attachment;
 import com.systemcontrol.backend.repository.AttachmentRepository;
+import com.systemcontrol.backend.service.AttachmentStore;
 import com.systemcontrol.backend.service.FileService;
+import com.systemcontrol.backend.service.ImageDerivativeService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,6 +15,7 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -29,20 +32,22 @@ class FileServiceTest {
     @Mock
     private AttachmentRepository attachmentRepository;
     
+    @Mock
+    private AttachmentStore attachmentStore;
+
+    @Mock
+    private ImageDerivativeService imageDerivativeService;
+    
     @InjectMocks
     private FileService fileService;
     
+    private static final String HASH = "ab".repeat(32);
+
     private Attachment testAttachment;
     private MultipartFile testFile;
     
     @BeforeEach
     void setUp() {
-        // Ensure FileService uses a temp upload dir in unit tests (no Spring context here)
-        try {
-            java.lang.reflect.Field f = FileService.class.getDeclaredField("uploadDir");
-            f.setAccessible(true);
-            f.set(fileService, "uploads-test");
-        } catch (Exception ignored) {}
         testAttachment = new Attachment();
         testAttachment.setId(1L);
         testAttachment.setFileName("test-file.jpg");
@@ -63,6 +68,9 @@ class FileServiceTest {
     @Test
     void saveFile_WithValidFile_ShouldReturnAttachment() throws IOException {
         // Given
+        AttachmentStore.StagedBlob staged = new AttachmentStore.StagedBlob(Path.of("upload.part"), HASH, 12L);
+        when(attachmentStore.stage(any())).thenReturn(staged);
+        when(attachmentStore.addReference(staged)).thenReturn(Path.of("blobs", "ab", "cd", HASH));
         when(attachmentRepository.save(any(Attachment.class))).thenAnswer(invocation -> {
             Attachment a = invocation.getArgument(0, Attachment.class);
             a.setId(1L);
@@ -76,7 +84,24 @@ class FileServiceTest {
         assertNotNull(result);
         assertEquals("test-file.jpg", result.getOriginalFileName());
         assertEquals(1L, result.getDefectId());
+        assertEquals(HASH, result.getContentHash());
+        assertEquals(12L, result.getFileSize());
         verify(attachmentRepository).save(any(Attachment.class));
+        // previews are queued, not made inline
+        verify(imageDerivativeService).submit(HASH, "image/jpeg");
+    }
+
+    @Test
+    void linkExisting_WithUnknownHash_ShouldReturnNull() throws IOException {
+        // Given
+        when(attachmentStore.addReference(HASH)).thenReturn(false);
+
+        // When
+        Attachment result = fileService.linkExisting(HASH, "photo.jpg", "image/jpeg", 1L);
+
+        // Then
+        assertNull(result);
+        verify(attachmentRepository, never()).save(any(Attachment.class));
     }
     
     @Test
@@ -132,6 +157,21 @@ class FileServiceTest {
         
         // Then
         verify(attachmentRepository).deleteById(1L);
+        verify(attachmentStore, never()).release(any());
+    }
+
+    @Test
+    void deleteAttachment_WithContentHash_ShouldReleaseBlob() throws IOException {
+        // Given
+        testAttachment.setContentHash(HASH);
+        when(attachmentRepository.findById(1L)).thenReturn(Optional.of(testAttachment));
+
+        // When
+        fileService.deleteAttachment(1L);
+
+        // Then
+        verify(attachmentRepository).deleteById(1L);
+        verify(attachmentStore).release(HASH);
     }
     
     @Test
@@ -0,0 +1,130 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.systemcontrol.backend.service.AttachmentStore;
+import com.systemcontrol.backend.service.ImageVariant;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class ImageDerivativeIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Autowired
+    private AttachmentStore attachmentStore;
+
+    @Test
+    void imageUpload_ShouldGetThumbnailAndWebDerivatives() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long defectId = createDefect(auth, createProject(auth));
+        byte[] png = photo(3000, 2000);
+
+        JsonNode attachment = upload(auth, defectId, png, "site.png", MediaType.IMAGE_PNG);
+        long id = attachment.get("id").asLong();
+        String hash = attachment.get("contentHash").asText();
+
+        JsonNode info = awaitPreview(auth, id);
+        assertEquals("READY", info.get("status").asText());
+        assertEquals(3000, info.get("width").asInt());
+        assertEquals(2000, info.get("height").asInt());
+
+        ResponseEntity<byte[]> thumb = getBytes("/api/attachments/" + id + "/derivatives/thumb", auth);
+        assertEquals(HttpStatus.OK, thumb.getStatusCode());
+        assertEquals(MediaType.IMAGE_JPEG, thumb.getHeaders().getContentType());
+        assertEquals("\"" + hash + "-thumb\"", thumb.getHeaders().getETag());
+        BufferedImage thumbImage = ImageIO.read(new ByteArrayInputStream(thumb.getBody()));
+        assertEquals(256, thumbImage.getWidth());
+        assertEquals(171, thumbImage.getHeight());
+        // a list view costs a tiny fraction of the original
+        assertTrue(thumb.getBody().length * 50 < png.length, "thumb is " + thumb.getBody().length + " bytes");
+
+        BufferedImage webImage = ImageIO.read(new ByteArrayInputStream(getBytes("/api/attachments/" + id + "/derivatives/web", auth).getBody()));
+        assertEquals(1600, webImage.getWidth());
+
+        assertEquals(HttpStatus.NOT_FOUND, getBytes("/api/attachments/" + id + "/derivatives/huge", auth).getStatusCode());
+
+        // derivatives go away with the content
+        Path thumbFile = attachmentStore.derivativePath(hash, ImageVariant.THUMB);
+        assertTrue(Files.exists(thumbFile));
+        restTemplate.exchange(baseUrl("/api/attachments/" + id), HttpMethod.DELETE, new HttpEntity<>(auth), String.class);
+        assertFalse(Files.exists(thumbFile));
+    }
+
+    @Test
+    void nonImageUpload_ShouldHaveNoPreview() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long defectId = createDefect(auth, createProject(auth));
+        byte[] text = ("site report " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+
+        long id = upload(auth, defectId, text, "report.txt", MediaType.TEXT_PLAIN).get("id").asLong();
+
+        assertEquals(HttpStatus.NOT_FOUND, getBytes("/api/attachments/" + id + "/image", auth).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, getBytes("/api/attachments/" + id + "/derivatives/thumb", auth).getStatusCode());
+    }
+
+    private JsonNode awaitPreview(HttpHeaders auth, long id) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            ResponseEntity<String> resp = restTemplate.exchange(baseUrl("/api/attachments/" + id + "/image"), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+            assertEquals(HttpStatus.OK, resp.getStatusCode());
+            JsonNode info = mapper.readTree(resp.getBody());
+            if (!"PENDING".equals(info.get("status").asText()) || System.currentTimeMillis() > deadline) {
+                return info;
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    // noisy content compresses poorly, like a real camera photo
+    private static byte[] photo(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(System.nanoTime());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, ((x * 255 / width) << 16) | ((y * 255 / height) << 8) | random.nextInt(64));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private ResponseEntity<byte[]> getBytes(String path, HttpHeaders auth) {
+        return restTemplate.exchange(baseUrl(path), HttpMethod.GET, new HttpEntity<>(auth), byte[].class);
+    }
+
+    private JsonNode upload(HttpHeaders auth, long defectId, byte[] content, String name, MediaType type) throws Exception {
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(type);
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("file", new HttpEntity<>(new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return name;
+            }
+        }, partHeaders));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", auth.getFirst("Authorization"));
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/attachments/upload/" + defectId), new HttpEntity<>(form, headers), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        return mapper.readTree(resp.getBody());
+    }
+}
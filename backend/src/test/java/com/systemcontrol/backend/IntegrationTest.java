@@ -1,30 +1,15 @@
 package com.systemcontrol.backend;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.UUID;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.*;
 
-import org.springframework.boot.test.web.client.TestRestTemplate;
-
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @org.springframework.test.context.ActiveProfiles("test")
-public class IntegrationTest {
-
-    @LocalServerPort
-    private int port;
-
-    @Autowired
-    private TestRestTemplate restTemplate;
-
-    private final ObjectMapper mapper = new ObjectMapper();
-
-    private String baseUrl(String path) { return "http://localhost:" + port + path; }
+public class IntegrationTest extends AbstractApiIntegrationTest {
 
     @Test
     void fullFlow_register_login_createProject_createDefect() throws Exception {
@@ -64,10 +49,4 @@ public class IntegrationTest {
     
     Assertions.assertEquals(HttpStatus.BAD_REQUEST, badResp.getStatusCode());
     }
-
-    private HttpHeaders jsonHeaders() {
-        HttpHeaders h = new HttpHeaders();
-        h.setContentType(MediaType.APPLICATION_JSON);
-        return h;
-    }
 }
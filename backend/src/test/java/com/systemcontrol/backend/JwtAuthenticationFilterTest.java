@@ -0,0 +1,108 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.security.CaffeineUserCache;
+import com.systemcontrol.backend.model.Role;
+import com.systemcontrol.backend.security.JwtAuthenticationFilter;
+import com.systemcontrol.backend.security.JwtUserDetails;
+import com.systemcontrol.backend.security.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    private final JwtUtil jwtUtil = new JwtUtil("test-secret", 60_000);
+    private final CaffeineUserCache userCache = new CaffeineUserCache(100, Duration.ofMinutes(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_ShouldLoadUserOnceAndServeFromCache() throws Exception {
+        // Given
+        when(userDetailsService.loadUserByUsername("engineer"))
+            .thenReturn(new User("engineer", "x", List.of(new SimpleGrantedAuthority("ROLE_ENGINEER"))));
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, userCache, meterRegistry);
+        String token = jwtUtil.generateToken("engineer");
+
+        // When
+        authenticate(filter, token);
+        authenticate(filter, token);
+
+        // Then
+        verify(userDetailsService, times(1)).loadUserByUsername("engineer");
+        assertEquals(1, userCache.stats().hitCount());
+
+        // explicit invalidation (role change) forces a reload
+        userCache.removeUserFromCache("engineer");
+        authenticate(filter, token);
+        verify(userDetailsService, times(2)).loadUserByUsername("engineer");
+    }
+
+    @Test
+    void doFilter_WithEmbeddedClaims_ShouldNotLoadUser() throws Exception {
+        // Given
+        JwtUtil claimsJwtUtil = new JwtUtil("test-secret", 60_000, true);
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(claimsJwtUtil, userDetailsService, userCache, meterRegistry);
+        String token = claimsJwtUtil.generateToken("engineer", 7L, Role.ROLE_ENGINEER);
+
+        // When
+        authenticate(filter, token);
+
+        // Then
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_ENGINEER")), List.copyOf(auth.getAuthorities()));
+        assertEquals(7L, ((JwtUserDetails) auth.getPrincipal()).getId());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void doFilter_WithTamperedToken_ShouldNotAuthenticate() throws Exception {
+        // Given
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, userCache, meterRegistry);
+        String token = new JwtUtil("other-secret", 60_000).generateToken("engineer");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/defects");
+        request.addHeader("Authorization", "Bearer " + token);
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userDetailsService);
+        assertEquals(1, meterRegistry.get("security.jwt.verification").tag("outcome", "invalid").timer().count());
+        assertEquals(0, meterRegistry.get("security.jwt.verification").tag("outcome", "valid").timer().count());
+    }
+
+    private void authenticate(JwtAuthenticationFilter filter, String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/defects");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        assertEquals("engineer", SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+}
@@ -0,0 +1,81 @@
+package com.systemcontrol.backend;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureObservability(tracing = false)
+public class MetricsIntegrationTest extends AbstractApiIntegrationTest {
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void prometheus_ShouldExposeRequestServiceRepositoryAndExportMetrics() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth);
+        long defectId = createDefect(auth, projectId);
+
+        ResponseEntity<String> next = restTemplate.exchange(baseUrl("/api/defects/" + defectId + "/next-status"), HttpMethod.PUT,
+            new HttpEntity<>("{\"userId\":1}", auth), String.class);
+        assertEquals(HttpStatus.OK, next.getStatusCode());
+        ResponseEntity<byte[]> export = restTemplate.exchange(baseUrl("/api/reports/defects/export?projectId=" + projectId), HttpMethod.GET,
+            new HttpEntity<>(auth), byte[].class);
+        assertEquals(HttpStatus.OK, export.getStatusCode());
+
+        // the scrape is unauthenticated, but only on the management port
+        ResponseEntity<String> resp = restTemplate.getForEntity(managementUrl("/actuator/prometheus"), String.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        String body = resp.getBody();
+
+        // controllers: templated uri, never the concrete id
+        assertTrue(body.contains("http_server_requests_seconds_bucket{"), "request histogram");
+        assertTrue(body.contains("uri=\"/api/defects/{id}/next-status\""), "templated uri tag");
+        assertTrue(body.lines().filter(l -> l.startsWith("http_server_")).noneMatch(l -> l.contains("/api/defects/" + defectId + "/")),
+            "raw path in a server tag");
+
+        assertTrue(body.contains("defects_transitions_seconds_count{") && body.contains("operation=\"next\""), "transition timer");
+        assertTrue(body.contains("spring_data_repository_invocations_seconds_count{"), "repository timer");
+        assertTrue(body.contains("security_jwt_verification_seconds_count{"), "jwt timer");
+        assertTrue(body.contains("reports_export_rows_total{"), "export rows");
+        assertTrue(body.contains("reports_export_bytes_sum{"), "export bytes");
+        assertTrue(body.contains("hikaricp_connections_active{"), "pool gauge");
+        assertTrue(body.contains("cache_gets_total{") && body.contains("cache=\"users\""), "user cache");
+
+        // the export was measured with its real size
+        double bytes = sample(body, "reports_export_bytes_sum{", "report=\"defects\"");
+        assertTrue(bytes >= export.getBody().length, "bytes " + bytes);
+    }
+
+    @Test
+    void actuator_ShouldNotBeReachableOnApplicationPort() throws Exception {
+        assertEquals(HttpStatus.FORBIDDEN, restTemplate.getForEntity(baseUrl("/actuator/prometheus"), String.class).getStatusCode());
+        // even with a token the path is not mapped on this port
+        ResponseEntity<String> withToken = restTemplate.exchange(baseUrl("/actuator/prometheus"), HttpMethod.GET,
+            new HttpEntity<>(adminHeaders()), String.class);
+        assertFalse(withToken.getStatusCode().is2xxSuccessful());
+        assertFalse(String.valueOf(withToken.getBody()).contains("http_server_requests"));
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity(managementUrl("/actuator/health"), String.class).getStatusCode());
+    }
+
+    private String managementUrl(String path) {
+        return "http://localhost:" + managementPort + path;
+    }
+
+    private static double sample(String body, String prefix, String tag) {
+        for (String line : body.split("\n")) {
+            if (line.startsWith(prefix) && line.contains(tag)) {
+                return Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+            }
+        }
+        fail("no sample " + prefix + " " + tag);
+        return 0;
+    }
+}
@@ -0,0 +1,70 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.config.PoolAwareDataSource;
+import com.systemcontrol.backend.exception.ConnectionLimitExceededException;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PoolAwareDataSourceTest {
+
+    @Mock
+    private HikariDataSource hikari;
+
+    @Mock
+    private HikariPoolMXBean pool;
+
+    @Mock
+    private Connection connection;
+
+    @Test
+    void getConnection_WhenWaitersBelowLimit_ShouldWaitInPool() throws Exception {
+        // Given
+        when(hikari.getHikariPoolMXBean()).thenReturn(pool);
+        when(hikari.getConnection()).thenReturn(connection);
+        when(pool.getIdleConnections()).thenReturn(0);
+        when(pool.getThreadsAwaitingConnection()).thenReturn(39);
+        PoolAwareDataSource dataSource = new PoolAwareDataSource(hikari, 40);
+
+        // When / Then
+        assertSame(connection, dataSource.getConnection());
+        assertEquals(0, dataSource.getRejectedCount());
+    }
+
+    @Test
+    void getConnection_WhenQueueIsFull_ShouldRejectWithoutWaiting() throws Exception {
+        // Given
+        when(hikari.getHikariPoolMXBean()).thenReturn(pool);
+        when(pool.getIdleConnections()).thenReturn(0);
+        when(pool.getThreadsAwaitingConnection()).thenReturn(40);
+        PoolAwareDataSource dataSource = new PoolAwareDataSource(hikari, 40);
+
+        // When / Then
+        assertThrows(ConnectionLimitExceededException.class, dataSource::getConnection);
+        assertEquals(1, dataSource.getRejectedCount());
+        verify(hikari, never()).getConnection();
+    }
+
+    @Test
+    void getConnection_BeforePoolStarted_ShouldPassThrough() throws Exception {
+        // Given
+        when(hikari.getHikariPoolMXBean()).thenReturn(null);
+        when(hikari.getConnection()).thenReturn(connection);
+        PoolAwareDataSource dataSource = new PoolAwareDataSource(hikari, 0);
+
+        // When / Then
+        assertSame(connection, dataSource.getConnection());
+    }
+}
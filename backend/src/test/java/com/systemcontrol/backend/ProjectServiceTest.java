@@ -2,7 +2,9 @@ package com.systemcontrol.backend;
 
 import com.systemcontrol.backend.model.Project;
 import com.systemcontrol.backend.repository.ProjectRepository;
+import com.systemcontrol.backend.service.DefectStatsService;
 import com.systemcontrol.backend.service.ProjectService;
+import com.systemcontrol.backend.service.ResourceVersions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -25,6 +27,12 @@ class ProjectServiceTest {
 
     @Mock
     private ProjectRepository projectRepository;
+
+    @Mock
+    private DefectStatsService defectStats;
+
+    @Mock
+    private ResourceVersions resourceVersions;
     
     @InjectMocks
     private ProjectService projectService;
@@ -54,6 +62,7 @@ class ProjectServiceTest {
         assertEquals(testProject.getName(), result.getName());
         assertEquals(testProject.getDescription(), result.getDescription());
         verify(projectRepository).save(testProject);
+        verify(defectStats).initialize(testProject.getId());
     }
     
     @Test
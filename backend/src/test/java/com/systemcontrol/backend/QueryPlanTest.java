@@ -0,0 +1,245 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.dto.DefectFilter;
+import com.systemcontrol.backend.dto.DefectPage;
+import com.systemcontrol.backend.model.Comment;
+import com.systemcontrol.backend.model.Defect;
+import com.systemcontrol.backend.model.DefectStatus;
+import com.systemcontrol.backend.model.Priority;
+import com.systemcontrol.backend.model.Project;
+import com.systemcontrol.backend.repository.CommentRepository;
+import com.systemcontrol.backend.repository.DefectRepository;
+import com.systemcontrol.backend.repository.ProjectRepository;
+import com.systemcontrol.backend.service.DefectService;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.ChainListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Планы запросов к дефектам: каждый выборочный запрос репозиториев должен идти по индексу, а не полным сканированием.
+ * <p>
+ * Запросы перехватываются такими, какими их строит Hibernate, и прогоняются через {@code EXPLAIN} с теми же параметрами
+ * на засеянной отдельной базе. Полные выборки (экспорт всех дефектов, общая аналитика) сюда не входят.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:queryplans;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE")
+@ActiveProfiles("test")
+public class QueryPlanTest {
+
+    private static final int PROJECTS = 20;
+    private static final int ASSIGNEES = 50;
+    private static final int DEFECTS = 2000;
+
+    // H2 notes each table access as /* schema.index: condition */ or /* schema.table.tableScan */
+    private static final Pattern ACCESS = Pattern.compile("/\\* ([\\w.]+?)(?:: ([^*]+))? \\*/");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private DefectRepository defectRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private DefectService defectService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<QueryInfo> captured = Collections.synchronizedList(new ArrayList<>());
+    private final QueryExecutionListener capture = new QueryExecutionListener() {
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            captured.addAll(queryInfoList);
+        }
+    };
+
+    private static List<Long> projectIds;
+    private static long defectId;
+
+    @BeforeEach
+    void seedAndCapture() {
+        if (projectIds == null) seed();
+        listeners().addListener(capture);
+    }
+
+    @AfterEach
+    void stopCapture() {
+        listeners().getListeners().remove(capture);
+    }
+
+    @Test
+    void defectLookups_ShouldUseIndexes() throws Exception {
+        long projectId = projectIds.get(3);
+
+        assertIndexed("findByProjectId", () -> defectRepository.findByProjectId(projectId));
+        assertIndexed("findByAssigneeId", () -> defectRepository.findByAssigneeId(7L));
+        assertIndexed("countByStatusAndPriority(projectId)", () -> defectRepository.countByStatusAndPriority(projectId));
+        assertIndexed("streamByProjectId", () -> transactionTemplate.execute(s -> {
+            try (var defects = defectRepository.streamByProjectId(projectId)) {
+                return defects.count();
+            }
+        }));
+        assertIndexed("findById", () -> defectRepository.findById(defectId));
+        assertIndexed("comments of a defect", () -> commentRepository.findByDefectIdOrderByCreatedAtAsc(defectId));
+    }
+
+    @Test
+    void defectPages_ShouldUseIndexes() throws Exception {
+        DefectFilter byProject = new DefectFilter();
+        byProject.setProjectId(projectIds.get(5));
+        assertIndexed("project page by updatedAt", () -> defectService.listPage(byProject, DefectService.SORT_UPDATED_AT, null, 50));
+        DefectPage first = defectService.listPage(byProject, DefectService.SORT_ID, null, 50);
+        assertIndexed("project page by id, next page", () -> defectService.listPage(byProject, DefectService.SORT_ID, first.getNextCursor(), 50));
+
+        DefectFilter byAssignee = new DefectFilter();
+        byAssignee.setAssigneeId(11L);
+        assertIndexed("assignee page by updatedAt", () -> defectService.listPage(byAssignee, DefectService.SORT_UPDATED_AT, null, 50));
+
+        DefectFilter recent = new DefectFilter();
+        recent.setUpdatedSince(Instant.now().minus(1, ChronoUnit.HOURS));
+        assertIndexed("changed since", () -> defectService.listPage(recent, DefectService.SORT_UPDATED_AT, null, 50));
+    }
+
+    @Test
+    void migrationIndexes_ShouldBeMirroredInEntities() throws Exception {
+        String migration;
+        try (var in = getClass().getResourceAsStream("/db/migration/V15__defect_access_indexes.sql")) {
+            assertNotNull(in, "V15 migration not on the classpath");
+            migration = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Pattern create = Pattern.compile("CREATE INDEX CONCURRENTLY (\\w+) ON");
+        List<String> expected = new ArrayList<>();
+        for (String statement : migration.replaceAll("--[^\n]*", "").split(";")) {
+            Matcher index = create.matcher(statement);
+            // partial indexes exist only in PostgreSQL
+            if (index.find() && !statement.contains(" WHERE ")) expected.add(index.group(1));
+        }
+        assertFalse(expected.isEmpty());
+
+        List<String> present = new ArrayList<>();
+        try (Connection c = dataSource.getConnection();
+             ResultSet rs = c.createStatement().executeQuery("SELECT index_name FROM information_schema.indexes")) {
+            while (rs.next()) present.add(rs.getString(1).toLowerCase());
+        }
+        for (String name : expected) {
+            assertTrue(present.contains(name), name + " is in V15 but not in the entity mapping");
+        }
+    }
+
+    private void assertIndexed(String what, StatementCountExtension.ThrowingSupplier<?> query) throws Exception {
+        captured.clear();
+        query.get();
+        List<QueryInfo> selects = new ArrayList<>();
+        synchronized (captured) {
+            for (QueryInfo q : captured) {
+                if (q.getQuery().trim().toLowerCase().startsWith("select")) selects.add(q);
+            }
+        }
+        assertFalse(selects.isEmpty(), what + ": no SELECT captured");
+        for (QueryInfo select : selects) {
+            String plan = explain(select);
+            Matcher access = ACCESS.matcher(plan);
+            boolean any = false;
+            while (access.find()) {
+                any = true;
+                String source = access.group(1);
+                assertFalse(source.endsWith(".tableScan"), what + " scans a whole table:\n" + plan);
+                // an index walked end to end only for its order is a full scan as well
+                assertNotNull(access.group(2), what + " reads all of " + source + ":\n" + plan);
+            }
+            assertTrue(any, what + ": no table access in plan:\n" + plan);
+        }
+    }
+
+    private String explain(QueryInfo query) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement("EXPLAIN " + query.getQuery())) {
+            // replay the driver calls Hibernate made to bind the parameters
+            if (!query.getParametersList().isEmpty()) {
+                for (ParameterSetOperation op : query.getParametersList().get(0)) {
+                    op.getMethod().invoke(ps, op.getArgs());
+                }
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) plan.append(rs.getString(1)).append('\n');
+                return plan.toString();
+            }
+        }
+    }
+
+    private ChainListener listeners() {
+        assertInstanceOf(ProxyDataSource.class, dataSource, "statement counting proxy is off");
+        return ((ProxyDataSource) dataSource).getProxyConfig().getQueryListener();
+    }
+
+    private void seed() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < PROJECTS; i++) {
+            Project p = new Project();
+            p.setName("Объект " + i);
+            ids.add(projectRepository.save(p).getId());
+        }
+        DefectStatus[] statuses = DefectStatus.values();
+        Priority[] priorities = Priority.values();
+        Instant now = Instant.now();
+        List<Defect> defects = new ArrayList<>(DEFECTS);
+        for (int i = 0; i < DEFECTS; i++) {
+            Defect d = new Defect();
+            d.setTitle("Дефект " + i);
+            d.setProjectId(ids.get(i % PROJECTS));
+            d.setAssigneeId(1L + i % ASSIGNEES);
+            d.setStatus(statuses[i % statuses.length]);
+            d.setPriority(priorities[i % priorities.length]);
+            d.setDueDate(now.plus(i % 90, ChronoUnit.DAYS));
+            // most defects were last touched long ago
+            d.setUpdatedAt(now.minus(DEFECTS - i, ChronoUnit.HOURS));
+            defects.add(d);
+        }
+        defectId = defectRepository.saveAll(defects).get(DEFECTS / 2).getId();
+        List<Comment> comments = new ArrayList<>();
+        for (int i = 0; i < DEFECTS; i++) {
+            Comment c = new Comment();
+            c.setContent("Комментарий " + i);
+            c.setDefectId(defects.get(i % DEFECTS).getId());
+            c.setAuthorId(1L);
+            comments.add(c);
+        }
+        commentRepository.saveAll(comments);
+        projectIds = ids;
+    }
+}
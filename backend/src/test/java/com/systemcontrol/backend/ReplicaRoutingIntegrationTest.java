@@ -0,0 +1,176 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.config.ReplicaRoutingDataSource;
+import com.systemcontrol.backend.model.Project;
+import com.systemcontrol.backend.service.ProjectService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Чтение с реплики на двух базах H2: «реплика» — отдельная база, в которую ничего не реплицируется,
+ * так что по данным видно, где выполнилось чтение.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+    "app.datasource.replica.urls=" + ReplicaRoutingIntegrationTest.REPLICA_URL,
+    "app.datasource.replica.username=sa",
+    "app.datasource.replica.password=",
+    "app.datasource.replica.lag-query=SELECT seconds FROM replica_lag",
+    "app.datasource.replica.max-lag=PT5S",
+    "app.datasource.replica.sticky-for=PT1M",
+    // checked explicitly by the tests
+    "app.datasource.replica.check-interval=PT1H"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReplicaRoutingIntegrationTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private ReplicaRoutingDataSource router;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        router = ReplicaRoutingDataSource.find(dataSource);
+        assertNotNull(router, "replica routing is off");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS routing_marker (name VARCHAR(20))");
+        jdbcTemplate.execute("MERGE INTO routing_marker KEY (name) VALUES ('primary')");
+        // the projects table as the primary has it, without rows: nothing is replicated
+        List<String> projectsDdl = jdbcTemplate.queryForList("SCRIPT NODATA NOSETTINGS TABLE projects", String.class);
+        try (Connection c = DriverManager.getConnection(REPLICA_URL, "sa", ""); Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS routing_marker (name VARCHAR(20))");
+            st.execute("MERGE INTO routing_marker KEY (name) VALUES ('replica')");
+            st.execute("CREATE TABLE IF NOT EXISTS replica_lag (seconds DOUBLE PRECISION)");
+            st.execute("DELETE FROM replica_lag");
+            st.execute("INSERT INTO replica_lag VALUES (0)");
+            st.execute("DROP TABLE IF EXISTS projects");
+            for (String ddl : projectsDdl) {
+                if (ddl.startsWith("CREATE") && ddl.contains(" TABLE ")) st.execute(ddl);
+            }
+        }
+        router.checkLag();
+    }
+
+    @AfterEach
+    void clearUser() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldBeServedByReplica() {
+        assertEquals("replica", marker(true));
+        assertEquals("primary", marker(false));
+        assertTrue(router.getReplicas().get(0).isAvailable());
+    }
+
+    @Test
+    void laggingReplica_ShouldBeSkippedUntilItCatchesUp() throws Exception {
+        setReplicaLag(60);
+        router.checkLag();
+        assertFalse(router.getReplicas().get(0).isAvailable());
+        assertEquals(60.0, router.getReplicas().get(0).getLagSeconds());
+        assertEquals("primary", marker(true));
+
+        setReplicaLag(1);
+        router.checkLag();
+        assertEquals("replica", marker(true));
+    }
+
+    @Test
+    void userWhoJustWrote_ShouldReadFromPrimary() {
+        signIn("writer");
+        Project project = new Project();
+        project.setName("Replica routing");
+        long id = projectService.create(project).getId();
+
+        // the writer sees the project at once
+        assertNotNull(projectService.get(id));
+
+        // the replica does not have it yet, and that is where everyone else reads
+        signIn("reader");
+        assertNull(projectService.get(id));
+        SecurityContextHolder.clearContext();
+        assertNull(projectService.get(id));
+    }
+
+    @Test
+    void writeAfterReadInOneRequest_ShouldGoToPrimary() throws Exception {
+        signIn("creator");
+        Project project = new Project();
+        project.setName("Before edit");
+        long id = projectService.create(project).getId();
+        SecurityContextHolder.clearContext();
+        // replicated by hand, so the read at the start of the request finds the project on the replica
+        try (Connection c = DriverManager.getConnection(REPLICA_URL, "sa", ""); Statement st = c.createStatement()) {
+            st.execute("INSERT INTO projects (id, name) VALUES (" + id + ", 'Before edit')");
+        }
+
+        // PUT reads the project (read-only, replica) and then updates it (primary) in the same request
+        mockMvc.perform(put("/api/projects/" + id)
+                .with(user("editor").authorities(() -> "ROLE_MANAGER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"After edit\"}"))
+            .andExpect(status().isOk());
+
+        assertEquals("After edit", jdbcTemplate.queryForObject("SELECT name FROM projects WHERE id = ?", String.class, id));
+        try (Connection c = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             var rs = c.createStatement().executeQuery("SELECT name FROM projects WHERE id = " + id)) {
+            assertTrue(rs.next());
+            assertEquals("Before edit", rs.getString(1));
+        }
+    }
+
+    private String marker(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(s -> jdbcTemplate.queryForObject("SELECT name FROM routing_marker", String.class));
+    }
+
+    private static void setReplicaLag(double seconds) throws Exception {
+        try (Connection c = DriverManager.getConnection(REPLICA_URL, "sa", ""); Statement st = c.createStatement()) {
+            st.execute("UPDATE replica_lag SET seconds = " + seconds);
+        }
+    }
+
+    private static void signIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
@@ -0,0 +1,126 @@
+package com.systemcontrol.backend;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.systemcontrol.backend.service.ReportExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class ReportExportIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Autowired
+    private ReportExportService reportExportService;
+
+    @Test
+    void exportDefects_ShouldStreamWorkbookForProject() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth, "Export Project");
+        for (int i = 0; i < 3; i++) {
+            String defectJson = String.format("{\"title\":\"Export Defect %d\",\"description\":\"a, \\\"quoted\\\" text\",\"projectId\":%d}", i, projectId);
+            ResponseEntity<String> resp = restTemplate.postForEntity(baseUrl("/api/defects"), new HttpEntity<>(defectJson, auth), String.class);
+            assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        }
+
+        ResponseEntity<byte[]> exportResp = restTemplate.exchange(
+            baseUrl("/api/reports/defects/export?projectId=" + projectId),
+            HttpMethod.GET,
+            new HttpEntity<>(auth),
+            byte[].class
+        );
+        assertEquals(HttpStatus.OK, exportResp.getStatusCode());
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(exportResp.getBody()))) {
+            Sheet sheet = workbook.getSheet("Defects Report");
+            assertNotNull(sheet);
+            assertEquals("ID", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(3, sheet.getLastRowNum());
+            assertEquals("Export Defect 0", sheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("a, \"quoted\" text", sheet.getRow(1).getCell(2).getStringCellValue());
+            assertEquals(String.valueOf(projectId), sheet.getRow(3).getCell(6).getStringCellValue());
+        }
+    }
+
+    @Test
+    void exportFull_ShouldContainProjectsAndDefectsSheets() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        createProject(auth, "Full Export Project");
+
+        ResponseEntity<byte[]> exportResp = restTemplate.exchange(
+            baseUrl("/api/reports/full/export"),
+            HttpMethod.GET,
+            new HttpEntity<>(auth),
+            byte[].class
+        );
+        assertEquals(HttpStatus.OK, exportResp.getStatusCode());
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(exportResp.getBody()))) {
+            assertNotNull(workbook.getSheet("Projects"));
+            assertNotNull(workbook.getSheet("Defects"));
+            assertTrue(workbook.getSheet("Projects").getLastRowNum() >= 1);
+        }
+    }
+
+    @Test
+    void exportWorkbook_ShouldReleaseConnectionBeforeWritingToClient() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth, "Released Export Project");
+        createDefect(auth, projectId, "Released defect");
+
+        ByteArrayOutputStream client = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                // no transaction, no bound connection or EntityManager while the client is written to
+                assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+                assertTrue(TransactionSynchronizationManager.getResourceMap().isEmpty());
+                super.write(b, off, len);
+            }
+        };
+        assertEquals(1, reportExportService.writeDefectsWorkbook(projectId, client));
+        assertTrue(reportExportService.writeFullWorkbook(client) >= 1);
+        assertTrue(client.size() > 0);
+    }
+
+    @Test
+    void exportDefectsCsv_ShouldStreamEscapedRowsAndGzipOnRequest() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long projectId = createProject(auth, "Csv Export Project");
+        String defectJson = String.format("{\"title\":\"Csv Defect\",\"description\":\"a, \\\"quoted\\\" text\",\"projectId\":%d}", projectId);
+        assertEquals(HttpStatus.CREATED, restTemplate.postForEntity(baseUrl("/api/defects"), new HttpEntity<>(defectJson, auth), String.class).getStatusCode());
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl("/api/reports/defects/export.csv?projectId=" + projectId)))
+            .header("Authorization", auth.getFirst("Authorization"));
+
+        HttpResponse<String> plain = client.send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, plain.statusCode());
+        assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+        String[] lines = plain.body().split("\n");
+        assertEquals("id,title,description,priority,status,assigneeId,projectId,dueDate,createdAt,updatedAt", lines[0]);
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].contains(",Csv Defect,\"a, \"\"quoted\"\" text\",MEDIUM,NEW,," + projectId + ","), lines[1]);
+
+        HttpResponse<byte[]> gzipped = client.send(request.header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, gzipped.statusCode());
+        assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))) {
+            assertEquals(plain.body(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
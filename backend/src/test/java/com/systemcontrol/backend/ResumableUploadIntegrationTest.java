@@ -0,0 +1,165 @@
+package com.systemcontrol.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.systemcontrol.backend.model.UploadSession;
+import com.systemcontrol.backend.repository.UploadSessionRepository;
+import com.systemcontrol.backend.service.AttachmentStore;
+import com.systemcontrol.backend.service.UploadSessionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class ResumableUploadIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Autowired
+    private UploadSessionRepository sessionRepository;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private AttachmentStore attachmentStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void chunkedUpload_ShouldResumeFromAcceptedOffsetAndCreateAttachment() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long defectId = createDefect(auth, createProject(auth));
+        byte[] content = new byte[200_000];
+        for (int i = 0; i < content.length; i++) content[i] = (byte) (i * 31);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        String id = createUpload(auth, defectId, content.length);
+
+        HttpResponse<String> first = patch(auth, id, 0, Arrays.copyOfRange(content, 0, 120_000));
+        assertEquals(200, first.statusCode());
+        assertEquals("120000", first.headers().firstValue("Upload-Offset").orElseThrow());
+
+        // the client lost the response and retries from a stale offset
+        assertEquals(409, patch(auth, id, 0, Arrays.copyOfRange(content, 0, 120_000)).statusCode());
+        // finalize before all bytes arrived is refused
+        assertEquals(HttpStatus.CONFLICT, post("/api/attachments/uploads/" + id + "/complete", "", auth).getStatusCode());
+
+        ResponseEntity<String> status = restTemplate.exchange(baseUrl("/api/attachments/uploads/" + id), HttpMethod.GET, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.OK, status.getStatusCode());
+        long offset = mapper.readTree(status.getBody()).get("offset").asLong();
+        assertEquals(120_000, offset);
+
+        assertEquals(200, patch(auth, id, offset, Arrays.copyOfRange(content, (int) offset, content.length)).statusCode());
+
+        ResponseEntity<String> done = post("/api/attachments/uploads/" + id + "/complete", "", auth);
+        assertEquals(HttpStatus.OK, done.getStatusCode());
+        JsonNode attachment = mapper.readTree(done.getBody());
+        assertEquals(hash, attachment.get("contentHash").asText());
+        assertEquals(content.length, attachment.get("fileSize").asLong());
+        assertEquals("drawings.pdf", attachment.get("originalFileName").asText());
+        assertArrayEquals(content, Files.readAllBytes(Path.of(attachment.get("filePath").asText())));
+
+        // the session and its part file are gone
+        assertFalse(sessionRepository.existsById(id));
+        assertFalse(Files.exists(attachmentStore.partFile(id)));
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.exchange(baseUrl("/api/attachments/uploads/" + id), HttpMethod.GET, new HttpEntity<>(auth), String.class).getStatusCode());
+    }
+
+    @Test
+    void chunkBeyondDeclaredSize_ShouldBeRejectedWithoutKeepingBytes() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long defectId = createDefect(auth, createProject(auth));
+        String id = createUpload(auth, defectId, 10);
+
+        assertEquals(413, patch(auth, id, 0, "0123456789ABC".getBytes(StandardCharsets.UTF_8)).statusCode());
+        assertEquals(0, Files.size(attachmentStore.partFile(id)));
+    }
+
+    @Test
+    void expiredUpload_ShouldBeRemoved() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long defectId = createDefect(auth, createProject(auth));
+        String id = createUpload(auth, defectId, 100);
+        assertEquals(200, patch(auth, id, 0, new byte[40]).statusCode());
+
+        UploadSession session = sessionRepository.findById(id).orElseThrow();
+        session.setExpiresAt(Instant.now().minusSeconds(1));
+        sessionRepository.save(session);
+        uploadSessionService.removeExpired();
+
+        assertFalse(sessionRepository.existsById(id));
+        assertFalse(Files.exists(attachmentStore.partFile(id)));
+    }
+
+    @Test
+    void failedComplete_ShouldRemoveSessionInsteadOfLeavingItWithoutData() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long defectId = createDefect(auth, createProject(auth));
+        String id = uploadSessionService.create(defectId, "rejected.pdf", "application/pdf", 4, "admin").getId();
+        assertEquals(200, patch(auth, id, 0, new byte[4]).statusCode());
+
+        jdbcTemplate.execute("ALTER TABLE attachments ADD CONSTRAINT upload_test_reject CHECK (original_file_name <> 'rejected.pdf')");
+        try {
+            assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, post("/api/attachments/uploads/" + id + "/complete", "", auth).getStatusCode());
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE attachments DROP CONSTRAINT upload_test_reject");
+        }
+
+        assertFalse(sessionRepository.existsById(id));
+        assertEquals(404, patch(auth, id, 4, new byte[1]).statusCode());
+    }
+
+    @Test
+    void missingPartFile_ShouldAnswer404() throws Exception {
+        HttpHeaders auth = adminHeaders();
+        long defectId = createDefect(auth, createProject(auth));
+        String id = createUpload(auth, defectId, 10);
+        Files.delete(attachmentStore.partFile(id));
+
+        HttpResponse<String> resp = patch(auth, id, 0, new byte[5]);
+        assertEquals(404, resp.statusCode());
+        assertTrue(resp.body().contains("start a new upload"), resp.body());
+        assertFalse(sessionRepository.existsById(id));
+    }
+
+    private String createUpload(HttpHeaders auth, long defectId, long size) throws Exception {
+        String json = String.format("{\"defectId\":%d,\"fileName\":\"drawings.pdf\",\"contentType\":\"application/pdf\",\"size\":%d}", defectId, size);
+        ResponseEntity<String> resp = post("/api/attachments/uploads", json, auth);
+        assertEquals(HttpStatus.CREATED, resp.getStatusCode());
+        assertEquals("0", resp.getHeaders().getFirst("Upload-Offset"));
+        return mapper.readTree(resp.getBody()).get("id").asText();
+    }
+
+    private HttpResponse<String> patch(HttpHeaders auth, String id, long offset, byte[] chunk) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl("/api/attachments/uploads/" + id)))
+            .header("Authorization", auth.getFirst("Authorization"))
+            .header("Content-Type", "application/offset+octet-stream")
+            .header("Upload-Offset", Long.toString(offset))
+            .method("PATCH", HttpRequest.BodyPublishers.ofByteArray(chunk))
+            .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private ResponseEntity<String> post(String path, String json, HttpHeaders auth) {
+        return restTemplate.postForEntity(baseUrl(path), new HttpEntity<>(json, auth), String.class);
+    }
+}
@@ -0,0 +1,66 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.config.StatementBudgetFilter;
+import com.systemcontrol.backend.config.StatementCounter;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Счёт SQL-обращений в тестах: рост числа запросов к БД роняет сборку.
+ * <p>
+ * Вызовы сервисов в потоке теста считаются областью {@link StatementCounter}, которую расширение открывает на каждый тест
+ * ({@code @RegisterExtension}). HTTP-запросы выполняются в потоках сервера, для них счёт берётся из заголовка
+ * {@link StatementBudgetFilter#HEADER} (включён в профиле test).
+ */
+public class StatementCountExtension implements BeforeEachCallback, AfterEachCallback {
+
+    private StatementCounter.Counts counts;
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        counts = StatementCounter.start();
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        if (counts != null) counts.close();
+        counts = null;
+    }
+
+    /**
+     * Выполняет {@code action} и проверяет, что он обратился к БД не более {@code max} раз.
+     */
+    public <T> T assertAtMost(int max, String what, ThrowingSupplier<T> action) throws Exception {
+        StatementCounter.Counts scope = StatementCounter.start();
+        try {
+            return action.get();
+        } finally {
+            scope.close();
+            assertTrue(scope.total() <= max, what + ": " + scope + " SQL statements, budget " + max);
+        }
+    }
+
+    /** Обращения к БД в потоке теста с начала теста. */
+    public int total() {
+        return counts.total();
+    }
+
+    /**
+     * Проверяет число обращений к БД, обслуживших HTTP-ответ.
+     */
+    public static void assertAtMost(int max, ResponseEntity<?> response, String what) {
+        String header = response.getHeaders().getFirst(StatementBudgetFilter.HEADER);
+        assertNotNull(header, what + ": no " + StatementBudgetFilter.HEADER + " header");
+        int statements = Integer.parseInt(header);
+        assertTrue(statements <= max, what + ": " + statements + " SQL statements, budget " + max);
+    }
+
+    @FunctionalInterface
+    public interface ThrowingSupplier<T> {
+        T get() throws Exception;
+    }
+}
@@ -0,0 +1,83 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.config.StatementBudgetFilter;
+import com.systemcontrol.backend.config.StatementCounter;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCounterTest {
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:statementcounter;DB_CLOSE_DELAY=-1");
+        dataSource = ProxyDataSourceBuilder.create(h2).listener(new StatementCounter()).build();
+        try (Connection c = dataSource.getConnection(); Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE IF NOT EXISTS item (id BIGINT PRIMARY KEY, name VARCHAR(50))");
+            s.execute("DELETE FROM item");
+        }
+    }
+
+    @Test
+    void counts_ShouldCountRoundTripsPerScopeWithBatchAsOne() throws Exception {
+        try (StatementCounter.Counts outer = StatementCounter.start()) {
+            try (Connection c = dataSource.getConnection()) {
+                try (PreparedStatement insert = c.prepareStatement("INSERT INTO item (id, name) VALUES (?, ?)")) {
+                    for (long i = 1; i <= 3; i++) {
+                        insert.setLong(1, i);
+                        insert.setString(2, "item " + i);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                try (StatementCounter.Counts inner = StatementCounter.start()) {
+                    // the N+1 shape: one lookup per row
+                    for (long i = 1; i <= 3; i++) {
+                        try (PreparedStatement select = c.prepareStatement("SELECT name FROM item WHERE id = ?")) {
+                            select.setLong(1, i);
+                            select.executeQuery().close();
+                        }
+                    }
+                    assertEquals(3, inner.total());
+                    assertEquals(3, inner.mostRepeatedSelect().getValue());
+                }
+                assertSame(outer, StatementCounter.current());
+            }
+            assertEquals(4, outer.total());
+            assertEquals(1, outer.count(QueryType.INSERT));
+            assertEquals(3, outer.count(QueryType.SELECT));
+        }
+        assertNull(StatementCounter.current());
+    }
+
+    @Test
+    void statements_OutsideScope_ShouldNotBeCounted() throws Exception {
+        try (Connection c = dataSource.getConnection(); Statement s = c.createStatement()) {
+            s.executeQuery("SELECT COUNT(*) FROM item").close();
+        }
+        assertNull(StatementCounter.current());
+    }
+
+    @Test
+    void budget_ShouldBindEndpointKeysWithSpacesAndTemplates() {
+        MockEnvironment env = new MockEnvironment()
+            .withProperty("app.sql.statements.budget.endpoints[PUT /api/defects/{id}]", "5");
+        StatementBudgetFilter filter = new StatementBudgetFilter(env, 25, 5, false);
+
+        assertEquals(5, filter.budget("PUT /api/defects/{id}"));
+        assertEquals(25, filter.budget("GET /api/projects"));
+    }
+}
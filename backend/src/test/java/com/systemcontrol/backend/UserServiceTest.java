@@ -3,6 +3,7 @@ package com.systemcontrol.backend;
 import com.systemcontrol.backend.model.Role;
 import com.systemcontrol.backend.model.User;
 import com.systemcontrol.backend.repository.UserRepository;
+import com.systemcontrol.backend.service.ResourceVersions;
 import com.systemcontrol.backend.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,6 +25,9 @@ class UserServiceTest {
 
     @Mock
     private UserRepository userRepository;
+
+    @Mock
+    private ResourceVersions resourceVersions;
     
     @InjectMocks
     private UserService userService;
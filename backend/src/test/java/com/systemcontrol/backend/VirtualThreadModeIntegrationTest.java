@@ -0,0 +1,51 @@
+package com.systemcontrol.backend;
+
+import com.systemcontrol.backend.config.PoolAwareDataSource;
+import com.systemcontrol.backend.config.VirtualThreadPinningMonitor;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// own in-memory database: a second create-drop context must not reset the schema shared by other tests
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.threads.virtual.enabled=true",
+    "spring.datasource.url=jdbc:h2:mem:virtualdb;DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE"
+})
+@ActiveProfiles("test")
+class VirtualThreadModeIntegrationTest extends AbstractApiIntegrationTest {
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private VirtualThreadPinningMonitor pinningMonitor;
+
+    @Test
+    void virtualMode_ShouldServeRequestsOnVirtualThreadsBehindPoolLimiter() throws Exception {
+        TomcatWebServer server = (TomcatWebServer) context.getWebServer();
+        assertInstanceOf(VirtualThreadExecutor.class, server.getTomcat().getConnector().getProtocolHandler().getExecutor());
+        // under the statement-counting proxy
+        PoolAwareDataSource limiter = dataSource.unwrap(PoolAwareDataSource.class);
+        assertNotNull(limiter);
+        assertEquals(0, pinningMonitor.getPinnedCount());
+
+        // a request that authenticates and hits the database goes through the limiter
+        HttpHeaders auth = adminHeaders();
+        ResponseEntity<String> projects = restTemplate.exchange(baseUrl("/api/projects"),
+            HttpMethod.GET, new HttpEntity<>(auth), String.class);
+        assertEquals(HttpStatus.OK, projects.getStatusCode());
+        assertEquals(0, limiter.getRejectedCount());
+    }
+}
@@ -9,4 +9,67 @@ export function setAuthToken(token: string | null) {
   else delete api.defaults.headers.common['Authorization']
 }
 
+// the list endpoint is paged by cursor; reads every page for views that need the whole filtered set
+export async function fetchAllDefects(params: Record<string, any> = {}) {
+  const items: any[] = []
+  let cursor: string | undefined
+  do {
+    const r = await api.get('/defects', { params: { ...params, limit: 500, cursor } })
+    items.push(...r.data.items)
+    cursor = r.data.nextCursor || undefined
+  } while (cursor)
+  return items
+}
+
+// EventSource cannot send the Authorization header, so the change feed is read with fetch and parsed here.
+// Returns a function that closes the subscription; a dropped connection is reopened after the server's retry delay
+export function subscribeDefectChanges(projectId: number | null, onChange: (event: any) => void) {
+  const controller = new AbortController()
+  let retryMs = 3000
+
+  async function connect() {
+    const url = new URL(`${API_BASE}/defects/stream`, window.location.href)
+    if (projectId) url.searchParams.set('projectId', String(projectId))
+    const auth = api.defaults.headers.common['Authorization'] as string | undefined
+    const res = await fetch(url, {
+      headers: { Accept: 'text/event-stream', ...(auth ? { Authorization: auth } : {}) },
+      signal: controller.signal
+    })
+    // an expired session will not get better by retrying
+    if (res.status === 401 || res.status === 403) return controller.abort()
+    if (!res.ok || !res.body) throw new Error(`change feed returned ${res.status}`)
+    const reader = res.body.pipeThrough(new TextDecoderStream()).getReader()
+    let buffer = ''
+    for (;;) {
+      const { value, done } = await reader.read()
+      if (done) return
+      buffer += value.replace(/\r\n?/g, '\n')
+      let end
+      while ((end = buffer.indexOf('\n\n')) >= 0) {
+        const block = buffer.slice(0, end)
+        buffer = buffer.slice(end + 2)
+        const data: string[] = []
+        for (const line of block.split('\n')) {
+          if (line.startsWith('data:')) data.push(line.slice(5).replace(/^ /, ''))
+          else if (line.startsWith('retry:')) retryMs = Number(line.slice(6)) || retryMs
+        }
+        // comments (hello, ping) carry no data
+        if (data.length) onChange(JSON.parse(data.join('\n')))
+      }
+    }
+  }
+
+  ;(async () => {
+    while (!controller.signal.aborted) {
+      try {
+        await connect()
+      } catch (e) {
+        if (controller.signal.aborted) return
+      }
+      await new Promise(resolve => setTimeout(resolve, retryMs))
+    }
+  })()
+  return () => controller.abort()
+}
+
 export default api